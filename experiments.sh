@@ -2,11 +2,16 @@
 
 ulimit -t 1800
 
+# e.g. EMPTINESS_CHECKER=INTERSECTION_TOOL ./experiments.sh
+EMPTINESS_CHECKER=${EMPTINESS_CHECKER:-NATIVE}
+# selector checks of previous runs are looked up here
+OVERLAP_MEMO=examples/overlap-memo-$EMPTINESS_CHECKER.bin
+
 for experiment in examples/*
 do
     if [[ -d $experiment ]]
     then
         echo "Doing $experiment"
-        ( time ./css-analyser --mode NODOM --in-folder $experiment --dom-free-deps ) > $experiment/results.txt 2>&1
+        ( time ./css-analyser --mode NODOM --in-folder $experiment --dom-free-deps --emptiness-checker $EMPTINESS_CHECKER --overlap-memo $OVERLAP_MEMO ) > $experiment/results.txt 2>&1
     fi
 done
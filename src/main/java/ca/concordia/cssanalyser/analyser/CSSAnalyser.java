@@ -7,18 +7,27 @@ import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
 
 import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector;
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector.FrequentItemSetMiner;
 import ca.concordia.cssanalyser.analyser.duplication.DuplicationIncstanceList;
 import ca.concordia.cssanalyser.analyser.duplication.DuplicationInstance;
 import ca.concordia.cssanalyser.analyser.duplication.items.Item;
 import ca.concordia.cssanalyser.analyser.duplication.items.ItemSet;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetCounter;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetFileWriter;
 import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
 import ca.concordia.cssanalyser.app.FileLogger;
 import ca.concordia.cssanalyser.cssmodel.StyleSheet;
@@ -31,6 +40,7 @@ import ca.concordia.cssanalyser.io.IOHelper;
 import ca.concordia.cssanalyser.parser.CSSParser;
 import ca.concordia.cssanalyser.parser.CSSParserFactory;
 import ca.concordia.cssanalyser.parser.CSSParserFactory.CSSParserType;
+import ca.concordia.cssanalyser.parser.ParseException;
 import ca.concordia.cssanalyser.refactoring.BatchGroupingRefactoringResult;
 import ca.concordia.cssanalyser.refactoring.RefactorDuplicationsToGroupingSelector;
 
@@ -49,13 +59,21 @@ public class CSSAnalyser {
 	private boolean doFPGrowth = true;
 	private boolean dontUseDOM = false;
 	private boolean compareAprioriAndFPGrowth = false;
+	private int numberOfThreads = 1;
+	private FrequentItemSetMiner frequentItemSetMiner = FrequentItemSetMiner.FPGROWTH;
+	private long fpGrowthMemoryLimit = -1;
+	private int maximumItemSetSize = -1;
 	private final String folderPath;
+	private final List<File> cssFiles;
+	private final Map<File, ParseException> parseFailures = new LinkedHashMap<>();
+	private boolean styleSheetsParsed = false;
 
 	/**
 	 * Through this constructor, one should pass the
 	 * folder containing all CSS files (or a single CSS file). Program will search
 	 * for all files with extension ".css" in the given folder and conducts the
-	 * analysis for each file.
+	 * analysis for each file. The files are parsed at the first call to
+	 * {@link #analyse(int, boolean)}.
 	 * @param cssContainingFolder
 	 * @param domStateHTMLPath
 	 * @throws FileNotFoundException Could not find the given directory or css file.
@@ -67,8 +85,6 @@ public class CSSAnalyser {
 		if (!IOHelper.exists(cssContainingFolderOrFilePath))
 			throw new FileNotFoundException("Folder not found: " + cssContainingFolderOrFilePath);
 
-		List<File> cssFiles = null;
-
 		if (IOHelper.isFolder(cssContainingFolderOrFilePath)) {
 			this.folderPath = cssContainingFolderOrFilePath;
 			// Search for all CSS files in this folder
@@ -88,7 +104,6 @@ public class CSSAnalyser {
 		else
 			dontUseDOM = true;
 		model = new Model(document);
-		parseStyleSheets(cssFiles);
 
 	}
 
@@ -123,23 +138,144 @@ public class CSSAnalyser {
 		compareAprioriAndFPGrowth = value;
 	}
 
-	private void parseStyleSheets(List<File> files ) {
+	/**
+	 * Sets the number of style sheets which are parsed and analysed in parallel.
+	 * It is also the number of grouping refactorings checked in parallel for each style sheet.
+	 * The default value is 1, i.e., style sheets are parsed and analysed one after another.
+	 * Style sheets analysed using a DOM are always analysed one after another.
+	 * @param value
+	 */
+	public void setNumberOfThreads(int value) {
+		numberOfThreads = value;
+	}
+
+	/**
+	 * Sets the algorithm used for mining the frequent ItemSets (i.e., duplicated declarations)
+	 * of each style sheet. The default is {@link FrequentItemSetMiner#FPGROWTH}.
+	 * @param miner
+	 */
+	public void setFrequentItemSetMiner(FrequentItemSetMiner miner) {
+		frequentItemSetMiner = miner;
+	}
+
+	/**
+	 * Sets the memory, in bytes, which the FP-tree of a style sheet may take.
+	 * Bigger style sheets are mined partition by partition from temporary files
+	 * (see {@link DuplicationDetector#setFPGrowthMemoryLimit(long)}). By default, there is no limit.
+	 * @param value
+	 */
+	public void setFPGrowthMemoryLimit(long value) {
+		fpGrowthMemoryLimit = value;
+	}
+
+	/**
+	 * Sets the maximum number of declarations of the duplicated declarations mined in each style sheet
+	 * (see {@link DuplicationDetector#setMaximumItemSetSize(int)}). By default, there is no limit.
+	 * @param value
+	 */
+	public void setMaximumItemSetSize(int value) {
+		maximumItemSetSize = value;
+	}
+
+	/**
+	 * Returns the files which could not be parsed, mapped to the corresponding exceptions.
+	 * These files are skipped in the analysis.
+	 * @return
+	 */
+	public Map<File, ParseException> getParseFailures() {
+		return parseFailures;
+	}
+
+	/**
+	 * Parses the given files and adds the resulting style sheets to the model,
+	 * in the order of the given files.
+	 * Files are parsed in parallel if more than one thread is allowed,
+	 * each thread using its own parser instance.
+	 * A file which cannot be parsed does not stop the parsing of the other files;
+	 * the failure is kept in {@link #getParseFailures()}.
+	 * @param files
+	 */
+	private void parseStyleSheets(List<File> files) {
+
+		long start = System.currentTimeMillis();
+		long totalBytes = 0;
+		List<StyleSheet> styleSheets = new ArrayList<>();
+		Map<File, ParseException> failures = new ConcurrentHashMap<>();
 
-		for (File file : files) {
-			String filePath = file.getAbsolutePath();
-			LOGGER.info("Now parsing " + filePath);
+		if (numberOfThreads < 2 || files.size() < 2) {
 			//FluteCSSParser parser = new FluteCSSParser();
 			CSSParser parser = CSSParserFactory.getCSSParser(CSSParserType.LESS);
+			for (File file : files) {
+				styleSheets.add(parseStyleSheet(file, parser, failures));
+			}
+		} else {
+			LOGGER.info("Parsing " + files.size() + " style sheets using " + numberOfThreads + " threads");
+			ThreadLocal<CSSParser> parsers = ThreadLocal.withInitial(() -> CSSParserFactory.getCSSParser(CSSParserType.LESS));
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfThreads, files.size()));
 			try {
-				//StyleSheet styleSheet = parser.parseExternalCSS(filePath);
-				StyleSheet styleSheet = parser.parseExternalCSS(filePath);
+				List<Future<StyleSheet>> styleSheetsFutures = new ArrayList<>();
+				for (File file : files) {
+					styleSheetsFutures.add(executor.submit(() -> parseStyleSheet(file, parsers.get(), failures)));
+				}
+				for (Future<StyleSheet> styleSheetFuture : styleSheetsFutures) {
+					styleSheets.add(styleSheetFuture.get());
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while parsing the style sheets in " + folderPath, ex);
+			} catch (ExecutionException ex) {
+				// parseStyleSheet() does not throw, so this is a bug
+				throw new RuntimeException(ex.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		for (int i = 0; i < files.size(); i++) {
+			StyleSheet styleSheet = styleSheets.get(i);
+			if (styleSheet != null) {
 				model.addStyleSheet(styleSheet);
-			} catch (Exception ex) {
-				throw new RuntimeException(ex);
-				//LOGGER.warn("Couldn't parse " + file + ". Skipping to the next file.");
+				totalBytes += files.get(i).length();
+			} else {
+				parseFailures.put(files.get(i), failures.get(files.get(i)));
 			}
 		}
 
+		long time = System.currentTimeMillis() - start;
+		LOGGER.info(String.format("Parsed %s of %s style sheet(s) in %s ms (%.2f KB/s)",
+				model.getStyleSheets().size(), files.size(), time, getKBPerSecond(totalBytes, time)));
+
+	}
+
+	/**
+	 * Parses one file using the given parser. Parse time and throughput are logged.
+	 * @param file
+	 * @param parser
+	 * @param failures The map to which the file is added if it cannot be parsed
+	 * @return The parsed style sheet, or null if the file could not be parsed.
+	 */
+	private StyleSheet parseStyleSheet(File file, CSSParser parser, Map<File, ParseException> failures) {
+		String filePath = file.getAbsolutePath();
+		LOGGER.info("Now parsing " + filePath);
+		long start = System.currentTimeMillis();
+		try {
+			//StyleSheet styleSheet = parser.parseExternalCSS(filePath);
+			StyleSheet styleSheet = parser.parseExternalCSS(filePath);
+			long time = System.currentTimeMillis() - start;
+			LOGGER.info(String.format("Parsed %s in %s ms (%.2f KB/s)", filePath, time, getKBPerSecond(file.length(), time)));
+			return styleSheet;
+		} catch (ParseException ex) {
+			LOGGER.warn("Couldn't parse " + filePath + ". Skipping to the next file. " + ex);
+			failures.put(file, ex);
+		} catch (RuntimeException ex) {
+			LOGGER.warn("Couldn't parse " + filePath + ". Skipping to the next file. " + ex);
+			failures.put(file, new ParseException(ex));
+		}
+		return null;
+	}
+
+	private static float getKBPerSecond(long bytes, long millis) {
+		return (bytes / 1024F) / (Math.max(millis, 1) / 1000F);
 	}
 
     /**
@@ -164,6 +300,11 @@ public class CSSAnalyser {
 	public void analyse(final int MIN_SUPPORT,
                         boolean domFreeDeps) throws IOException {
 
+		if (!styleSheetsParsed) {
+			parseStyleSheets(cssFiles);
+			styleSheetsParsed = true;
+		}
+
 		IOHelper.deleteFile(folderPath + "/analytics.txt");
 
 		String headerLine = "file_name|" +
@@ -197,11 +338,69 @@ public class CSSAnalyser {
 
 
 
-		// Do the analysis for each CSS file
-		for (StyleSheet styleSheet : model.getStyleSheets()) {
+		/*
+		 * Do the analysis for each CSS file. Style sheets are independent,
+		 * so they can be analysed in parallel, unless they are analysed using
+		 * the DOM, which cannot be queried by more than one thread. The rows of
+		 * analytics.txt are collected and written at the end, in the order of the style sheets.
+		 */
+		List<String> analyticsRows = new ArrayList<>();
+		boolean usesDOM = model.getDocument() != null && !dontUseDOM;
+		if (numberOfThreads < 2 || model.getStyleSheets().size() < 2 || usesDOM) {
+			for (StyleSheet styleSheet : model.getStyleSheets()) {
+				analyticsRows.add(analyseStyleSheet(styleSheet, MIN_SUPPORT, domFreeDeps));
+			}
+		} else {
+			LOGGER.info("Analysing " + model.getStyleSheets().size() + " style sheets using " + numberOfThreads + " threads");
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfThreads, model.getStyleSheets().size()));
+			try {
+				List<Future<String>> analyticsRowsFutures = new ArrayList<>();
+				for (StyleSheet styleSheet : model.getStyleSheets()) {
+					analyticsRowsFutures.add(executor.submit(() -> analyseStyleSheet(styleSheet, MIN_SUPPORT, domFreeDeps)));
+				}
+				for (Future<String> analyticsRowFuture : analyticsRowsFutures) {
+					analyticsRows.add(analyticsRowFuture.get());
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while analysing the style sheets in " + folderPath, ex);
+			} catch (ExecutionException ex) {
+				Throwable cause = ex.getCause();
+				if (cause instanceof IOException)
+					throw (IOException)cause;
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException)cause;
+				if (cause instanceof Error)
+					throw (Error)cause;
+				throw new RuntimeException(cause);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
 
-			String filePath = styleSheet.getFilePath();
-			String analyticsFolderPath = filePath + ".analyse";
+		for (String analyticsRow : analyticsRows) {
+			if (analyticsRow != null)
+				IOHelper.writeStringToFile(analyticsRow + System.lineSeparator(), folderPath + "/analytics.txt" , true);
+		}
+
+		LOGGER.info("Done.");
+
+	}
+
+	/**
+	 * Does the analysis for one style sheet, writing the results in the
+	 * corresponding ".analyse" folder.
+	 * @param styleSheet
+	 * @param MIN_SUPPORT
+	 * @param domFreeDeps
+	 * @return The row of analytics.txt for the given style sheet, or null if
+	 * FP-Growth is not performed.
+	 * @throws IOException
+	 */
+	private String analyseStyleSheet(StyleSheet styleSheet, final int MIN_SUPPORT, boolean domFreeDeps) throws IOException {
+
+		String filePath = styleSheet.getFilePath();
+		String analyticsFolderPath = filePath + ".analyse";
 
 //			CSSValueOverridingDependencyList originalDependencies = styleSheet.getValueOverridingDependencies(model.getDocument());
 //			IOHelper.writeStringToFile(originalDependencies.toString() + "\n\n\n\n" + originalDependencies.size(), folderName + "/orderDependencies.txt");
@@ -210,58 +409,63 @@ public class CSSAnalyser {
 //			if (originalDependencies != null) // correct always
 //				continue;
 
-			LOGGER.info("Finding different types of duplication in " + filePath);
+		LOGGER.info("Finding different types of duplication in " + filePath);
 
-			DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
-			duplicationDetector.findDuplications();
+		DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+		duplicationDetector.setNumberOfThreads(numberOfThreads);
+		duplicationDetector.setFrequentItemSetMiner(frequentItemSetMiner);
+		duplicationDetector.setFPGrowthMemoryLimit(fpGrowthMemoryLimit);
+		duplicationDetector.setMaximumItemSetSize(maximumItemSetSize);
+		duplicationDetector.findDuplications();
 
 
-			IOHelper.createFolder(analyticsFolderPath, true);
+		IOHelper.createFolder(analyticsFolderPath, true);
 
-			IOHelper.writeStringToFile(styleSheet.toString(), analyticsFolderPath + "/formatted.css");
+		IOHelper.writeStringToFile(styleSheet.toString(), analyticsFolderPath + "/formatted.css");
 
 
-			DuplicationIncstanceList typeIDuplications = duplicationDetector.getTypeIDuplications();
-			IOHelper.writeLinesToFile(typeIDuplications, analyticsFolderPath + "/typeI.txt");
+		DuplicationIncstanceList typeIDuplications = duplicationDetector.getTypeIDuplications();
+		IOHelper.writeLinesToFile(typeIDuplications, analyticsFolderPath + "/typeI.txt");
 
-			DuplicationIncstanceList typeIIDuplications = duplicationDetector.getTypeIIDuplications();
-			IOHelper.writeLinesToFile(typeIIDuplications, analyticsFolderPath + "/typeII.txt");
+		DuplicationIncstanceList typeIIDuplications = duplicationDetector.getTypeIIDuplications();
+		IOHelper.writeLinesToFile(typeIIDuplications, analyticsFolderPath + "/typeII.txt");
 
-			DuplicationIncstanceList typeIIIDuplications = duplicationDetector.getTypeIIIDuplications();
-			IOHelper.writeLinesToFile(typeIIIDuplications, analyticsFolderPath + "/typeIII.txt");
+		DuplicationIncstanceList typeIIIDuplications = duplicationDetector.getTypeIIIDuplications();
+		IOHelper.writeLinesToFile(typeIIIDuplications, analyticsFolderPath + "/typeIII.txt");
 
 //			if (typeToItemsMapper != null) continue;
 
-			//			DuplicationIncstanceList typeIVADuplications = duplicationFinder.getTypeIVADuplications();
+		//			DuplicationIncstanceList typeIVADuplications = duplicationFinder.getTypeIVADuplications();
 //			IOHelper.writeLinesToFile(typeIVADuplications, folderName + "/typeIVA.txt");
 
-			//if (!dontUseDOM) {
-				//duplicationFinder.findTypeFourBDuplication(model.getDocument());
-				//DuplicationIncstanceList typeIVBDuplications = duplicationFinder.getTypeIVBDuplications();
-				//IOHelper.writeLinesToFile(typeIVBDuplications, folderName + "/typeIVB.txt");
-			//}
+		//if (!dontUseDOM) {
+			//duplicationFinder.findTypeFourBDuplication(model.getDocument());
+			//DuplicationIncstanceList typeIVBDuplications = duplicationFinder.getTypeIVBDuplications();
+			//IOHelper.writeLinesToFile(typeIVBDuplications, folderName + "/typeIVB.txt");
+		//}
 
 
-			List<ItemSetList> aprioriResults = null, fpgrowthResults = null;
+		List<ItemSetList> aprioriResults = null, fpgrowthResults = null;
+		String analyticsRow = null;
 
-			if (doApriori) {
+		if (doApriori) {
 
-				LOGGER.info("Applying apriori algorithm with minimum support count of " + MIN_SUPPORT + " on " + filePath);
+			LOGGER.info("Applying apriori algorithm with minimum support count of " + MIN_SUPPORT + " on " + filePath);
 
-				long start = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
-				aprioriResults = duplicationDetector.apriori(MIN_SUPPORT);
-				long end = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
-				long time = (end - start) / 1000000L;
-				IOHelper.writeLinesToFile(aprioriResults, analyticsFolderPath + "/apriori.txt");
+			long start = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+			aprioriResults = duplicationDetector.apriori(MIN_SUPPORT);
+			long end = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+			long time = (end - start) / 1000000L;
+			IOHelper.writeLinesToFile(aprioriResults, analyticsFolderPath + "/apriori.txt");
 
-				LOGGER.info("Done Apriori in " + time);
+			LOGGER.info("Done Apriori in " + time);
 
-			}
+		}
 
-			if (doFPGrowth) {
+		if (doFPGrowth) {
 
-				fpgrowthResults = duplicationDetector.fpGrowth(MIN_SUPPORT, false);
-				IOHelper.writeLinesToFile(fpgrowthResults, analyticsFolderPath + "/fpgrowth.txt");
+			fpgrowthResults = duplicationDetector.mineFrequentItemSets(MIN_SUPPORT, false);
+			IOHelper.writeLinesToFile(fpgrowthResults, analyticsFolderPath + "/fpgrowth.txt");
 
 //				int numberOfPositiveSubsumed = 0, numberOrRefactoringsSubsumed = 0;
 //				for (ItemSetList isl : fpgrowthResults) {
@@ -275,41 +479,42 @@ public class CSSAnalyser {
 //				String str = "Subsumed\tPositive\r\n" + String.valueOf(numberOrRefactoringsSubsumed) + "\t" + String.valueOf(numberOfPositiveSubsumed);
 //				IOHelper.writeStringToFile(str, analyticsFolderPath + "/refactoring-opportunities-positive-subsumed.txt");
 //
-				long start, end, time;
-				LOGGER.info("Applying grouping refactoring opportunities");
-				start = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
-				BatchGroupingRefactoringResult refactoringResults;
-				RefactorDuplicationsToGroupingSelector refactorDuplications = new RefactorDuplicationsToGroupingSelector(styleSheet, domFreeDeps);
-				if (!dontUseDOM) {
-					refactoringResults = refactorDuplications.refactorGroupingOpportunities(MIN_SUPPORT, analyticsFolderPath, fpgrowthResults, model.getDocument(), true, false);
-				} else {
-					refactoringResults = refactorDuplications.refactorGroupingOpportunities(MIN_SUPPORT, analyticsFolderPath, fpgrowthResults, true, domFreeDeps);
-				}
-				end = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
-				time = (end - start) / 1000000L;
-				LOGGER.info("Applied " + refactoringResults.getNumberOfAppliedRefactorings() + " grouping refactoring(s) in " + time + " ms");
-				LOGGER.info("Collecting more info for the further analysis...");
-
-				List<ItemSetList> fpgrowthResultsSubsumed = duplicationDetector.fpGrowth(MIN_SUPPORT, true);
-				IOHelper.writeLinesToFile(fpgrowthResultsSubsumed, analyticsFolderPath + "/fpgrowth-subsumed.txt");
-
-				String analytics = getAnalytics(styleSheet, refactoringResults, duplicationDetector, fpgrowthResults, fpgrowthResultsSubsumed);
-
-				IOHelper.writeStringToFile(analytics + System.lineSeparator(), folderPath + "/analytics.txt" , true);
-
+			long start, end, time;
+			LOGGER.info("Applying grouping refactoring opportunities");
+			start = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+			BatchGroupingRefactoringResult refactoringResults;
+			RefactorDuplicationsToGroupingSelector refactorDuplications = new RefactorDuplicationsToGroupingSelector(styleSheet, domFreeDeps);
+			refactorDuplications.setNumberOfThreads(numberOfThreads);
+			if (!dontUseDOM) {
+				refactoringResults = refactorDuplications.refactorGroupingOpportunities(MIN_SUPPORT, analyticsFolderPath, fpgrowthResults, model.getDocument(), true, false);
+			} else {
+				refactoringResults = refactorDuplications.refactorGroupingOpportunities(MIN_SUPPORT, analyticsFolderPath, fpgrowthResults, true, domFreeDeps);
+			}
+			end = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+			time = (end - start) / 1000000L;
+			LOGGER.info("Applied " + refactoringResults.getNumberOfAppliedRefactorings() + " grouping refactoring(s) in " + time + " ms");
+			LOGGER.info("Collecting more info for the further analysis...");
+
+			// The ItemSets excluding the subsumed ones are only written and counted, so they are not kept in memory
+			ItemSetCounter fpgrowthResultsSubsumedCounter = new ItemSetCounter(true);
+			try (ItemSetFileWriter fpgrowthResultsSubsumedWriter = new ItemSetFileWriter(analyticsFolderPath + "/fpgrowth-subsumed.txt")) {
+				duplicationDetector.mineFrequentItemSets(MIN_SUPPORT, true, fpgrowthResultsSubsumedWriter.andThen(fpgrowthResultsSubsumedCounter));
 			}
 
-			if (compareAprioriAndFPGrowth)
-				compareAprioriAndFPGrowth(aprioriResults, fpgrowthResults);
+			analyticsRow = getAnalytics(styleSheet, refactoringResults, duplicationDetector, fpgrowthResults, fpgrowthResultsSubsumedCounter);
 
-			LOGGER.info("Done analysis for " + filePath);
 		}
 
-		LOGGER.info("Done.");
+		if (compareAprioriAndFPGrowth)
+			compareAprioriAndFPGrowth(aprioriResults, fpgrowthResults);
+
+		LOGGER.info("Done analysis for " + filePath);
+
+		return analyticsRow;
 
 	}
 
-	private String getAnalytics(StyleSheet styleSheet, BatchGroupingRefactoringResult refactoringResults, DuplicationDetector finder, List<ItemSetList> dupResults, List<ItemSetList> dupResultsSubsumed) {
+	private String getAnalytics(StyleSheet styleSheet, BatchGroupingRefactoringResult refactoringResults, DuplicationDetector finder, List<ItemSetList> dupResults, ItemSetCounter dupResultsSubsumed) {
 
 		File originalCSSFile = new File(styleSheet.getFilePath() + ".analyse/formatted.css");
 		File refactoredCSSFile = new File(refactoringResults.getStyleSheet().getFilePath());
@@ -332,14 +537,8 @@ public class CSSAnalyser {
 		for (ItemSetList isl : dupResults)
 			numberOfRefactoringOpportunities += isl.size();
 
-		int numberOfRefactoringOpportunitiesExcludedSubsumed = 0;
-		int numberOfRefactoringOpportunitiesExcludedSubsumedPositive = 0;
-		for (ItemSetList isl : dupResultsSubsumed) {
-			numberOfRefactoringOpportunitiesExcludedSubsumed += isl.size();
-			for (ItemSet is : isl)
-				if (is.getGroupingRefactoringImpact() > 0)
-					numberOfRefactoringOpportunitiesExcludedSubsumedPositive++;
-		}
+		int numberOfRefactoringOpportunitiesExcludedSubsumed = dupResultsSubsumed.getNumberOfItemSets();
+		int numberOfRefactoringOpportunitiesExcludedSubsumedPositive = dupResultsSubsumed.getNumberOfItemSetsWithPositiveImpact();
 
 		IOHelper.writeStringToFile("\n\nNumber of all possible refactoring opportunities " + numberOfRefactoringOpportunities, styleSheet.getFilePath() + ".analyse/fpgrowth.txt", true);
 
@@ -2,11 +2,15 @@ package ca.concordia.cssanalyser.analyser.duplication;
 
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.slf4j.Logger;
@@ -14,15 +18,19 @@ import org.w3c.dom.Document;
 
 import ca.concordia.cssanalyser.analyser.duplication.TypeFourDuplicationInstance.TypeIVBDuplication;
 import ca.concordia.cssanalyser.analyser.duplication.apriori.Apriori;
+import ca.concordia.cssanalyser.analyser.duplication.eclat.Eclat;
 import ca.concordia.cssanalyser.analyser.duplication.fpgrowth.FPGrowth;
 import ca.concordia.cssanalyser.analyser.duplication.items.Item;
 import ca.concordia.cssanalyser.analyser.duplication.items.ItemSet;
 import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetListCollector;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetSink;
 import ca.concordia.cssanalyser.analyser.progressmonitor.ProgressMonitor;
 import ca.concordia.cssanalyser.app.FileLogger;
 import ca.concordia.cssanalyser.cssmodel.StyleSheet;
 import ca.concordia.cssanalyser.cssmodel.declaration.Declaration;
 import ca.concordia.cssanalyser.cssmodel.declaration.ShorthandDeclaration;
+import ca.concordia.cssanalyser.cssmodel.declaration.SingleValuedDeclaration;
 import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
 import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
 import ca.concordia.cssanalyser.dom.DOMNodeWrapperList;
@@ -38,6 +46,19 @@ public class DuplicationDetector {
 	
 	private static Logger LOGGER = FileLogger.getLogger(DuplicationDetector.class);
 
+	/**
+	 * The algorithms which {@link DuplicationDetector#mineFrequentItemSets(int, boolean)} may use
+	 */
+	public enum FrequentItemSetMiner {
+		/**
+		 * {@link FPGrowth}
+		 */
+		FPGROWTH,
+		/**
+		 * {@link Eclat}, which intersects the tid-lists of the items
+		 */
+		ECLAT
+	}
 
 	private StyleSheet stylesheet;
 
@@ -47,10 +68,74 @@ public class DuplicationDetector {
 	 */
 	private Map<Declaration, Item> declarationItemMap = new HashMap<>();
 
+	/*
+	 * Declarations which are compared together for finding type I and II duplications,
+	 * and the identical (type I) and equivalent (type II) declarations found for every declaration.
+	 * These are kept for updating the duplications after a grouping refactoring,
+	 * see getDuplicationDetectorAfterGroupingRefactoring()
+	 */
+	private Map<String, List<Declaration>> declarationBuckets;
+	private boolean bucketsOnlyCheckProperties;
+	private Map<Declaration, List<Declaration>> typeOneDuplicatedDeclarations;
+	private Map<Declaration, List<Declaration>> typeTwoDuplicatedDeclarations;
+
+	/*
+	 * When this detector is made by updating another detector, this map
+	 * maps the items of the other detector to the items of this detector
+	 * which have the same declarations and support (in the new style sheet).
+	 * The other items of this detector are kept in changedItems.
+	 */
+	private Map<Item, Item> unchangedItemsMapping;
+	private Set<Item> changedItems;
+
+	private int numberOfThreads = 1;
+	private FrequentItemSetMiner frequentItemSetMiner = FrequentItemSetMiner.FPGROWTH;
+	private long fpGrowthMemoryLimit = -1;
+	private int maximumItemSetSize = -1;
+
 	public DuplicationDetector(StyleSheet stylesheet) {
 		this.stylesheet = stylesheet;
 	}
 
+	/**
+	 * Sets the number of threads used by FP-Growth (see {@link FPGrowth#setNumberOfThreads(int)}).
+	 * The detectors made by updating this detector use the same number of threads.
+	 * @param value
+	 */
+	public void setNumberOfThreads(int value) {
+		numberOfThreads = value;
+	}
+
+	/**
+	 * Sets the algorithm used by {@link #mineFrequentItemSets(int, boolean)}.
+	 * The default is {@link FrequentItemSetMiner#FPGROWTH}.
+	 * The detectors made by updating this detector use the same algorithm.
+	 * @param miner
+	 */
+	public void setFrequentItemSetMiner(FrequentItemSetMiner miner) {
+		frequentItemSetMiner = miner;
+	}
+
+	/**
+	 * Sets the memory, in bytes, which the FP-tree of FP-Growth may take
+	 * (see {@link FPGrowth#setMemoryLimit(long)}). By default, there is no limit.
+	 * The detectors made by updating this detector use the same limit.
+	 * @param value
+	 */
+	public void setFPGrowthMemoryLimit(long value) {
+		fpGrowthMemoryLimit = value;
+	}
+
+	/**
+	 * Sets the maximum number of items (i.e., declarations) of the mined ItemSets
+	 * (see {@link FPGrowth#setMaximumItemSetSize(int)}). By default, there is no limit.
+	 * The detectors made by updating this detector use the same limit.
+	 * @param value
+	 */
+	public void setMaximumItemSetSize(int value) {
+		maximumItemSetSize = value;
+	}
+
 	private DuplicationIncstanceList typeOneDuplicationsList;
 	private DuplicationIncstanceList typeTwoDuplicationsList;
 	private DuplicationIncstanceList typeThreeDuplicationsList;
@@ -111,19 +196,70 @@ public class DuplicationDetector {
 		// Lets get all the declarations
 		List<Declaration> allDeclarations = new ArrayList<>(stylesheet.getAllDeclarations());
 
+		/*
+		 * Two declarations can only be identical or equivalent if they have
+		 * the same bucket key (see getDeclarationBucketKey()). So we put the
+		 * declarations in buckets and only compare the declarations
+		 * inside the same bucket. Every bucket keeps the declarations in the order
+		 * of the style sheet, so the declarations are visited in the same order as comparing
+		 * every declaration with all the next ones.
+		 */
+		declarationBuckets = getDeclarationBuckets(allDeclarations, onlyCheckProperties);
+		bucketsOnlyCheckProperties = onlyCheckProperties;
+		typeOneDuplicatedDeclarations = new HashMap<>();
+		typeTwoDuplicatedDeclarations = new HashMap<>();
+
+		// The ItemSets of C1, for the declarations which make new items
+		Map<Declaration, ItemSet> newItemSets = new HashMap<>();
+
+		for (List<Declaration> bucket : declarationBuckets.values())
+			findTypeOneAndTwoDuplicationsInBucket(bucket, onlyCheckProperties, newItemSets);
+
+		addTypeOneAndTwoDuplications(allDeclarations, newItemSets);
+
+	}
+
+	/**
+	 * Puts the given declarations in buckets, based on {@link #getDeclarationBucketKey(Declaration, boolean)}.
+	 * The order of the declarations is kept in every bucket.
+	 * @param declarations
+	 * @param onlyCheckProperties
+	 * @return
+	 */
+	private static Map<String, List<Declaration>> getDeclarationBuckets(List<Declaration> declarations, boolean onlyCheckProperties) {
+		Map<String, List<Declaration>> buckets = new HashMap<>();
+		for (Declaration declaration : declarations) {
+			String bucketKey = getDeclarationBucketKey(declaration, onlyCheckProperties);
+			List<Declaration> bucket = buckets.get(bucketKey);
+			if (bucket == null) {
+				bucket = new ArrayList<>();
+				buckets.put(bucketKey, bucket);
+			}
+			bucket.add(declaration);
+		}
+		return buckets;
+	}
+
+	/**
+	 * Compares every declaration of the given bucket with the next ones in the bucket,
+	 * to find the items and the identical (type I) and equivalent (type II) declarations
+	 * of every declaration. The duplication instances are made later, in
+	 * {@link #addTypeOneAndTwoDuplications(List, Map)}.
+	 * @param bucket
+	 * @param onlyCheckProperties
+	 * @param newItemSets The ItemSets of C1 for the new items are put here,
+	 * with the declaration which makes the item as the key
+	 */
+	private void findTypeOneAndTwoDuplicationsInBucket(List<Declaration> bucket, boolean onlyCheckProperties, Map<Declaration, ItemSet> newItemSets) {
+
 		// We don't want to repeat, being identical is a symmetric relation
 		Set<Integer> visitedIdenticalDeclarations = new HashSet<>();
 		Set<Integer> visitedEquivalentDeclarations = new HashSet<>();
 
-		TypeOneDuplicationInstance typeOneDuplication = new TypeOneDuplicationInstance();
-		TypeTwoDuplicationInstance typeTwoDuplication = new TypeTwoDuplicationInstance();
-
 		int currentDeclarationIndex = -1;
-		while (++currentDeclarationIndex < allDeclarations.size()) {
+		while (++currentDeclarationIndex < bucket.size()) {
 
-			Declaration currentDeclaration = allDeclarations.get(currentDeclarationIndex);
-
-			int checkingDecIndex = currentDeclarationIndex;
+			Declaration currentDeclaration = bucket.get(currentDeclarationIndex);
 
 			/*
 			 * We want to keep all current identical declarations together, and
@@ -159,12 +295,13 @@ public class DuplicationDetector {
 				declarationItemMap.put(currentDeclaration, newItem);
 				ItemSet itemSet = new ItemSet();
 				itemSet.add(newItem);
-				C1.add(itemSet);
+				newItemSets.put(currentDeclaration, itemSet);
 			}
 
-			while (++checkingDecIndex < allDeclarations.size()) {
+			int checkingDecIndex = currentDeclarationIndex;
+			while (++checkingDecIndex < bucket.size()) {
 
-				Declaration checkingDeclaration = allDeclarations.get(checkingDecIndex);
+				Declaration checkingDeclaration = bucket.get(checkingDecIndex);
 
 				boolean equals;
 				if (onlyCheckProperties)
@@ -210,7 +347,37 @@ public class DuplicationDetector {
 
 			// Only if we have at least one declaration in the list (at list one
 			// duplication)
-			if (mustAddCurrentTypeIDuplication) {
+			if (mustAddCurrentTypeIDuplication)
+				typeOneDuplicatedDeclarations.put(currentDeclaration, currentTypeIDuplicatedDeclarations);
+
+			if (mustAddCurrentTypeTwoDuplication)
+				typeTwoDuplicatedDeclarations.put(currentDeclaration, currentTypeIIDuplicatedDeclarations);
+
+		}
+
+	}
+
+	/**
+	 * Makes the type I and type II duplication instances and the items of C1
+	 * by visiting the given declarations in the order of the style sheet,
+	 * after all the buckets are compared.
+	 * @param allDeclarations
+	 * @param newItemSets
+	 */
+	private void addTypeOneAndTwoDuplications(List<Declaration> allDeclarations, Map<Declaration, ItemSet> newItemSets) {
+
+		TypeOneDuplicationInstance typeOneDuplication = new TypeOneDuplicationInstance();
+		TypeTwoDuplicationInstance typeTwoDuplication = new TypeTwoDuplicationInstance();
+
+		for (Declaration currentDeclaration : allDeclarations) {
+
+			// for Apriori
+			ItemSet newItemSet = newItemSets.get(currentDeclaration);
+			if (newItemSet != null)
+				C1.add(newItemSet);
+
+			List<Declaration> currentTypeIDuplicatedDeclarations = typeOneDuplicatedDeclarations.get(currentDeclaration);
+			if (currentTypeIDuplicatedDeclarations != null) {
 				if (typeOneDuplication
 						.hasAllSelectorsForADuplication(currentTypeIDuplicatedDeclarations)) {
 					typeOneDuplication
@@ -223,7 +390,8 @@ public class DuplicationDetector {
 				}
 			}
 
-			if (mustAddCurrentTypeTwoDuplication) {
+			List<Declaration> currentTypeIIDuplicatedDeclarations = typeTwoDuplicatedDeclarations.get(currentDeclaration);
+			if (currentTypeIIDuplicatedDeclarations != null) {
 				if (typeTwoDuplication
 						.hasAllSelectorsForADuplication(currentTypeIIDuplicatedDeclarations)) {
 					typeTwoDuplication
@@ -240,6 +408,32 @@ public class DuplicationDetector {
 
 	}
 
+	/**
+	 * Returns a key for the given declaration, used for bucketing the declarations
+	 * in {@link #findTypeOneAndTwoDuplications(boolean)}.
+	 * Declarations with different keys are never identical or equivalent:
+	 * the key consists of the property, the importance, the media query lists
+	 * (only when values are compared) and a fingerprint of the value which
+	 * does not change between equivalent values (e.g., <code>red</code> and <code>#f00</code>).
+	 * @param declaration
+	 * @param onlyCheckProperties
+	 * @return
+	 */
+	private static String getDeclarationBucketKey(Declaration declaration, boolean onlyCheckProperties) {
+		StringBuilder key = new StringBuilder(declaration.getProperty());
+		key.append("|").append(declaration.isImportant());
+		if (!onlyCheckProperties) {
+			key.append("|").append(declaration.getSelector().mediaQueryListsHashCode());
+			if (declaration instanceof SingleValuedDeclaration) {
+				// Equal or equivalent values always have the same type
+				key.append("|").append(((SingleValuedDeclaration)declaration).getValue().getType());
+			} else {
+				key.append("|multi");
+			}
+		}
+		return key.toString();
+	}
+
 	/**
 	 * Finds typeIII duplications
 	 */
@@ -247,53 +441,57 @@ public class DuplicationDetector {
 
 		typeThreeDuplicationsList = new DuplicationIncstanceList();
 
+		Map<String, List<ShorthandDeclaration>> realShorthandsIndex = getRealShorthandDeclarationsIndex();
+
 		for (Selector selector : stylesheet.getAllSelectors()) {
 
 			for (ShorthandDeclaration virtualShorthand : selector.getVirtualShorthandDeclarations()) {
 				
-				// For each real shorthand in the style sheet, we compare it with the virtual shorthands of this selectors
-				for (Declaration checkingDeclaration : stylesheet.getAllDeclarations()) {
-					
-					if (checkingDeclaration.getSelector() != selector && checkingDeclaration instanceof ShorthandDeclaration) {
-					
-						ShorthandDeclaration checkingShorthandDeclaration = (ShorthandDeclaration) checkingDeclaration;
+				/*
+				 * A virtual shorthand can only be equivalent with the real shorthands
+				 * having the same property, so we only compare it with those
+				 */
+				List<ShorthandDeclaration> candidates = realShorthandsIndex.get(virtualShorthand.getProperty());
+				if (candidates == null)
+					continue;
+
+				for (ShorthandDeclaration checkingShorthandDeclaration : candidates) {
 
-						if(!checkingShorthandDeclaration.isVirtual()) {
+					if (checkingShorthandDeclaration.getSelector() != selector) {
 
-							boolean equivalentCondition = false;
-							if (onlyCheckProperties)
-								equivalentCondition = virtualShorthand.getProperty().equals(checkingDeclaration.getProperty()) &&
-										virtualShorthand.isImportant() == checkingDeclaration.isImportant() &&
-												checkingDeclaration.getSelector().mediaQueryListsEqual(checkingDeclaration.getSelector()) &&
-												checkingDeclaration.getNumberOfValueLayers() == checkingDeclaration.getNumberOfValueLayers();
-							else
-								equivalentCondition = virtualShorthand.individualDeclarationsEquivalent(checkingShorthandDeclaration);
-							
-							if (equivalentCondition) {
+						boolean equivalentCondition = false;
+						if (onlyCheckProperties)
+							equivalentCondition = virtualShorthand.getProperty().equals(checkingShorthandDeclaration.getProperty()) &&
+									virtualShorthand.isImportant() == checkingShorthandDeclaration.isImportant() &&
+											checkingShorthandDeclaration.getSelector().mediaQueryListsEqual(checkingShorthandDeclaration.getSelector()) &&
+											checkingShorthandDeclaration.getNumberOfValueLayers() == checkingShorthandDeclaration.getNumberOfValueLayers();
+						else
+							equivalentCondition = virtualShorthand.individualDeclarationsEquivalent(checkingShorthandDeclaration);
+						
+						if (equivalentCondition) {
 
-								TypeThreeDuplicationInstance duplication =  new TypeThreeDuplicationInstance(checkingShorthandDeclaration, virtualShorthand.getIndividualDeclarations());
-								typeThreeDuplicationsList.addDuplication(duplication);
+							TypeThreeDuplicationInstance duplication =  new TypeThreeDuplicationInstance(checkingShorthandDeclaration, virtualShorthand.getIndividualDeclarations());
+							typeThreeDuplicationsList.addDuplication(duplication);
 
 
-								/*
-								 * Well, well, when we add individual declarations to a virtual shorthand, it does not add the real values to the
-								 * virtual shorthand declaration itself. Indeed it is difficult to get values from individual shorthand declarations.
-								 */
+							/*
+							 * Well, well, when we add individual declarations to a virtual shorthand, it does not add the real values to the
+							 * virtual shorthand declaration itself. Indeed it is difficult to get values from individual shorthand declarations.
+							 */
 
-								//for (DeclarationValue v : checkingShorthandDeclaration.getValues())
-								//	virtualShorthand.getValues().add(v.clone());
+							//for (DeclarationValue v : checkingShorthandDeclaration.getValues())
+							//	virtualShorthand.getValues().add(v.clone());
 
-								// For apriori and FP-Growth
-								Item item = declarationItemMap.get(checkingDeclaration);
+							// For apriori and FP-Growth
+							Item item = declarationItemMap.get(checkingShorthandDeclaration);
 
-								item.add(virtualShorthand);
+							item.add(virtualShorthand);
 
-								item.addDuplicationType(3);
+							item.addDuplicationType(3);
 
-								//selector.addDeclaration(virtualShorthand);
-								declarationItemMap.put(virtualShorthand, item);
+							//selector.addDeclaration(virtualShorthand);
+							declarationItemMap.put(virtualShorthand, item);
 
-							}
 						}
 					}
 				}
@@ -302,6 +500,29 @@ public class DuplicationDetector {
 
 	}
 
+	/**
+	 * Maps every shorthand property to the real (i.e., non-virtual) {@link ShorthandDeclaration}s
+	 * of the style sheet having that property, preserving the order of declarations.
+	 * @return
+	 */
+	private Map<String, List<ShorthandDeclaration>> getRealShorthandDeclarationsIndex() {
+		Map<String, List<ShorthandDeclaration>> realShorthandsIndex = new HashMap<>();
+		for (Declaration declaration : stylesheet.getAllDeclarations()) {
+			if (declaration instanceof ShorthandDeclaration) {
+				ShorthandDeclaration shorthandDeclaration = (ShorthandDeclaration) declaration;
+				if (!shorthandDeclaration.isVirtual()) {
+					List<ShorthandDeclaration> shorthandsForProperty = realShorthandsIndex.get(shorthandDeclaration.getProperty());
+					if (shorthandsForProperty == null) {
+						shorthandsForProperty = new ArrayList<>();
+						realShorthandsIndex.put(shorthandDeclaration.getProperty(), shorthandsForProperty);
+					}
+					shorthandsForProperty.add(shorthandDeclaration);
+				}
+			}
+		}
+		return realShorthandsIndex;
+	}
+
 	/**
 	 * Finds type IV_A duplications
 	 * 
@@ -422,20 +643,341 @@ public class DuplicationDetector {
 		}
 	}
 
+	/**
+	 * Returns a new {@link DuplicationDetector} for the given style sheet, which is the result
+	 * of applying the grouping refactoring of the given {@link ItemSet} (found by this detector)
+	 * on the style sheet of this detector.
+	 * Instead of finding the duplications from scratch, only the declarations having the same
+	 * bucket key (see {@link #getDeclarationBucketKey(Declaration, boolean)}) as the removed or added
+	 * declarations are compared again. The items and duplications of the other declarations
+	 * are copied from this detector. Type I, II and III duplications of the returned detector
+	 * are the same as calling {@link #findDuplications()} on it (type IV_A duplications are not found).
+	 * The items of this detector are not changed.
+	 * @param refactoredStyleSheet The refactored style sheet. All the selectors other than the
+	 * new grouping selector must have the same declarations and relative order as before.
+	 * The new grouping selector may be anywhere (e.g., moved by a reordering to satisfy the dependencies).
+	 * @param appliedItemSet
+	 * @return
+	 */
+	public DuplicationDetector getDuplicationDetectorAfterGroupingRefactoring(StyleSheet refactoredStyleSheet, ItemSet appliedItemSet) {
+
+		if (declarationBuckets == null || bucketsOnlyCheckProperties)
+			throw new IllegalStateException("Duplications must be found using findDuplications() before being updated");
+
+		DuplicationDetector updatedDetector = new DuplicationDetector(refactoredStyleSheet);
+		updatedDetector.numberOfThreads = numberOfThreads;
+		updatedDetector.frequentItemSetMiner = frequentItemSetMiner;
+		updatedDetector.fpGrowthMemoryLimit = fpGrowthMemoryLimit;
+		updatedDetector.maximumItemSetSize = maximumItemSetSize;
+		updatedDetector.typeOneDuplicationsList = new DuplicationIncstanceList();
+		updatedDetector.typeTwoDuplicationsList = new DuplicationIncstanceList();
+		updatedDetector.C1 = new ItemSetList();
+		updatedDetector.bucketsOnlyCheckProperties = false;
+		updatedDetector.typeOneDuplicatedDeclarations = new HashMap<>();
+		updatedDetector.typeTwoDuplicatedDeclarations = new HashMap<>();
+		updatedDetector.unchangedItemsMapping = new IdentityHashMap<>();
+		updatedDetector.changedItems = new HashSet<>();
+
+		List<Declaration> allDeclarations = new ArrayList<>(refactoredStyleSheet.getAllDeclarations());
+		updatedDetector.declarationBuckets = getDeclarationBuckets(allDeclarations, false);
+
+		Set<String> changedBucketKeys = new HashSet<>();
+		for (Declaration removedDeclaration : appliedItemSet.getDeclarationsToBeRemoved())
+			changedBucketKeys.add(getDeclarationBucketKey(removedDeclaration, false));
+
+		Map<Declaration, ItemSet> newItemSets = new HashMap<>();
+		Set<Selector> selectorsWithChangedDeclarations = new HashSet<>();
+		for (Map.Entry<String, List<Declaration>> bucketEntry : updatedDetector.declarationBuckets.entrySet()) {
+			List<Declaration> bucket = bucketEntry.getValue();
+			List<Declaration> previousBucket = declarationBuckets.get(bucketEntry.getKey());
+			// The declarations of the new grouping selector make their buckets different
+			if (changedBucketKeys.contains(bucketEntry.getKey()) || !declarationsAreEqual(previousBucket, bucket)) {
+				updatedDetector.findTypeOneAndTwoDuplicationsInBucket(bucket, false, newItemSets);
+				for (Declaration declaration : bucket)
+					selectorsWithChangedDeclarations.add(declaration.getSelector());
+			} else {
+				updatedDetector.copyTypeOneAndTwoDuplicationsInBucket(this, previousBucket, bucket, newItemSets);
+			}
+		}
+
+		updatedDetector.addTypeOneAndTwoDuplications(allDeclarations, newItemSets);
+		updatedDetector.findTypeThreeDuplication(false);
+
+		/*
+		 * The virtual shorthand declarations of the selectors with removed or added declarations
+		 * may have been changed, so the items having them (type III duplications) are changed too.
+		 * Selectors of the new style sheet are matched with the support of the applied ItemSet
+		 * regardless of their locations, which may only add some unchanged items to the changed ones.
+		 */
+		Set<Selector> appliedItemSetSupport = new HashSet<>();
+		Set<Integer> appliedItemSetSupportHashCodes = new HashSet<>();
+		for (Selector selector : appliedItemSet.getSupport()) {
+			appliedItemSetSupport.add(selector);
+			appliedItemSetSupportHashCodes.add(selector.selectorHashCode());
+		}
+		for (Selector selector : refactoredStyleSheet.getAllSelectors()) {
+			if (appliedItemSetSupportHashCodes.contains(selector.selectorHashCode()))
+				selectorsWithChangedDeclarations.add(selector);
+		}
+		Set<Item> unchangedItems = Collections.newSetFromMap(new IdentityHashMap<Item, Boolean>());
+		for (Iterator<Map.Entry<Item, Item>> iterator = updatedDetector.unchangedItemsMapping.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<Item, Item> itemsEntry = iterator.next();
+			if (hasVirtualShorthandDeclarationIn(itemsEntry.getKey(), appliedItemSetSupport) ||
+					hasVirtualShorthandDeclarationIn(itemsEntry.getValue(), selectorsWithChangedDeclarations))
+				iterator.remove();
+			else
+				unchangedItems.add(itemsEntry.getValue());
+		}
+		for (ItemSet itemSet : updatedDetector.C1) {
+			for (Item item : itemSet) {
+				if (!unchangedItems.contains(item))
+					updatedDetector.changedItems.add(item);
+			}
+		}
+
+		return updatedDetector;
+	}
+
+	/**
+	 * Copies the items and the type I and II duplications of the given bucket of the given detector
+	 * for the given bucket of this detector, which has equal declarations in the same order.
+	 * Gives the same results as {@link #findTypeOneAndTwoDuplicationsInBucket(List, boolean, Map)},
+	 * without comparing the declarations.
+	 * @param previousDetector
+	 * @param previousBucket
+	 * @param bucket
+	 * @param newItemSets
+	 */
+	private void copyTypeOneAndTwoDuplicationsInBucket(DuplicationDetector previousDetector, List<Declaration> previousBucket,
+			List<Declaration> bucket, Map<Declaration, ItemSet> newItemSets) {
+
+		Map<Declaration, Declaration> correspondingDeclarations = new HashMap<>();
+		for (int i = 0; i < bucket.size(); i++)
+			correspondingDeclarations.put(previousBucket.get(i), bucket.get(i));
+
+		for (int i = 0; i < bucket.size(); i++) {
+
+			Declaration previousDeclaration = previousBucket.get(i);
+			Declaration currentDeclaration = bucket.get(i);
+
+			/*
+			 * The first declaration of every item is visited before its other declarations,
+			 * so the item is made in the same order as comparing the declarations
+			 */
+			Item previousItem = previousDetector.declarationItemMap.get(previousDeclaration);
+			Item newItem = unchangedItemsMapping.get(previousItem);
+			if (newItem == null) {
+				for (Declaration previousItemDeclaration : previousItem) {
+					if (previousItemDeclaration instanceof ShorthandDeclaration && ((ShorthandDeclaration)previousItemDeclaration).isVirtual())
+						continue; // Type III duplications are found again
+					Declaration declaration = correspondingDeclarations.get(previousItemDeclaration);
+					if (newItem == null) {
+						newItem = new Item(declaration);
+						ItemSet itemSet = new ItemSet();
+						itemSet.add(newItem);
+						newItemSets.put(declaration, itemSet);
+					} else {
+						newItem.add(declaration);
+					}
+				}
+				for (int duplicationType : previousItem.getDuplicationTypes()) {
+					if (duplicationType != 3)
+						newItem.addDuplicationType(duplicationType);
+				}
+				unchangedItemsMapping.put(previousItem, newItem);
+			}
+			declarationItemMap.put(currentDeclaration, newItem);
+
+			List<Declaration> previousTypeIDuplicatedDeclarations = previousDetector.typeOneDuplicatedDeclarations.get(previousDeclaration);
+			if (previousTypeIDuplicatedDeclarations != null)
+				typeOneDuplicatedDeclarations.put(currentDeclaration, getCorrespondingDeclarations(previousTypeIDuplicatedDeclarations, correspondingDeclarations));
+
+			List<Declaration> previousTypeIIDuplicatedDeclarations = previousDetector.typeTwoDuplicatedDeclarations.get(previousDeclaration);
+			if (previousTypeIIDuplicatedDeclarations != null)
+				typeTwoDuplicatedDeclarations.put(currentDeclaration, getCorrespondingDeclarations(previousTypeIIDuplicatedDeclarations, correspondingDeclarations));
+		}
+
+	}
+
+	private static List<Declaration> getCorrespondingDeclarations(List<Declaration> declarations, Map<Declaration, Declaration> correspondingDeclarations) {
+		List<Declaration> toReturn = new ArrayList<>(declarations.size());
+		for (Declaration declaration : declarations)
+			toReturn.add(correspondingDeclarations.get(declaration));
+		return toReturn;
+	}
+
+	/**
+	 * Checks whether the given lists have equal declarations in the same order
+	 * @param declarations1
+	 * @param declarations2
+	 * @return
+	 */
+	private static boolean declarationsAreEqual(List<Declaration> declarations1, List<Declaration> declarations2) {
+		if (declarations1 == null || declarations1.size() != declarations2.size())
+			return false;
+		for (int i = 0; i < declarations1.size(); i++) {
+			if (!declarations1.get(i).declarationEquals(declarations2.get(i)))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean hasVirtualShorthandDeclarationIn(Item item, Set<Selector> selectors) {
+		for (Declaration declaration : item) {
+			if (declaration instanceof ShorthandDeclaration && ((ShorthandDeclaration)declaration).isVirtual() &&
+					selectors.contains(declaration.getSelector()))
+				return true;
+		}
+		return false;
+	}
+
 	public List<ItemSetList> apriori(int minsup) {
 		Apriori apriori = new Apriori(C1);
 		return apriori.apriori(minsup);
 	}
 	
+	/**
+	 * Mines the frequent ItemSets using the algorithm set by {@link #setFrequentItemSetMiner(FrequentItemSetMiner)}.
+	 * The results are the same for all algorithms, but the ItemSets may be in a different order.
+	 * @param minSupport
+	 * @param removeSubsets
+	 * @return
+	 */
+	public List<ItemSetList> mineFrequentItemSets(int minSupport, boolean removeSubsets) {
+		switch (frequentItemSetMiner) {
+		case ECLAT:
+			return eclat(minSupport, removeSubsets);
+		case FPGROWTH:
+		default:
+			return fpGrowth(minSupport, removeSubsets);
+		}
+	}
+
+	/**
+	 * Mines the frequent ItemSets like {@link #mineFrequentItemSets(int, boolean)},
+	 * giving each of them to the given sink instead of returning them all together
+	 * @param minSupport
+	 * @param removeSubsets
+	 * @param sink
+	 */
+	public void mineFrequentItemSets(int minSupport, boolean removeSubsets, ItemSetSink sink) {
+		switch (frequentItemSetMiner) {
+		case ECLAT:
+			eclat(minSupport, removeSubsets, sink, null);
+			break;
+		case FPGROWTH:
+		default:
+			fpGrowth(minSupport, removeSubsets, sink, null);
+		}
+	}
+
 	public List<ItemSetList> fpGrowth(int minSupport, boolean removeSubsets) {
 		return fpGrowth(minSupport, removeSubsets, null);
 	}
 
 	public List<ItemSetList> fpGrowth(int minSupport, boolean removeSubsets, ProgressMonitor monitor) {
+		ItemSetListCollector collector = new ItemSetListCollector();
+		fpGrowth(minSupport, removeSubsets, collector, monitor);
+		return collector.getItemSetLists();
+	}
+
+	/**
+	 * Mines the same ItemSets as {@link #fpGrowth(int, boolean, ProgressMonitor)},
+	 * giving each of them to the given sink as soon as it is found
+	 * (see {@link FPGrowth#mine(java.util.Collection, int, ItemSetSink)})
+	 * @param minSupport
+	 * @param removeSubsets
+	 * @param sink
+	 * @param monitor
+	 */
+	public void fpGrowth(int minSupport, boolean removeSubsets, ItemSetSink sink, ProgressMonitor monitor) {
 		
 		LOGGER.info("Applying fpgrowth algorithm with minimum support count of " + minSupport + " on " + stylesheet.getFilePath());
 		long start = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
 		
+		List<TreeSet<Item>> itemSets = getTransactions(minSupport);
+
+		FPGrowth fpGrowth = new FPGrowth(removeSubsets, monitor);
+		fpGrowth.setNumberOfThreads(numberOfThreads);
+		fpGrowth.setMemoryLimit(fpGrowthMemoryLimit);
+		fpGrowth.setMaximumItemSetSize(maximumItemSetSize);
+		fpGrowth.mine(itemSets, minSupport, sink);
+		long end = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+		long time = (end - start) / 1000000L;
+		LOGGER.info("Done FP-Growth in " + time + " ms");
+	}
+
+	/**
+	 * Returns the K grouping refactoring opportunities with the biggest impacts, i.e.,
+	 * the frequent ItemSets which are applicable and reduce the size of the style sheet the most,
+	 * in the descending order of their impacts (see {@link FPGrowth#mineTopGroupingOpportunities(java.util.Collection, int, int)}).
+	 * @param minSupport
+	 * @param k
+	 * @return
+	 */
+	public List<ItemSet> getTopGroupingOpportunities(int minSupport, int k) {
+
+		LOGGER.info("Applying fpgrowth algorithm for the top " + k + " grouping opportunities with minimum support count of " + minSupport + " on " + stylesheet.getFilePath());
+		long start = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+
+		FPGrowth fpGrowth = new FPGrowth(false);
+		fpGrowth.setNumberOfThreads(numberOfThreads);
+		fpGrowth.setMemoryLimit(fpGrowthMemoryLimit);
+		fpGrowth.setMaximumItemSetSize(maximumItemSetSize);
+		List<ItemSet> results = fpGrowth.mineTopGroupingOpportunities(getTransactions(minSupport), minSupport, k);
+		long end = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+		long time = (end - start) / 1000000L;
+		LOGGER.info("Done FP-Growth in " + time + " ms");
+
+		return results;
+	}
+
+	public List<ItemSetList> eclat(int minSupport, boolean removeSubsets) {
+		return eclat(minSupport, removeSubsets, null);
+	}
+
+	/**
+	 * Mines the same ItemSets as {@link #fpGrowth(int, boolean, ProgressMonitor)},
+	 * using {@link Eclat}. The ItemSets may be in a different order.
+	 * @param minSupport
+	 * @param removeSubsets
+	 * @param monitor
+	 * @return
+	 */
+	public List<ItemSetList> eclat(int minSupport, boolean removeSubsets, ProgressMonitor monitor) {
+		ItemSetListCollector collector = new ItemSetListCollector();
+		eclat(minSupport, removeSubsets, collector, monitor);
+		return collector.getItemSetLists();
+	}
+
+	/**
+	 * Mines the same ItemSets as {@link #eclat(int, boolean, ProgressMonitor)},
+	 * giving each of them to the given sink as soon as it is found
+	 * @param minSupport
+	 * @param removeSubsets
+	 * @param sink
+	 * @param monitor
+	 */
+	public void eclat(int minSupport, boolean removeSubsets, ItemSetSink sink, ProgressMonitor monitor) {
+
+		LOGGER.info("Applying eclat algorithm with minimum support count of " + minSupport + " on " + stylesheet.getFilePath());
+		long start = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+
+		Eclat eclat = new Eclat(removeSubsets, monitor);
+		eclat.setMaximumItemSetSize(maximumItemSetSize);
+		eclat.mine(getTransactions(minSupport), minSupport, sink);
+		long end = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+		long time = (end - start) / 1000000L;
+		LOGGER.info("Done Eclat in " + time + " ms");
+	}
+
+	/**
+	 * Returns the data set mined by FP-Growth and Eclat: the items having the given minimum support
+	 * of every selector having at least one of them
+	 * @param minSupport
+	 * @return
+	 */
+	public List<TreeSet<Item>> getTransactions(int minSupport) {
 		List<TreeSet<Item>> itemSets = new ArrayList<>(stylesheet.getNumberOfSelectors());
 
 		for (Selector s : stylesheet.getAllSelectors()) {
@@ -449,14 +991,112 @@ public class DuplicationDetector {
 			if (currentItems.size() > 0)
 				itemSets.add(currentItems);
 		}
+		return itemSets;
+	}
+
+	/**
+	 * Updates the given results of {@link #fpGrowth(int, boolean)} (without removing subsets),
+	 * found for the detector from which this detector is made using
+	 * {@link #getDuplicationDetectorAfterGroupingRefactoring(StyleSheet, ItemSet)}.
+	 * The ItemSets having only unchanged items have the same support as before, so they are only copied.
+	 * FP-Growth is applied only on the selectors having changed items, to find the ItemSets
+	 * having at least one changed item.
+	 * The results are the same as {@link #fpGrowth(int, boolean)}, but the ItemSets may be in a different order.
+	 * @param minSupport
+	 * @param previousResults
+	 * @return
+	 */
+	public List<ItemSetList> fpGrowthAfterGroupingRefactoring(int minSupport, List<ItemSetList> previousResults) {
+
+		if (unchangedItemsMapping == null)
+			throw new IllegalStateException("This detector is not made using getDuplicationDetectorAfterGroupingRefactoring()");
+
+		LOGGER.info("Updating fpgrowth results with minimum support count of " + minSupport + " on " + stylesheet.getFilePath());
+		long start = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+
+		Map<Integer, ItemSetList> resultItemSetLists = new TreeMap<>();
+
+		for (ItemSetList itemSetList : previousResults) {
+			for (ItemSet itemSet : itemSetList) {
+				ItemSet updatedItemSet = new ItemSet();
+				for (Item item : itemSet) {
+					Item updatedItem = unchangedItemsMapping.get(item);
+					if (updatedItem == null) {
+						updatedItemSet = null;
+						break;
+					}
+					updatedItemSet.add(updatedItem);
+				}
+				if (updatedItemSet != null)
+					addItemSet(resultItemSetLists, updatedItemSet);
+			}
+		}
+
+		Set<Item> frequentChangedItems = new HashSet<>();
+		for (Item item : changedItems) {
+			if (item.getSupportSize() >= minSupport)
+				frequentChangedItems.add(item);
+		}
+
+		List<TreeSet<Item>> itemSets = new ArrayList<>();
+
+		for (Selector s : stylesheet.getAllSelectors()) {
+			TreeSet<Item> currentItems = new TreeSet<>();
+			boolean hasChangedItems = false;
+			for (Declaration d : s.getAllDeclarationsIncludingVirtualShorthands()) {
+				Item item = declarationItemMap.get(d);
+				if (item != null && item.getSupportSize() >= minSupport) {
+					currentItems.add(item);
+					if (frequentChangedItems.contains(item))
+						hasChangedItems = true;
+				}
+			}
+			// Other selectors cannot be in the support of the ItemSets having changed items
+			if (hasChangedItems)
+				itemSets.add(currentItems);
+		}
+
+		/*
+		 * Items frequent in the style sheet may still be in less than minSupport of these selectors.
+		 * FP-Growth expects the items of its data set to be frequent in it (e.g., along a single path), so they are removed.
+		 */
+		Map<Item, Integer> supportsInItemSets = new HashMap<>();
+		for (TreeSet<Item> currentItems : itemSets) {
+			for (Item item : currentItems) {
+				Integer support = supportsInItemSets.get(item);
+				supportsInItemSets.put(item, support == null ? 1 : support + 1);
+			}
+		}
+		for (Iterator<TreeSet<Item>> iterator = itemSets.iterator(); iterator.hasNext();) {
+			TreeSet<Item> currentItems = iterator.next();
+			currentItems.removeIf(item -> supportsInItemSets.get(item) < minSupport);
+			if (currentItems.isEmpty())
+				iterator.remove();
+		}
+
+		FPGrowth fpGrowth = new FPGrowth(false);
+		fpGrowth.setNumberOfThreads(numberOfThreads);
+		fpGrowth.setMemoryLimit(fpGrowthMemoryLimit);
+		fpGrowth.setMaximumItemSetSize(maximumItemSetSize);
+		for (ItemSetList itemSetList : fpGrowth.mine(itemSets, minSupport, frequentChangedItems)) {
+			for (ItemSet itemSet : itemSetList)
+				addItemSet(resultItemSetLists, itemSet);
+		}
 
-		FPGrowth fpGrowth = new FPGrowth(removeSubsets, monitor);
-		List<ItemSetList> results = fpGrowth.mine(itemSets, minSupport);
 		long end = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
 		long time = (end - start) / 1000000L;
-		LOGGER.info("Done FP-Growth in " + time + " ms");
-		
-		return results;
+		LOGGER.info("Done updating FP-Growth results in " + time + " ms");
+
+		return new ArrayList<>(resultItemSetLists.values());
+	}
+
+	private static void addItemSet(Map<Integer, ItemSetList> itemSetLists, ItemSet itemSet) {
+		ItemSetList itemSetList = itemSetLists.get(itemSet.size());
+		if (itemSetList == null) {
+			itemSetList = new ItemSetList();
+			itemSetLists.put(itemSet.size(), itemSetList);
+		}
+		itemSetList.add(itemSet);
 	}
 
 	/**
@@ -0,0 +1,303 @@
+package ca.concordia.cssanalyser.analyser.duplication.eclat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import ca.concordia.cssanalyser.analyser.duplication.fpgrowth.FPGrowth;
+import ca.concordia.cssanalyser.analyser.duplication.items.Item;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSet;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetListCollector;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetSink;
+import ca.concordia.cssanalyser.analyser.progressmonitor.ProgressMonitor;
+import ca.concordia.cssanalyser.analyser.progressmonitor.ProgressMonitorDelegator;
+
+/**
+ * Mines the frequent ItemSets of a data set, like {@link FPGrowth}, using vertical tid-lists.
+ * Every frequent item is kept with the bit set of the transactions (i.e., the selectors) having it,
+ * and the ItemSets are extended depth first, intersecting the bit sets of their items.
+ * The results are the same as the ones of {@link FPGrowth}, but the ItemSets may be in a different order.
+ */
+public class Eclat {
+
+	private final boolean removeSubsets;
+	private final ProgressMonitorDelegator monitor;
+	// Receives the resulting ItemSets
+	private ItemSetSink sink;
+
+	// The frequent items, in the ascending order of their supports, and their tid-lists
+	private Item[] items;
+	private long[][] tidLists;
+	private int[] supports;
+	private int minSupport;
+	// The maximum number of items of the mined ItemSets, negative for no limit
+	private int maximumItemSetSize = -1;
+
+	public Eclat(boolean removeSubSets) {
+		this(removeSubSets, null);
+	}
+
+	/**
+	 * Creates a new object of Eclat class
+	 * @param removeSubSets Identify whether the subsumed ItemSets must be removed or not,
+	 * as in {@link FPGrowth#FPGrowth(boolean, ProgressMonitor)}.
+	 * If so, only the closed ItemSets are mined: every closed ItemSet is reached once,
+	 * from its prefix-preserving parent, and the other ItemSets are not visited.
+	 * @param monitor
+	 */
+	public Eclat(boolean removeSubSets, ProgressMonitor monitor) {
+		this.removeSubsets = removeSubSets;
+		this.monitor = new ProgressMonitorDelegator(monitor);
+	}
+
+	/**
+	 * Sets the maximum number of items of the mined ItemSets, as in {@link FPGrowth#setMaximumItemSetSize(int)}.
+	 * By default, there is no limit.
+	 * @param maximumItemSetSize
+	 */
+	public void setMaximumItemSetSize(int maximumItemSetSize) {
+		this.maximumItemSetSize = maximumItemSetSize;
+	}
+
+	public List<ItemSetList> mine(Collection<TreeSet<Item>> dataSet, int minSupport) {
+		ItemSetListCollector collector = new ItemSetListCollector();
+		mine(dataSet, minSupport, collector);
+		return collector.getItemSetLists();
+	}
+
+	/**
+	 * Mines the frequent ItemSets, giving each of them to the given sink as soon as it is found,
+	 * so they are not kept in memory. Only the tid-lists of the current ItemSets are kept.
+	 * @param dataSet
+	 * @param minSupport
+	 * @param sink
+	 */
+	public void mine(Collection<TreeSet<Item>> dataSet, int minSupport, ItemSetSink sink) {
+
+		this.minSupport = minSupport;
+		this.sink = sink;
+		buildTidLists(dataSet);
+
+		monitor.setFinalState(items.length);
+		if (removeSubsets)
+			mineClosedItemSets(dataSet.size());
+		else
+			mineAllItemSets();
+		monitor.finished();
+
+		tidLists = null;
+	}
+
+	/*
+	 * Transposes the data set: the tid-list of an item has the bits
+	 * of the indices of the transactions having the item.
+	 * Infrequent items are dropped.
+	 */
+	private void buildTidLists(Collection<TreeSet<Item>> dataSet) {
+		int words = (dataSet.size() + 63) / 64;
+		Map<Item, long[]> itemTidLists = new LinkedHashMap<>();
+		int tid = 0;
+		for (TreeSet<Item> transaction : dataSet) {
+			for (Item item : transaction) {
+				long[] tidList = itemTidLists.get(item);
+				if (tidList == null) {
+					tidList = new long[words];
+					itemTidLists.put(item, tidList);
+				}
+				tidList[tid >> 6] |= 1L << tid;
+			}
+			tid++;
+		}
+
+		List<Item> frequentItems = new ArrayList<>();
+		Map<Item, Integer> itemSupports = new HashMap<>();
+		for (Map.Entry<Item, long[]> entry : itemTidLists.entrySet()) {
+			int support = cardinality(entry.getValue());
+			if (support >= minSupport) {
+				frequentItems.add(entry.getKey());
+				itemSupports.put(entry.getKey(), support);
+			}
+		}
+		// Less frequent items first, so the tid-lists shrink faster
+		Collections.sort(frequentItems, Comparator.comparing(itemSupports::get));
+
+		items = frequentItems.toArray(new Item[frequentItems.size()]);
+		tidLists = new long[items.length][];
+		supports = new int[items.length];
+		for (int i = 0; i < items.length; i++) {
+			tidLists[i] = itemTidLists.get(items[i]);
+			supports[i] = itemSupports.get(items[i]);
+		}
+	}
+
+	private void mineAllItemSets() {
+		if (!isWithinMaximumSize(1))
+			return;
+		int[] extensions = new int[items.length];
+		for (int i = 0; i < items.length; i++)
+			extensions[i] = i;
+		mineAllItemSets(new ArrayList<>(), extensions, tidLists);
+	}
+
+	/**
+	 * Adds the given prefix extended with each of the given items,
+	 * and mines the ItemSets extending each of the new ones with the items after its last item.
+	 * @param prefix
+	 * @param extensions The items which can extend the prefix
+	 * @param extensionTidLists The tid-lists of the prefix extended with each of the items
+	 */
+	private void mineAllItemSets(List<Item> prefix, int[] extensions, long[][] extensionTidLists) {
+		boolean topLevel = prefix.isEmpty();
+		for (int i = 0; i < extensions.length; i++) {
+			if (monitor.shouldStop())
+				return;
+			prefix.add(items[extensions[i]]);
+			addItemSet(prefix);
+
+			int[] newExtensions = new int[extensions.length - i - 1];
+			long[][] newExtensionTidLists = new long[newExtensions.length][];
+			int numberOfNewExtensions = 0;
+			for (int j = i + 1; j < extensions.length; j++) {
+				long[] tidList = intersect(extensionTidLists[i], extensionTidLists[j]);
+				if (cardinality(tidList) >= minSupport) {
+					newExtensions[numberOfNewExtensions] = extensions[j];
+					newExtensionTidLists[numberOfNewExtensions] = tidList;
+					numberOfNewExtensions++;
+				}
+			}
+			if (numberOfNewExtensions > 0 && isWithinMaximumSize(prefix.size() + 1)) {
+				mineAllItemSets(prefix,
+						Arrays.copyOf(newExtensions, numberOfNewExtensions),
+						Arrays.copyOf(newExtensionTidLists, numberOfNewExtensions));
+			}
+
+			prefix.remove(prefix.size() - 1);
+			if (topLevel)
+				monitor.worked(1);
+		}
+	}
+
+	/*
+	 * Mines the closed ItemSets with prefix-preserving closure extensions (as in LCM):
+	 * a closed ItemSet is extended by an item after its core item, and the closure
+	 * of the extension is kept only if the extension added no item before that item.
+	 */
+	private void mineClosedItemSets(int numberOfTransactions) {
+		long[] allTransactions = new long[(numberOfTransactions + 63) / 64];
+		for (int tid = 0; tid < numberOfTransactions; tid++)
+			allTransactions[tid >> 6] |= 1L << tid;
+		boolean[] closure = new boolean[items.length];
+		int closureSize = 0;
+		for (int i = 0; i < items.length; i++) {
+			if (supports[i] == numberOfTransactions) {
+				closure[i] = true;
+				closureSize++;
+			}
+		}
+		// Every closed ItemSet has the items in all transactions
+		if (!isWithinMaximumSize(closureSize))
+			return;
+		// The items in all transactions are closed on their own
+		if (closureSize > 0)
+			addItemSet(closure);
+		mineClosedItemSets(closure, allTransactions, -1, closureSize);
+	}
+
+	/**
+	 * Mines the closed ItemSets which are prefix-preserving closure extensions of the given one
+	 * @param closedItemSet Whether each item is in the closed ItemSet
+	 * @param tidList The tid-list of the closed ItemSet
+	 * @param coreItem The item by which the closed ItemSet was reached, -1 for the closure of the empty set
+	 * @param size The number of items of the closed ItemSet
+	 */
+	private void mineClosedItemSets(boolean[] closedItemSet, long[] tidList, int coreItem, int size) {
+		boolean topLevel = coreItem < 0;
+		for (int i = coreItem + 1; i < items.length; i++) {
+			if (monitor.shouldStop())
+				return;
+			if (!closedItemSet[i] && isWithinMaximumSize(size + 1)) {
+				long[] newTidList = intersect(tidList, tidLists[i]);
+				int support = cardinality(newTidList);
+				if (support >= minSupport && !hasItemInAllTransactions(newTidList, support, closedItemSet, i)) {
+					boolean[] newClosedItemSet = closedItemSet.clone();
+					newClosedItemSet[i] = true;
+					int newSize = size + 1;
+					for (int j = i + 1; j < items.length; j++) {
+						if (!newClosedItemSet[j] && supports[j] >= support && containsAll(tidLists[j], newTidList)) {
+							newClosedItemSet[j] = true;
+							newSize++;
+						}
+					}
+					// The closed ItemSets extending it are even bigger
+					if (isWithinMaximumSize(newSize)) {
+						addItemSet(newClosedItemSet);
+						mineClosedItemSets(newClosedItemSet, newTidList, i, newSize);
+					}
+				}
+			}
+			if (topLevel)
+				monitor.worked(1);
+		}
+	}
+
+	/*
+	 * Whether an item before the given one, which is not in the given ItemSet,
+	 * is in all of the transactions of the given tid-list
+	 */
+	private boolean hasItemInAllTransactions(long[] tidList, int support, boolean[] itemSet, int item) {
+		for (int j = 0; j < item; j++) {
+			if (!itemSet[j] && supports[j] >= support && containsAll(tidLists[j], tidList))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean isWithinMaximumSize(int numberOfItems) {
+		return maximumItemSetSize < 0 || numberOfItems <= maximumItemSetSize;
+	}
+
+	private static long[] intersect(long[] tidList1, long[] tidList2) {
+		long[] intersection = new long[tidList1.length];
+		for (int i = 0; i < intersection.length; i++)
+			intersection[i] = tidList1[i] & tidList2[i];
+		return intersection;
+	}
+
+	private static boolean containsAll(long[] tidList, long[] otherTidList) {
+		for (int i = 0; i < tidList.length; i++) {
+			if ((otherTidList[i] & ~tidList[i]) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static int cardinality(long[] tidList) {
+		int cardinality = 0;
+		for (long word : tidList)
+			cardinality += Long.bitCount(word);
+		return cardinality;
+	}
+
+	private void addItemSet(boolean[] itemSet) {
+		List<Item> itemsOfItemSet = new ArrayList<>();
+		for (int i = 0; i < itemSet.length; i++) {
+			if (itemSet[i])
+				itemsOfItemSet.add(items[i]);
+		}
+		addItemSet(itemsOfItemSet);
+	}
+
+	private void addItemSet(List<Item> itemsOfItemSet) {
+		ItemSet newItemSet = new ItemSet();
+		newItemSet.addAll(itemsOfItemSet);
+		sink.accept(newItemSet);
+	}
+}
@@ -1,6 +1,9 @@
 package ca.concordia.cssanalyser.analyser.duplication.fpgrowth;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -8,21 +11,44 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.Stack;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import ca.concordia.cssanalyser.analyser.duplication.items.GroupingRefactoringImpactBound;
 import ca.concordia.cssanalyser.analyser.duplication.items.Item;
 import ca.concordia.cssanalyser.analyser.duplication.items.ItemSet;
 import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetListCollector;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetSink;
+import ca.concordia.cssanalyser.analyser.duplication.items.TopGroupingOpportunitiesCollector;
 import ca.concordia.cssanalyser.analyser.progressmonitor.ProgressMonitorDelegator;
 import ca.concordia.cssanalyser.analyser.progressmonitor.ProgressMonitor;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
 
 public class FPGrowth {
 	
-	private final Map<Integer, ItemSetList> resultItemSetLists;
+	// Receives the resulting ItemSets
+	private ItemSetSink sink;
+	// The results of a partition, in the order they were found, when mining in parallel
+	private List<ItemSet> partitionItemSets;
 	private final boolean removeSubsets;
-	private int maxItemSetSize = -1;
+	// The resulting ItemSets by their support, when mining only the closed ItemSets
+	private final Map<Iterable<Selector>, List<ItemSet>> closedItemSetsBySupport;
+	private Set<Item> requiredItems;
+	private int numberOfThreads = 1;
+	// The memory, in bytes, which the FP-tree of the data set may take, negative for no limit
+	private long memoryLimit = -1;
+	// The maximum number of items of the mined ItemSets, negative for no limit
+	private int maximumItemSetSize = -1;
+	// When mining the top-K grouping opportunities, the best ones found so far
+	private int topK = -1;
+	private GroupingRefactoringImpactBound impactBound;
+	private TopGroupingOpportunitiesCollector topItemSets;
 	
 	private final ProgressMonitorDelegator monitor;
 	
@@ -37,238 +63,551 @@ public class FPGrowth {
 	 * ItemSet is the one of which all items are exists in a 
 	 * bigger ItemSet, and the support of the bigger ItemSet
 	 * is the same as the support set of the smaller ItemSet.
+	 * If so, only the closed ItemSets (the ones which are not subsumed)
+	 * are mined, and the subtrees which only lead to subsumed ItemSets
+	 * are not visited.
 	 * 
 	 * @param dummyObject a dummy object of type ItemSetList
 	 * (or any subclass). The resulting ItemSetLists will
 	 * have the same type if this given dummy object.
 	 */
 	public FPGrowth(boolean removeSubSets, ProgressMonitor monitor) {
-		this.resultItemSetLists = new HashMap<>();
 		this.removeSubsets = removeSubSets;
+		this.closedItemSetsBySupport = new HashMap<>();
 		this.monitor = new ProgressMonitorDelegator(monitor);
 	}
+
+	/*
+	 * Creates an object for mining a part of the tree of the given object,
+	 * having its own results
+	 */
+	private FPGrowth(FPGrowth fpGrowth) {
+		this.removeSubsets = fpGrowth.removeSubsets;
+		this.closedItemSetsBySupport = new HashMap<>();
+		this.requiredItems = fpGrowth.requiredItems;
+		this.monitor = fpGrowth.monitor;
+		this.maximumItemSetSize = fpGrowth.maximumItemSetSize;
+		this.topK = fpGrowth.topK;
+		this.impactBound = fpGrowth.impactBound;
+		if (topK > 0) {
+			this.topItemSets = new TopGroupingOpportunitiesCollector(topK, impactBound);
+			this.sink = topItemSets;
+		} else {
+			this.partitionItemSets = new ArrayList<>();
+			this.sink = partitionItemSets::add;
+		}
+	}
+
+	/**
+	 * Sets the number of threads mining the conditional trees of the items
+	 * of the FP-tree in parallel. The results are the same, in the same order,
+	 * as when mining in one thread (the default).
+	 * @param numberOfThreads
+	 */
+	public void setNumberOfThreads(int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
 	
+	/**
+	 * Sets the memory, in bytes, which the nodes of the FP-tree of the data set may take
+	 * (see {@link FPTree#getMaximumMemoryUsage(Collection)}). By default, there is no limit.
+	 * A data set exceeding the limit is projected to temporary files, as in partition-based FP-Growth:
+	 * the partition of each frequent item has the transactions of the item (i.e., its conditional pattern base),
+	 * and the partitions are mined one by one in one thread, each with its own FP-tree,
+	 * so the conditional trees of the other items are not kept in memory.
+	 * The results are the same as when mining the FP-tree of the data set.
+	 * @param memoryLimit
+	 */
+	public void setMemoryLimit(long memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * Sets the maximum number of items of the mined ItemSets. By default, there is no limit.
+	 * The ItemSets having more items are not mined, and the subtrees which only lead to them are not visited,
+	 * so a single path of many items does not have to be expanded to all of its subsets.
+	 * When removing subsets, the closed ItemSets having at most the given number of items are mined.
+	 * @param maximumItemSetSize
+	 */
+	public void setMaximumItemSetSize(int maximumItemSetSize) {
+		this.maximumItemSetSize = maximumItemSetSize;
+	}
+
 	public List<ItemSetList> mine(Collection<TreeSet<Item>> dataSet, int minSupport) {
-		
-		FPTree tree = generateFPTree(dataSet);
+		return mine(dataSet, minSupport, (Set<Item>)null);
+	}
 
-		fpGrowth(tree, new HashSet<Item>(), minSupport);
+	/**
+	 * Mines the frequent ItemSets, giving each of them to the given sink as soon as it is found,
+	 * so they are not kept in memory. The sink receives the same ItemSets as {@link #mine(Collection, int)} returns.
+	 * When mining in more than one thread, the ItemSets of the conditional tree of each item
+	 * are kept until the ones of the items before it are given to the sink,
+	 * so the sink receives them in the same order as when mining in one thread.
+	 * When removing subsets, the closed ItemSets are still kept, to find the subsumed ones.
+	 * @param dataSet
+	 * @param minSupport
+	 * @param sink
+	 */
+	public void mine(Collection<TreeSet<Item>> dataSet, int minSupport, ItemSetSink sink) {
+		this.requiredItems = null;
+		this.sink = sink;
+		mineDataSet(dataSet, minSupport);
+	}
+
+	/**
+	 * Mines only the frequent ItemSets having at least one of the given items.
+	 * Subtrees which cannot lead to such ItemSets are not visited.
+	 * @param dataSet
+	 * @param minSupport
+	 * @param requiredItems Every returned ItemSet has at least one of these items.
+	 * If null, all frequent ItemSets are returned.
+	 * @return
+	 */
+	public List<ItemSetList> mine(Collection<TreeSet<Item>> dataSet, int minSupport, Set<Item> requiredItems) {
 		
-		tree = null;
-
-		// Deliver results in order.
-		List<Integer> keys = new ArrayList<>(resultItemSetLists.keySet());
-		Collections.sort(keys);
-		List<ItemSetList> results = new ArrayList<>();
-		for (int i : keys) {
-			ItemSetList itemSetList = resultItemSetLists.get(i);
-			if (itemSetList != null) {
-				results.add(itemSetList);
-			}
-		}
+		if (requiredItems != null && removeSubsets)
+			throw new IllegalArgumentException("Subsets cannot be removed when only mining the ItemSets having the required items");
+		this.requiredItems = requiredItems;
+		ItemSetListCollector collector = new ItemSetListCollector();
+		this.sink = collector;
+
+		mineDataSet(dataSet, minSupport);
 
-		return results;
+		return collector.getItemSetLists();
 	}
 
-	private FPTree generateFPTree(Collection<TreeSet<Item>> itemSet) {
-		// First pass over the Stylesheet (dataset)
-		FPTree tree = new FPTree();
+	/**
+	 * Mines only the K frequent ItemSets having the biggest {@link ItemSet#getGroupingRefactoringImpact()},
+	 * among the ones with a positive impact which are {@link ItemSet#isApplicable()}.
+	 * The subtrees of which the ItemSets cannot have a bigger impact than the K-th best ItemSet
+	 * found so far, according to a {@link GroupingRefactoringImpactBound}, are not visited.
+	 * Of the ItemSets with the same impact, the ones found first are kept,
+	 * so the results do not depend on the number of threads.
+	 * @param dataSet
+	 * @param minSupport
+	 * @param k
+	 * @return The ItemSets, in the descending order of their impacts
+	 */
+	public List<ItemSet> mineTopGroupingOpportunities(Collection<TreeSet<Item>> dataSet, int minSupport, int k) {
 
-		for (TreeSet<Item> orderedImtes : itemSet) {
-			List<Item> items = new ArrayList<>(orderedImtes.descendingSet());
-			if (items.size() > 0)
-				insertTree(items, tree.getRoot(), tree);
-		}
+		if (removeSubsets)
+			throw new IllegalArgumentException("Subsets cannot be removed when only mining the top grouping opportunities");
+		this.requiredItems = null;
+		Set<Item> items = new HashSet<>();
+		for (TreeSet<Item> transaction : dataSet)
+			items.addAll(transaction);
+		topK = k;
+		impactBound = new GroupingRefactoringImpactBound(items);
+		topItemSets = new TopGroupingOpportunitiesCollector(k, impactBound);
+		sink = topItemSets;
 
-		return tree;
-	}
+		mineDataSet(dataSet, minSupport);
 
-	private void insertTree(List<Item> items, Node root, FPTree tree) {
-		Item item = items.get(0);
-		items.remove(0);
-		Node node = root.getFirstChildForItem(item);
-		if (node != null) {
-			node.incrementNumberOfTransactions();
-		} else {
-			node = new Node(item, tree, 1);
-			tree.addNodeLinkItem(node);
-			root.addChild(node);
-		}
-		if (items.size() > 0)
-			insertTree(items, node, tree);
+		return topItemSets.getTopItemSets();
 	}
 
-	private Set<Set<Item>> getAllSubsets(Collection<Item> s) {
-		// Copy
-		List<Item> items = new ArrayList<>(s);
-		Set<Set<Item>> toReturn = new HashSet<>();
-
-		// Find subsets using binary representation. Fast :)
-		for (int i = 1; i < Math.pow(2, s.size()); i++) {
-			Set<Item> newSubSet = new HashSet<>();
-			String bits = Integer.toBinaryString(i);
-			// Add leading zeros
-			int zerosToAdd = s.size() - bits.length();
-			for (int j = 0; j < zerosToAdd; j++) {
-				bits = "0" + bits;
-			}
-			for (int j = 0; j < bits.length(); j++) {
-				if (bits.charAt(j) == '1')
-					newSubSet.add(items.get(bits.length() - j - 1));
-			}
-			toReturn.add(newSubSet);
-		}
+	private void mineDataSet(Collection<TreeSet<Item>> dataSet, int minSupport) {
 
-		return toReturn;
+		if (memoryLimit >= 0 && FPTree.getMaximumMemoryUsage(dataSet) > memoryLimit)
+			mineProjections(dataSet, minSupport);
+		else
+			mine(new FPTree(dataSet), minSupport);
 	}
-	
-	private void fpGrowth(FPTree tree, Set<Item> currentItems, int minSupport) {
-		fpGrowth(tree, currentItems, minSupport, true);
+
+	private void mine(FPTree tree, int minSupport) {
+
+		if (numberOfThreads < 2 || tree.getHeaderTableSize(0) < 2 || tree.hasASinglePath(0))
+			fpGrowth(tree, 0, new int[tree.getMaximumDepth()], minSupport);
+		else
+			fpGrowthInParallel(tree, minSupport);
 	}
-	
-	private void fpGrowth(FPTree tree, Set<Item> currentItems, int minSupport, boolean topLevel) {
+
+	/**
+	 * Mines the tree of the given depth
+	 * @param tree
+	 * @param depth
+	 * @param currentItems The ids of the current items are the first depth elements
+	 * @param minSupport
+	 */
+	private void fpGrowth(FPTree tree, int depth, int[] currentItems, int minSupport) {
+		boolean topLevel = depth == 0;
 		if (topLevel && monitor != null) {
-			monitor.setFinalState(tree.getHeaderTable().size());
+			monitor.setFinalState(tree.getHeaderTableSize(depth));
 		}
-		if (tree.hasASinglePath()) {
+		boolean currentItemsRequired = hasRequiredItem(tree, currentItems, depth);
+		if (tree.hasASinglePath(depth)) {
 			// All combinations may be required
-			Set<Item> itemsAlongThePath = new LinkedHashSet<>();
-			Node node = tree.getRoot();
-			// Get items along the single path
-			while (node.getChildern().iterator().hasNext()) {
-				node = node.getChildern().iterator().next();
-				itemsAlongThePath.add(node.getItem());
-			}
+			Set<Item> itemsAlongThePath = new LinkedHashSet<>(tree.getItemsAlongTheSinglePath(depth));
+			Set<Item> currentItemsSet = getItems(tree, currentItems, depth);
 			if (removeSubsets) {
-				// Don't get all subsets, many of them will be removed
-				// Only get the maximal ones along the path 
+				// Don't get all subsets, only the closed ones along the path:
+				// the ones ending where the support drops, and the longest one
 				List<Set<Item>> itemSetsToConsider = new ArrayList<>();
-				ItemSet itemsSoFar = new ItemSet();
-				int lastSize = 0;
-				for (Item item : itemsAlongThePath) {
-					itemsSoFar.add(item);
-					if (itemsSoFar.getSupportSize() < lastSize) {
-						HashSet<Item> copy = new HashSet<>(itemsSoFar);
-						copy.remove(item);
-						itemSetsToConsider.add(copy);
-					}
-					lastSize = itemsSoFar.getSupportSize();
+				List<Item> pathItems = new ArrayList<>(itemsAlongThePath);
+				int[] supports = tree.getSupportsAlongTheSinglePath(depth);
+				for (int i = 1; i < pathItems.size(); i++) {
+					if (supports[i] < supports[i - 1])
+						itemSetsToConsider.add(new HashSet<>(pathItems.subList(0, i)));
 				}
-				// The longest set is always a desired itemset
 				itemSetsToConsider.add(itemsAlongThePath);
 				for (Set<Item> itemSet : itemSetsToConsider) {
-					itemSet.addAll(currentItems);
-					addItemSet(itemSet);
+					itemSet.addAll(currentItemsSet);
+					if (isWithinMaximumSize(itemSet.size()))
+						addItemSet(itemSet);
 				}
 			} else {
-				Set<Set<Item>> allSubsets = getAllSubsets(itemsAlongThePath);
-				for (Set<Item> itemSet : allSubsets) {
-					itemSet.addAll(currentItems);
-					addItemSet(itemSet);
-				}
-				if (currentItems.size() > 0) {
-					addItemSet(currentItems);
-				}
+				Item[] pathItems = itemsAlongThePath.toArray(new Item[itemsAlongThePath.size()]);
+				int maximumSubsetSize = maximumItemSetSize < 0 ? pathItems.length : maximumItemSetSize - depth;
+				if (maximumSubsetSize > 0)
+					addSubsetsOfSinglePath(pathItems, 0, currentItemsSet, new ArrayList<>(), currentItemsRequired, maximumSubsetSize, minSupport);
+				// The current items themselves were added before mining their conditional tree
 			}
 		} else {
+			// The support of the current items, if any
+			int currentSupport = depth > 0 ? tree.getTotalSupport(depth - 1, currentItems[depth - 1]) : -1;
 			// Start from the end of the header table of tree.
-			for (Item item : tree.getHeaderTable()) {
+			for (int i = 0; i < tree.getHeaderTableSize(depth); i++) {
 				if (monitor != null && monitor.shouldStop()) {
 					return;
 				}
+				int item = tree.getHeaderTableItem(depth, i);
 				// First see if the current prefix is frequent.
-				int support = tree.getTotalSupport(item);
+				int support = tree.getTotalSupport(depth, item);
 				if (support < minSupport)
 					continue;
-				// Construct the conditional pattern base for every item
-				// For each path, we do have a conditional pattern base
-				Node node = tree.getFirstNode(item);
-				FPTree conditionalFP = new FPTree();
-				while (node != null) {
-					/*
-					 * For this node, go up through it's path to the root
-					 * to create the pattern base
-					 */
-					Stack<Node> currentPath = new Stack<>();
-					int pathSupport = node.getNumberOfTransactions();
-					Node currentNode = node.getParent();
-					while (currentNode != null && currentNode.getItem() != null) {
-						currentPath.add(currentNode);
-						currentNode = currentNode.getParent();
-					}
-					// Add current path to the conditional fp-tree
-					Node parentNodeConditional = conditionalFP.getRoot();
-					while (!currentPath.empty()) {
-						Node currentOriginalNode = currentPath.pop();
-						Node newNodeConditional = parentNodeConditional.getFirstChildForItem(currentOriginalNode.getItem());
-						if (newNodeConditional != null) {
-							newNodeConditional.setNumberOfTransactions(newNodeConditional.getNumberOfTransactions() + pathSupport);
-						} else {
-							newNodeConditional = new Node(currentOriginalNode.getItem(), conditionalFP, pathSupport);
-							conditionalFP.addNodeLinkItem(newNodeConditional);
-							parentNodeConditional.addChild(newNodeConditional);
-						}
-						parentNodeConditional = newNodeConditional;
-					}
-
-					// Continue with another node in the linked-list
-					node = node.getLinkNode();
+				fpGrowth(tree, depth, currentItems, currentItemsRequired, item, minSupport);
+				// This item is in all the transactions of the current items,
+				// and the conditional trees of the next items do not have it,
+				// so all of the ItemSets mined from them are subsumed
+				if (removeSubsets && support == currentSupport)
+					break;
+				if (topLevel && monitor != null) {
+					monitor.worked(1);
 				}
+			}
+		}
+		if (topLevel && monitor != null) {
+			monitor.finished();
+		}
+	}
 
-				conditionalFP.prune(minSupport);
-				
+	/**
+	 * Adds the current items with every subset of the items along a single path which extends
+	 * the given subset with items after the given index, and has at most the given number of items.
+	 * The subsets are enumerated depth first and given to the sink one by one, so they are not kept in memory.
+	 * When mining the top-K grouping opportunities, a subset is not extended
+	 * if none of its extensions can have a bigger impact than the K-th best ItemSet found so far.
+	 * @param pathItems The items along the single path
+	 * @param from
+	 * @param currentItems
+	 * @param subset
+	 * @param subsetRequired Whether the current items or the given subset have a required item
+	 * @param maximumSubsetSize
+	 * @param minSupport
+	 */
+	private void addSubsetsOfSinglePath(Item[] pathItems, int from, Set<Item> currentItems, List<Item> subset,
+			boolean subsetRequired, int maximumSubsetSize, int minSupport) {
+		for (int i = from; i < pathItems.length; i++) {
+			if (monitor != null && monitor.shouldStop()) {
+				return;
+			}
+			subset.add(pathItems[i]);
+			boolean newSubsetRequired = subsetRequired || hasRequiredItem(Collections.singleton(pathItems[i]));
+			boolean extend = subset.size() < maximumSubsetSize;
+			if (newSubsetRequired) {
 				ItemSet newItemSet = new ItemSet();
 				newItemSet.addAll(currentItems);
-				newItemSet.add(item);
+				newItemSet.addAll(subset);
 				addItemSet(newItemSet);
-				if (!conditionalFP.isEmpty()) {
-					fpGrowth(conditionalFP, newItemSet, minSupport, false);
+				if (extend && topK > 0)
+					extend = impactBound.getUpperBound(newItemSet, Arrays.asList(pathItems).subList(i + 1, pathItems.length), minSupport) >
+							topItemSets.getImpactThreshold();
+			}
+			if (extend)
+				addSubsetsOfSinglePath(pathItems, i + 1, currentItems, subset, newSubsetRequired, maximumSubsetSize, minSupport);
+			subset.remove(subset.size() - 1);
+		}
+	}
+
+	/**
+	 * Mines the conditional tree of the given item of the tree of the given depth
+	 * @param tree
+	 * @param depth
+	 * @param currentItems The ids of the current items are the first depth elements
+	 * @param currentItemsRequired Whether the current items have a required item
+	 * @param item
+	 * @param minSupport
+	 */
+	private void fpGrowth(FPTree tree, int depth, int[] currentItems, boolean currentItemsRequired, int item, int minSupport) {
+		if (!isWithinMaximumSize(depth + 1))
+			return;
+		// The ItemSets of the conditional tree have more items than the new ItemSet.
+		// If they are too big, the tree is only needed to find whether the new ItemSet is subsumed
+		boolean mineConditionalTree = isWithinMaximumSize(depth + 2);
+		if (mineConditionalTree || removeSubsets) {
+			// Construct the conditional pattern base for every item
+			// For each path, we do have a conditional pattern base
+			tree.buildConditionalTree(depth, item, minSupport);
+			mineConditionalTree = mineConditionalTree && !tree.isEmpty(depth + 1);
+		}
+		
+		currentItems[depth] = item;
+		if (topK > 0) {
+			ItemSet newItemSet = new ItemSet();
+			newItemSet.addAll(getItems(tree, currentItems, depth + 1));
+			addItemSet(newItemSet);
+			// Don't visit the subtree if none of its ItemSets can be one of the top ones
+			if (mineConditionalTree &&
+					impactBound.getUpperBound(newItemSet, getHeaderTableItems(tree, depth + 1), minSupport) > topItemSets.getImpactThreshold())
+				fpGrowth(tree, depth + 1, currentItems, minSupport);
+			return;
+		}
+		boolean newItemSetRequired = currentItemsRequired || hasRequiredItem(Collections.singleton(tree.getItem(item)));
+		// If an item of the conditional tree is in all of its transactions,
+		// the new ItemSet is subsumed by the one having that item too
+		if (newItemSetRequired && (!removeSubsets || !hasItemWithSupport(tree, depth + 1, tree.getTotalSupport(depth, item))))
+			addItemSet(getItems(tree, currentItems, depth + 1));
+		if (mineConditionalTree && (newItemSetRequired || hasRequiredItemInHeaderTable(tree, depth + 1))) {
+			fpGrowth(tree, depth + 1, currentItems, minSupport);
+		}
+	}
+
+	/*
+	 * Mines the conditional tree of each item of the tree of depth 0 as a separate task.
+	 * Each task has its own results, which are added to the results in the order of the items,
+	 * so the results are the same as when mining the items one by one.
+	 * Each thread mines its own copy of the tree, since the conditional trees are built in it.
+	 */
+	private void fpGrowthInParallel(FPTree tree, int minSupport) {
+		int headerTableSize = tree.getHeaderTableSize(0);
+		if (monitor != null) {
+			monitor.setFinalState(headerTableSize);
+		}
+		boolean currentItemsRequired = requiredItems == null;
+		Queue<FPTree> idleTrees = new ConcurrentLinkedQueue<>();
+		ForkJoinPool pool = new ForkJoinPool(Math.min(numberOfThreads, headerTableSize));
+		try {
+			List<Future<FPGrowth>> partitions = new ArrayList<>();
+			for (int i = 0; i < headerTableSize; i++) {
+				int item = tree.getHeaderTableItem(0, i);
+				// First see if the current prefix is frequent.
+				if (tree.getTotalSupport(0, item) < minSupport)
+					continue;
+				partitions.add(pool.submit(() -> {
+					if (monitor != null && monitor.shouldStop()) {
+						return null;
+					}
+					FPTree threadTree = idleTrees.poll();
+					if (threadTree == null)
+						threadTree = new FPTree(tree);
+					FPGrowth partition = new FPGrowth(this);
+					partition.fpGrowth(threadTree, 0, new int[tree.getMaximumDepth()], currentItemsRequired, item, minSupport);
+					idleTrees.add(threadTree);
+					if (monitor != null) {
+						monitor.worked(1);
+					}
+					return partition;
+				}));
+			}
+			for (Future<FPGrowth> partition : partitions) {
+				FPGrowth partitionResults = partition.get();
+				// Like in one thread, nothing is mined after stopping
+				if (partitionResults == null)
+					return;
+				addItemSetsOf(partitionResults);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while mining the FP-tree", ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new RuntimeException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+		if (monitor != null) {
+			monitor.finished();
+		}
+	}
+
+	/*
+	 * Mines the partitions of the data set, least frequent item first, like the header table of its FP-tree.
+	 * Every transaction is first written to the partition of its least frequent item. Once the partition
+	 * of an item is mined, its transactions are written without the item to the partitions of their next
+	 * least frequent items, so every partition has all of the transactions of its item when it is mined,
+	 * and every transaction is in one partition at a time.
+	 * The FP-tree of a partition has the items of its conditional pattern base, and its item as the least
+	 * frequent one, so mining the conditional tree of its item mines the same ItemSets as in the FP-tree of the data set.
+	 */
+	private void mineProjections(Collection<TreeSet<Item>> dataSet, int minSupport) {
+		Map<Item, Integer> supports = new HashMap<>();
+		for (TreeSet<Item> transaction : dataSet) {
+			for (Item item : transaction) {
+				Integer support = supports.get(item);
+				supports.put(item, support == null ? 1 : support + 1);
+			}
+		}
+		// Infrequent items are not in any frequent ItemSet
+		List<Item> frequentItems = new ArrayList<>();
+		for (Map.Entry<Item, Integer> entry : supports.entrySet()) {
+			if (entry.getValue() >= minSupport)
+				frequentItems.add(entry.getKey());
+		}
+		Collections.sort(frequentItems);
+		Map<Item, Integer> itemIndices = new HashMap<>();
+		for (int i = 0; i < frequentItems.size(); i++)
+			itemIndices.put(frequentItems.get(i), i);
+
+		if (monitor != null) {
+			monitor.setFinalState(frequentItems.size());
+		}
+		boolean currentItemsRequired = requiredItems == null;
+		try (ProjectedDatabase projectedDatabase = new ProjectedDatabase()) {
+			for (TreeSet<Item> transaction : dataSet) {
+				int[] projectedTransaction = new int[transaction.size()];
+				int size = 0;
+				for (Item item : transaction) {
+					Integer index = itemIndices.get(item);
+					if (index != null)
+						projectedTransaction[size++] = index;
 				}
-				if (topLevel && monitor != null) {
+				if (size > 0)
+					projectedDatabase.add(Arrays.copyOf(projectedTransaction, size));
+			}
+			projectedDatabase.flush();
+
+			for (int i = 0; i < frequentItems.size(); i++) {
+				if (monitor != null && monitor.shouldStop()) {
+					return;
+				}
+				List<int[]> partition = projectedDatabase.removePartition(i);
+				List<TreeSet<Item>> transactions = new ArrayList<>(partition.size());
+				for (int[] transaction : partition) {
+					TreeSet<Item> items = new TreeSet<>();
+					for (int item : transaction)
+						items.add(frequentItems.get(item));
+					transactions.add(items);
+					if (transaction.length > 1)
+						projectedDatabase.add(Arrays.copyOfRange(transaction, 1, transaction.length));
+				}
+				FPTree tree = new FPTree(transactions);
+				fpGrowth(tree, 0, new int[tree.getMaximumDepth()], currentItemsRequired, tree.getHeaderTableItem(0, 0), minSupport);
+				projectedDatabase.flush();
+				if (monitor != null) {
 					monitor.worked(1);
 				}
 			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not project the data set of FP-Growth to temporary files", ex);
 		}
-		if (topLevel && monitor != null) {
+		if (monitor != null) {
 			monitor.finished();
 		}
 	}
+
+	/*
+	 * Adds the results of the given partition, in the order they were found.
+	 * When removing subsets, an ItemSet which was kept in its partition
+	 * may still be subsumed by an ItemSet of a partition added before.
+	 */
+	private void addItemSetsOf(FPGrowth partition) {
+		List<ItemSet> itemSets = partition.topItemSets != null ?
+				partition.topItemSets.getItemSetsInOrderGiven() : partition.partitionItemSets;
+		for (ItemSet itemSet : itemSets)
+			addItemSet(itemSet);
+	}
+
+	/*
+	 * Items are added in the order they were added to the prefix,
+	 * so the resulting ItemSets are the same as when building them level by level
+	 */
+	private Set<Item> getItems(FPTree tree, int[] itemIDs, int numberOfItems) {
+		Set<Item> items = new HashSet<>();
+		for (int i = 0; i < numberOfItems; i++)
+			items.add(tree.getItem(itemIDs[i]));
+		return items;
+	}
+	
+	private boolean isWithinMaximumSize(int numberOfItems) {
+		return maximumItemSetSize < 0 || numberOfItems <= maximumItemSetSize;
+	}
+
+	private boolean hasRequiredItem(Collection<Item> items) {
+		if (requiredItems == null)
+			return true;
+		for (Item item : items) {
+			if (requiredItems.contains(item))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean hasRequiredItem(FPTree tree, int[] itemIDs, int numberOfItems) {
+		if (requiredItems == null)
+			return true;
+		for (int i = 0; i < numberOfItems; i++) {
+			if (requiredItems.contains(tree.getItem(itemIDs[i])))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean hasItemWithSupport(FPTree tree, int depth, int support) {
+		for (int i = 0; i < tree.getHeaderTableSize(depth); i++) {
+			if (tree.getTotalSupport(depth, tree.getHeaderTableItem(depth, i)) == support)
+				return true;
+		}
+		return false;
+	}
+
+	private List<Item> getHeaderTableItems(FPTree tree, int depth) {
+		List<Item> items = new ArrayList<>(tree.getHeaderTableSize(depth));
+		for (int i = 0; i < tree.getHeaderTableSize(depth); i++)
+			items.add(tree.getItem(tree.getHeaderTableItem(depth, i)));
+		return items;
+	}
+
+	private boolean hasRequiredItemInHeaderTable(FPTree tree, int depth) {
+		if (requiredItems == null)
+			return true;
+		for (int i = 0; i < tree.getHeaderTableSize(depth); i++) {
+			if (requiredItems.contains(tree.getItem(tree.getHeaderTableItem(depth, i))))
+				return true;
+		}
+		return false;
+	}
 	
 	/*
 	 * Add itemset to the result.
-	 * Check if the new itemset has a better suprtset, or
-	 * delete all subsets
+	 * When removing subsets, only closed itemsets are mined, but
+	 * one of them may still be subsumed by a superset with the
+	 * same support, mined before in another branch of the tree.
+	 * Such a superset is never mined after its subsets.
 	 */
 	private void addItemSet(Set<Item> is) {
 		ItemSet newItemSet = new ItemSet();
 		newItemSet.addAll(is);
+		addItemSet(newItemSet);
+	}
+
+	private void addItemSet(ItemSet newItemSet) {
 		if (removeSubsets) {
-			// If this itemset is already in a superset, don't add it
-			for (int i = newItemSet.size() + 1; i <= maxItemSetSize ; i++) {
-				ItemSetList isl = resultItemSetLists.get(i);
-				if (isl != null && isl.containsSuperSet(newItemSet)) {
-					return;
-				}
-			}
-		}
-		ItemSetList correspondingItemSetList = resultItemSetLists.get(newItemSet.size());
-		if (correspondingItemSetList == null) {
-			correspondingItemSetList = new ItemSetList();
-			resultItemSetLists.put(newItemSet.size(), correspondingItemSetList);
-		}
-		correspondingItemSetList.add(newItemSet);
-		if (newItemSet.size() > maxItemSetSize)
-			maxItemSetSize = newItemSet.size();
-		if (removeSubsets) {
-			// Remove sub sets
-			for (int i = 1; i < newItemSet.size(); i++) {
-				ItemSetList isl = resultItemSetLists.get(i);
-				if (isl != null) {
-					isl.removeSubset(newItemSet);
-					if (isl.isEmpty())
-						resultItemSetLists.remove(i);
+			List<ItemSet> itemSetsWithSameSupport = closedItemSetsBySupport.get(newItemSet.getSupport());
+			if (itemSetsWithSameSupport == null) {
+				itemSetsWithSameSupport = new ArrayList<>();
+				closedItemSetsBySupport.put(newItemSet.getSupport(), itemSetsWithSameSupport);
+			} else {
+				for (ItemSet itemSet : itemSetsWithSameSupport) {
+					if (itemSet.containsAll(newItemSet))
+						return;
 				}
 			}
+			itemSetsWithSameSupport.add(newItemSet);
 		}
+		sink.accept(newItemSet);
 	}
 }
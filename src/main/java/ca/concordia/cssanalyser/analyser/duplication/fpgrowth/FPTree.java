@@ -1,190 +1,443 @@
 package ca.concordia.cssanalyser.analyser.duplication.fpgrowth;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.SortedSet;
 import java.util.TreeSet;
 
 import ca.concordia.cssanalyser.analyser.duplication.items.Item;
 
+/**
+ * The FP-tree of a data set, and the conditional FP-trees mined from it.
+ *
+ * Items are given dense int ids, ordered by frequency: the most frequent
+ * Item (the greatest one, see {@link Item#compareTo(Item)}) has id 0.
+ * Nodes are kept in parallel int arrays (item, number of transactions,
+ * parent, link to the next node of the same item, and number of children).
+ *
+ * There is one tree per depth: the tree of the data set has depth 0, and
+ * the conditional tree of an item of the tree of depth d has depth d + 1.
+ * A tree occupies the nodes from its root to the end of the arrays, so the
+ * conditional trees are always built on top of the tree they come from,
+ * in the space of the previous conditional tree of the same depth.
+ */
+class FPTree {
 
-public class FPTree {
-	
-	private Node root;
-	private Map<Item, Node> itemNodeMap;
-	private TreeSet<Item> headerTable;
-	private long nodeAutoID = -1;
-	
-	public FPTree() {
-		root = new Node();
-		itemNodeMap = new HashMap<Item, Node>();
-		headerTable = new TreeSet<>();
-	}
-	
-	public Node getRoot() {
-		return root;
-	}
-	
-	public long getNodeAutoID() {
-		return ++nodeAutoID;
-	}
-	
-	public void addNodeLinkItem(Node node) {
-		Item item = node.getItem();
-		Node previousNode = itemNodeMap.get(item);
-		if (previousNode != null && previousNode != node) {
-			node.setLinkNode(previousNode);
-		}
-		itemNodeMap.put(item, node);
-		headerTable.add(item);
-	}
-	
-	public Node getFirstNode(Item item) {
-		return itemNodeMap.get(item);
-	}
-	
-	public boolean hasASinglePath() {
-		Node node = root;
-		while (node.getChildern().iterator().hasNext()) {
-			if (node.getChildern().size() > 1)
+	private static final int NO_NODE = -1;
+	private static final int NO_ITEM = -1;
+	// The bytes taken by a node in the arrays
+	private static final int BYTES_PER_NODE = 5 * Integer.BYTES;
+
+	private final Item[] items;
+
+	private int[] nodeItem = new int[1024];
+	private int[] nodeNumberOfTransactions = new int[1024];
+	private int[] nodeParent = new int[1024];
+	private int[] nodeLink = new int[1024];
+	private int[] nodeNumberOfChildren = new int[1024];
+	private int numberOfNodes = 0;
+
+	// Per depth: the root and the end of the tree
+	private int[] root = new int[0];
+	private int[] end = new int[0];
+	// Per depth and item: the first node in the linked-list, and the total support
+	private int[][] firstNode = new int[0][];
+	private int[][] totalSupport = new int[0][];
+	// Per depth: the items of the tree, ascending by id
+	private int[][] headerTable = new int[0][];
+	private int[] headerTableSize = new int[0];
+
+	// Scratch buffers
+	private final int[] path;
+	private int[] nearestKeptNode = new int[1024];
+	private final ChildMap childMap = new ChildMap();
+
+	/**
+	 * Builds the tree of the given data set.
+	 * Items of each transaction are inserted in descending order.
+	 * @param dataSet
+	 */
+	public FPTree(Collection<TreeSet<Item>> dataSet) {
+		Map<Item, Integer> itemIDs = new HashMap<>();
+		List<Item> allItems = new ArrayList<>();
+		int maxTransactionSize = 0;
+		for (TreeSet<Item> transaction : dataSet) {
+			for (Item item : transaction) {
+				if (!itemIDs.containsKey(item)) {
+					itemIDs.put(item, NO_ITEM);
+					allItems.add(item);
+				}
+			}
+			maxTransactionSize = Math.max(maxTransactionSize, transaction.size());
+		}
+		// The same order as Collections.reverseOrder(), computing the declaration strings
+		// compared by Item.compareTo() once per item rather than once per comparison
+		Map<Item, String> firstDeclarations = new HashMap<>();
+		for (Item item : allItems)
+			firstDeclarations.put(item, item.getFirstDeclaration().toString());
+		Collections.sort(allItems, (item1, item2) -> {
+			if (item1.getSupportSize() != item2.getSupportSize())
+				return Integer.compare(item2.getSupportSize(), item1.getSupportSize());
+			return firstDeclarations.get(item2).compareTo(firstDeclarations.get(item1));
+		});
+		items = allItems.toArray(new Item[allItems.size()]);
+		for (int id = 0; id < items.length; id++)
+			itemIDs.put(items[id], id);
+		path = new int[maxTransactionSize];
+
+		ensureDepth(0);
+		clearHeaderTable(0);
+		root[0] = newNode(NO_ITEM, 0, NO_NODE);
+		childMap.clear();
+		for (TreeSet<Item> transaction : dataSet) {
+			int node = root[0];
+			for (Item item : transaction.descendingSet())
+				node = addChild(0, node, itemIDs.get(item), 1);
+		}
+		end[0] = numberOfNodes;
+		Arrays.sort(headerTable[0], 0, headerTableSize[0]);
+	}
+
+	/**
+	 * Copies the tree of depth 0 of the given tree,
+	 * so that its conditional trees can be mined in another thread.
+	 * @param tree
+	 */
+	public FPTree(FPTree tree) {
+		items = tree.items;
+		path = new int[tree.path.length];
+		int size = tree.end[0];
+		int capacity = Math.max(size * 2, 1024);
+		nodeItem = Arrays.copyOf(tree.nodeItem, capacity);
+		nodeNumberOfTransactions = Arrays.copyOf(tree.nodeNumberOfTransactions, capacity);
+		nodeParent = Arrays.copyOf(tree.nodeParent, capacity);
+		nodeLink = Arrays.copyOf(tree.nodeLink, capacity);
+		nodeNumberOfChildren = Arrays.copyOf(tree.nodeNumberOfChildren, capacity);
+		numberOfNodes = size;
+
+		ensureDepth(0);
+		root[0] = tree.root[0];
+		end[0] = size;
+		firstNode[0] = tree.firstNode[0].clone();
+		totalSupport[0] = tree.totalSupport[0].clone();
+		headerTable[0] = tree.headerTable[0].clone();
+		headerTableSize[0] = tree.headerTableSize[0];
+	}
+
+	/**
+	 * Returns an upper bound of the memory, in bytes, taken by the nodes of the tree of the given data set:
+	 * the memory of the nodes when no two transactions share a prefix
+	 * @param dataSet
+	 * @return
+	 */
+	public static long getMaximumMemoryUsage(Collection<TreeSet<Item>> dataSet) {
+		long numberOfNodes = 1;
+		for (TreeSet<Item> transaction : dataSet)
+			numberOfNodes += transaction.size();
+		return numberOfNodes * BYTES_PER_NODE;
+	}
+
+	public Item getItem(int id) {
+		return items[id];
+	}
+
+	/**
+	 * @return The maximum depth of a conditional tree, i.e., the size of the biggest transaction
+	 */
+	public int getMaximumDepth() {
+		return path.length;
+	}
+
+	/**
+	 * Returns the number of items in the header table of the tree of the given depth
+	 * @param depth
+	 * @return
+	 */
+	public int getHeaderTableSize(int depth) {
+		return headerTableSize[depth];
+	}
+
+	/**
+	 * Returns the items in the header table of the tree of the given depth,
+	 * in the ascending order of Items (i.e., the least frequent one first)
+	 * @param depth
+	 * @param index
+	 * @return
+	 */
+	public int getHeaderTableItem(int depth, int index) {
+		return headerTable[depth][headerTableSize[depth] - index - 1];
+	}
+
+	public int getTotalSupport(int depth, int item) {
+		return totalSupport[depth][item];
+	}
+
+	/**
+	 * Returns the number of nodes of the tree of the given depth, including its root
+	 * @param depth
+	 * @return
+	 */
+	public int getNumberOfNodes(int depth) {
+		return end[depth] - root[depth];
+	}
+
+	public boolean isEmpty(int depth) {
+		return nodeNumberOfChildren[root[depth]] == 0;
+	}
+
+	public boolean hasASinglePath(int depth) {
+		for (int node = root[depth]; node < end[depth]; node++) {
+			if (nodeNumberOfChildren[node] > 1)
 				return false;
-			node = node.getChildern().iterator().next();
 		}
 		return true;
 	}
-	
-	public boolean isEmpty() {
-		return root.getChildern().size() == 0;
-	}
-	
-	public void removeNode(Node node) {
-		// Update links
-		Node previous = itemNodeMap.get(node.getItem());
-		// If node is the first node in the linked-list:
-		if (previous == node) {
-			if (node.getLinkNode() == null) {
-				itemNodeMap.remove(node.getItem());
-				headerTable.remove(node.getItem());
-			}
-			else
-				itemNodeMap.put(node.getItem(), node.getLinkNode());
-		} else {
-			// Find the node pointing to this node as next
-			while (previous != null && previous.getLinkNode() != node)
-				previous = previous.getLinkNode();
-			if (previous != null)
-				previous.setLinkNode(node.getLinkNode());
-		}
-		
-		// Connect children to the parent of this node
-		for (Node child : node.getChildern())
-			node.getParent().addChild(child);
-		
-		node.getParent().removeChild(node);
-	}
-	
-	public Map<Item, Node> getItemNodeMap() {
-		return itemNodeMap;
-	}
-	
+
 	/**
-	 * Returns the header table. Items are sorted ascending
+	 * Returns the items along the path of a tree which has a single path
+	 * (see {@link #hasASinglePath(int)}), from the root to the leaf.
+	 * @param depth
 	 * @return
 	 */
-	public SortedSet<Item> getHeaderTable() {
-		return headerTable; 
-	}
-	
-	@Override
-	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		for (Item i : itemNodeMap.keySet()) {
-			Node node = itemNodeMap.get(i);
-			sb.append(i + " -> " + node);
-			while (node.getLinkNode() != null) {
-				sb.append(" -> ");
-				sb.append(node.getLinkNode());
-				node = node.getLinkNode();
-			}
-			sb.append("\n");
+	public List<Item> getItemsAlongTheSinglePath(int depth) {
+		// Parents are created before their children, so the single path is in order
+		List<Item> itemsAlongThePath = new ArrayList<>();
+		for (int node = root[depth] + 1; node < end[depth]; node++)
+			itemsAlongThePath.add(items[nodeItem[node]]);
+		return itemsAlongThePath;
+	}
+
+	/**
+	 * Returns the number of transactions of the nodes along the path of a tree
+	 * which has a single path, in the order of {@link #getItemsAlongTheSinglePath(int)}.
+	 * @param depth
+	 * @return
+	 */
+	public int[] getSupportsAlongTheSinglePath(int depth) {
+		return Arrays.copyOfRange(nodeNumberOfTransactions, root[depth] + 1, end[depth]);
+	}
+
+	/**
+	 * Builds the conditional tree of the given item of the tree of the given depth,
+	 * as the tree of depth + 1. Nodes of the items which are not frequent in the
+	 * conditional tree are removed, and their children are connected to their parents.
+	 * @param depth
+	 * @param item
+	 * @param minSupport
+	 */
+	public void buildConditionalTree(int depth, int item, int minSupport) {
+		int conditionalDepth = depth + 1;
+		ensureDepth(conditionalDepth);
+		clearHeaderTable(conditionalDepth);
+		numberOfNodes = end[depth];
+		int conditionalRoot = newNode(NO_ITEM, 0, NO_NODE);
+		root[conditionalDepth] = conditionalRoot;
+		childMap.clear();
+
+		for (int node = firstNode[depth][item]; node != NO_NODE; node = nodeLink[node]) {
+			// Go up through the path of this node to the root to create the pattern base
+			int pathSupport = nodeNumberOfTransactions[node];
+			int pathLength = 0;
+			for (int parent = nodeParent[node]; parent != root[depth]; parent = nodeParent[parent])
+				path[pathLength++] = nodeItem[parent];
+			// Add the path to the conditional tree
+			int conditionalNode = conditionalRoot;
+			while (pathLength > 0)
+				conditionalNode = addChild(conditionalDepth, conditionalNode, path[--pathLength], pathSupport);
 		}
-		return sb.toString();
+
+		prune(conditionalDepth, minSupport);
+		end[conditionalDepth] = numberOfNodes;
+		Arrays.sort(headerTable[conditionalDepth], 0, headerTableSize[conditionalDepth]);
 	}
-	
+
 	/**
-	 * Returns tree in TeX (QTree) format (<a href="https://www.ctan.org/pkg/qtree">https://www.ctan.org/pkg/qtree</a>})
+	 * Removes the nodes of the items having less than minSupport transactions,
+	 * by moving the nodes which are kept down in the arrays.
 	 */
-	public String getTreeTeXString() {
-		StringBuilder sb = new StringBuilder();
-		getTreeString(sb, root);
-		return sb.toString();
-	}
-
-	private void getTreeString(StringBuilder stringBuilder, Node node) {
-		if (node == root) {
-			stringBuilder.append(String.format("tree.fpgrowth(%s)", format("null")));
-		} else if (node.getChildern().size() == 0) {
-			stringBuilder.append(String.format("leaf(%s)", 
-					format(node.getItem().getFirstDeclaration().getProperty() + 
-							"$^{" + node.getNumberOfTransactions() + "}$" +
-							node.getItem().getSupport())));
+	private void prune(int depth, int minSupport) {
+		int treeRoot = root[depth];
+		int treeSize = numberOfNodes - treeRoot;
+		if (nearestKeptNode.length < treeSize)
+			nearestKeptNode = new int[Math.max(treeSize, nearestKeptNode.length * 2)];
+
+		int[] firstNodes = firstNode[depth];
+		int[] supports = totalSupport[depth];
+		int[] header = headerTable[depth];
+		for (int i = 0; i < headerTableSize[depth]; i++)
+			firstNodes[header[i]] = NO_NODE;
+
+		nearestKeptNode[0] = treeRoot;
+		nodeNumberOfChildren[treeRoot] = 0;
+		int newNode = treeRoot + 1;
+		for (int node = treeRoot + 1; node < numberOfNodes; node++) {
+			int item = nodeItem[node];
+			int parent = nearestKeptNode[nodeParent[node] - treeRoot];
+			if (supports[item] < minSupport) {
+				nearestKeptNode[node - treeRoot] = parent;
+			} else {
+				nearestKeptNode[node - treeRoot] = newNode;
+				nodeItem[newNode] = item;
+				nodeNumberOfTransactions[newNode] = nodeNumberOfTransactions[node];
+				nodeParent[newNode] = parent;
+				nodeNumberOfChildren[newNode] = 0;
+				nodeNumberOfChildren[parent]++;
+				nodeLink[newNode] = firstNodes[item];
+				firstNodes[item] = newNode;
+				newNode++;
+			}
+		}
+		numberOfNodes = newNode;
+
+		int newHeaderTableSize = 0;
+		for (int i = 0; i < headerTableSize[depth]; i++) {
+			int item = header[i];
+			if (supports[item] < minSupport)
+				supports[item] = 0;
+			else
+				header[newHeaderTableSize++] = item;
+		}
+		headerTableSize[depth] = newHeaderTableSize;
+	}
+
+	private int addChild(int depth, int parent, int item, int numberOfTransactions) {
+		int child = childMap.get(parent, item);
+		if (child == NO_NODE) {
+			child = newNode(item, numberOfTransactions, parent);
+			childMap.put(parent, item, child);
+			nodeNumberOfChildren[parent]++;
+			if (firstNode[depth][item] == NO_NODE)
+				headerTable[depth][headerTableSize[depth]++] = item;
+			nodeLink[child] = firstNode[depth][item];
+			firstNode[depth][item] = child;
 		} else {
-			stringBuilder.append(String.format("tree(%s)", 
-					format(node.getItem().getFirstDeclaration().getProperty() + 
-							"$^{" + node.getNumberOfTransactions() + "}$" +
-							node.getItem().getSupport())));
-		}
-		if (node.getChildern().size() != 0) {
-			stringBuilder.append("(\n");
-			for (Node child : node.getChildern()) {
-				getTreeString(stringBuilder, child);
+			nodeNumberOfTransactions[child] += numberOfTransactions;
+		}
+		totalSupport[depth][item] += numberOfTransactions;
+		return child;
+	}
+
+	private int newNode(int item, int numberOfTransactions, int parent) {
+		if (numberOfNodes == nodeItem.length) {
+			int capacity = nodeItem.length * 2;
+			nodeItem = Arrays.copyOf(nodeItem, capacity);
+			nodeNumberOfTransactions = Arrays.copyOf(nodeNumberOfTransactions, capacity);
+			nodeParent = Arrays.copyOf(nodeParent, capacity);
+			nodeLink = Arrays.copyOf(nodeLink, capacity);
+			nodeNumberOfChildren = Arrays.copyOf(nodeNumberOfChildren, capacity);
+		}
+		int node = numberOfNodes++;
+		nodeItem[node] = item;
+		nodeNumberOfTransactions[node] = numberOfTransactions;
+		nodeParent[node] = parent;
+		nodeLink[node] = NO_NODE;
+		nodeNumberOfChildren[node] = 0;
+		return node;
+	}
+
+	private void ensureDepth(int depth) {
+		if (depth < root.length)
+			return;
+		int oldLength = root.length;
+		int newLength = depth + 1;
+		root = Arrays.copyOf(root, newLength);
+		end = Arrays.copyOf(end, newLength);
+		firstNode = Arrays.copyOf(firstNode, newLength);
+		totalSupport = Arrays.copyOf(totalSupport, newLength);
+		headerTable = Arrays.copyOf(headerTable, newLength);
+		headerTableSize = Arrays.copyOf(headerTableSize, newLength);
+		for (int d = oldLength; d < newLength; d++) {
+			firstNode[d] = new int[items.length];
+			Arrays.fill(firstNode[d], NO_NODE);
+			totalSupport[d] = new int[items.length];
+			headerTable[d] = new int[items.length];
+		}
+	}
+
+	private void clearHeaderTable(int depth) {
+		for (int i = 0; i < headerTableSize[depth]; i++) {
+			int item = headerTable[depth][i];
+			firstNode[depth][item] = NO_NODE;
+			totalSupport[depth][item] = 0;
+		}
+		headerTableSize[depth] = 0;
+	}
+
+	/**
+	 * Maps (parent node, item) to the first child of the parent for the item,
+	 * for the tree being built. Open addressing, cleared in constant time
+	 * by changing the generation of the entries.
+	 */
+	private static class ChildMap {
+
+		private long[] keys = new long[1024];
+		private int[] children = new int[1024];
+		private int[] generations = new int[1024];
+		private int generation = 1;
+		private int size = 0;
+
+		public int get(int parent, int item) {
+			long key = key(parent, item);
+			int mask = keys.length - 1;
+			for (int slot = slot(key, mask); generations[slot] == generation; slot = (slot + 1) & mask) {
+				if (keys[slot] == key)
+					return children[slot];
 			}
-			stringBuilder.append("\n)");
-		}
-		
-		if (node == root)
-			stringBuilder.append(";\ndrawtrees(fpgrowth);");
-		else
-			stringBuilder.append(", ");
-	}
-	
-	private String format(String s) {
-		return "btex " + s.replace("#", "\\#").replace("%", "\\%").replace("_", "\\_") + " etex";
-	}
-
-	void prune(int minSupport) {
-		Node n;
-		// Remove unnecessary nodes (those which don't have the minsup)
-		Set<Node> nodesToDelete = new HashSet<>();
-		for (Item i : getHeaderTable()) {
-			Set<Node> currentNodes = new HashSet<>();
-			n = getFirstNode(i);
-			int itemsSup = 0;
-			do {
-				itemsSup += n.getNumberOfTransactions();
-				currentNodes.add(n);
-				n = n.getLinkNode();
-			} while (n != null);
-	
-			if (itemsSup < minSupport) {
-				nodesToDelete.addAll(currentNodes);
+			return NO_NODE;
+		}
+
+		public void put(int parent, int item, int child) {
+			if ((size + 1) * 2 > keys.length)
+				grow();
+			put(key(parent, item), child);
+		}
+
+		private void put(long key, int child) {
+			int mask = keys.length - 1;
+			int slot = slot(key, mask);
+			while (generations[slot] == generation)
+				slot = (slot + 1) & mask;
+			keys[slot] = key;
+			children[slot] = child;
+			generations[slot] = generation;
+			size++;
+		}
+
+		public void clear() {
+			size = 0;
+			if (++generation == Integer.MAX_VALUE) {
+				Arrays.fill(generations, 0);
+				generation = 1;
 			}
 		}
-		
-		for (Node nodeToDelete : nodesToDelete)
-			removeNode(nodeToDelete);
-	
-	}
 
-	public int getTotalSupport(Item item) {
-		Node n = getFirstNode(item);
-		int support = 0;
-		while (n != null) {
-			support += n.getNumberOfTransactions();
-			n = n.getLinkNode();
+		private void grow() {
+			long[] oldKeys = keys;
+			int[] oldChildren = children;
+			int[] oldGenerations = generations;
+			int oldGeneration = generation;
+			keys = new long[oldKeys.length * 2];
+			children = new int[oldKeys.length * 2];
+			generations = new int[oldKeys.length * 2];
+			generation = 1;
+			size = 0;
+			for (int slot = 0; slot < oldKeys.length; slot++) {
+				if (oldGenerations[slot] == oldGeneration)
+					put(oldKeys[slot], oldChildren[slot]);
+			}
+		}
+
+		private static long key(int parent, int item) {
+			return ((long)parent << 32) | (item & 0xffffffffL);
 		}
-		return support;
-	}	
+
+		private static int slot(long key, int mask) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int)(hash ^ (hash >>> 32)) & mask;
+		}
+	}
 }
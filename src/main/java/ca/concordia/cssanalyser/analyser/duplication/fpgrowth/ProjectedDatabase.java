@@ -0,0 +1,95 @@
+package ca.concordia.cssanalyser.analyser.duplication.fpgrowth;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The partitions of a data set projected to temporary files, as in partition-based FP-Growth.
+ * Transactions are arrays of item indices in ascending order, and every transaction
+ * is in the partition of its first item. Added transactions are kept in memory
+ * until {@link #flush()} appends them to the files of their partitions.
+ */
+class ProjectedDatabase implements Closeable {
+
+	private final File folder;
+	private final Map<Integer, List<int[]>> pendingTransactions = new HashMap<>();
+
+	public ProjectedDatabase() throws IOException {
+		folder = Files.createTempDirectory("fp-growth").toFile();
+	}
+
+	public void add(int[] transaction) {
+		List<int[]> transactions = pendingTransactions.get(transaction[0]);
+		if (transactions == null) {
+			transactions = new ArrayList<>();
+			pendingTransactions.put(transaction[0], transactions);
+		}
+		transactions.add(transaction);
+	}
+
+	public void flush() throws IOException {
+		for (Map.Entry<Integer, List<int[]>> entry : pendingTransactions.entrySet()) {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(getFile(entry.getKey()), true)))) {
+				for (int[] transaction : entry.getValue()) {
+					out.writeInt(transaction.length);
+					for (int item : transaction)
+						out.writeInt(item);
+				}
+			}
+		}
+		pendingTransactions.clear();
+	}
+
+	/**
+	 * Reads the transactions of the partition of the given item, and deletes its file
+	 * @param item
+	 * @return
+	 * @throws IOException
+	 */
+	public List<int[]> removePartition(int item) throws IOException {
+		List<int[]> transactions = new ArrayList<>();
+		File file = getFile(item);
+		if (!file.exists())
+			return transactions;
+		long remainingBytes = file.length();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while (remainingBytes > 0) {
+				int[] transaction = new int[in.readInt()];
+				for (int i = 0; i < transaction.length; i++)
+					transaction[i] = in.readInt();
+				transactions.add(transaction);
+				remainingBytes -= (transaction.length + 1) * Integer.BYTES;
+			}
+		}
+		Files.delete(file.toPath());
+		return transactions;
+	}
+
+	private File getFile(int item) {
+		return new File(folder, item + ".bin");
+	}
+
+	@Override
+	public void close() throws IOException {
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File file : files)
+				Files.delete(file.toPath());
+		}
+		Files.delete(folder.toPath());
+	}
+
+}
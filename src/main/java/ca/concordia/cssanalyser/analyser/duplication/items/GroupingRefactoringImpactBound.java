@@ -0,0 +1,107 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.concordia.cssanalyser.cssmodel.declaration.Declaration;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+
+/**
+ * Finds upper bounds of {@link ItemSet#getGroupingRefactoringImpact()} for the ItemSets
+ * extending a given ItemSet with some of the given items.
+ *
+ * The impact of an ItemSet is the sum, over the selectors of its support,
+ * of the lengths of the declarations of its items removed from the selector,
+ * minus the length of the selector and its comma in the grouping selector,
+ * minus the lengths of the declarations of the grouping selector.
+ * An extending ItemSet has a subset of the support of the given ItemSet, with at least
+ * the minimum support, so its impact is at most the sum of the biggest amounts
+ * which the selectors of the given ItemSet may save, if all of the given items are added.
+ *
+ * The same way, the impact of the given ItemSet is found without adding any item.
+ * The lengths of the declarations and selectors are computed once,
+ * so an object of this class may only be used while the style sheet is not changed.
+ * It may be used by more than one thread.
+ */
+public class GroupingRefactoringImpactBound {
+
+	private final Map<Item, Map<Selector, Integer>> realDeclarationsLengths = new HashMap<>();
+	private final Map<Item, Integer> groupedDeclarationLengths = new HashMap<>();
+	private final Map<Selector, Integer> selectorLengths = new HashMap<>();
+
+	/**
+	 * @param items All the items of the ItemSets which will be given to {@link #getUpperBound(ItemSet, Collection, int)}
+	 */
+	public GroupingRefactoringImpactBound(Collection<Item> items) {
+		for (Item item : items) {
+			Map<Selector, Integer> lengths = new HashMap<>();
+			for (Declaration declaration : item) {
+				Selector selector = declaration.getSelector();
+				Integer length = lengths.get(selector);
+				lengths.put(selector, (length == null ? 0 : length) + ItemSet.getRealDeclarationLength(declaration));
+				if (!selectorLengths.containsKey(selector))
+					selectorLengths.put(selector, selector.toString().length());
+			}
+			realDeclarationsLengths.put(item, lengths);
+			groupedDeclarationLengths.put(item, ItemSet.getGroupedDeclarationLength(item));
+		}
+	}
+
+	/**
+	 * Returns an upper bound of the impact of the ItemSets having all of the items of the given ItemSet,
+	 * some of the given other items, and at least the given number of selectors.
+	 * @param itemSet
+	 * @param otherItems
+	 * @param minSupport
+	 * @return
+	 */
+	public int getUpperBound(ItemSet itemSet, Collection<Item> otherItems, int minSupport) {
+		Map<Selector, Integer> selectorIndices = new HashMap<>();
+		int[] savings = new int[itemSet.getSupportSize()];
+		for (Selector selector : itemSet.getSupport()) {
+			// The selector and its comma are added to the grouping selector
+			savings[selectorIndices.size()] = -selectorLengths.get(selector) - 2;
+			selectorIndices.put(selector, selectorIndices.size());
+		}
+		int upperBound = -1; // Two characters for the curly brackets, one less comma
+		for (Item item : itemSet) {
+			addRealDeclarationsLengths(item, selectorIndices, savings);
+			upperBound -= groupedDeclarationLengths.get(item);
+		}
+		for (Item item : otherItems) {
+			// The declarations of other items are only counted where they are removed
+			if (!itemSet.contains(item))
+				addRealDeclarationsLengths(item, selectorIndices, savings);
+		}
+
+		Arrays.sort(savings);
+		for (int i = savings.length - 1; i >= 0; i--) {
+			if (savings.length - i > minSupport && savings[i] <= 0)
+				break;
+			upperBound += savings[i];
+		}
+		return upperBound;
+	}
+
+	/**
+	 * Returns the same impact as {@link ItemSet#getGroupingRefactoringImpact()},
+	 * using the lengths computed before
+	 * @param itemSet
+	 * @return
+	 */
+	public int getImpact(ItemSet itemSet) {
+		return getUpperBound(itemSet, Collections.emptyList(), itemSet.getSupportSize());
+	}
+
+	private void addRealDeclarationsLengths(Item item, Map<Selector, Integer> selectorIndices, int[] savings) {
+		for (Map.Entry<Selector, Integer> entry : realDeclarationsLengths.get(item).entrySet()) {
+			Integer index = selectorIndices.get(entry.getKey());
+			if (index != null)
+				savings[index] += entry.getValue();
+		}
+	}
+
+}
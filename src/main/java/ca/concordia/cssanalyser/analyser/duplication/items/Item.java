@@ -28,18 +28,20 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 	 * finding analysis. So we have to distinguish them with real declarations.
 	 */
 	private final Set<Declaration> virtualDeclarations = new HashSet<>();
-	private final Set<Selector> support;
+	private final Support support;
 	private ItemSet paretnItemSet;
 	private Set<Integer> duplicationTypes = new HashSet<>();
 	private Iterable<MediaQueryList> mediaQueryLists;
 	
 	private int hashCode = -1;
+	// Kept until the declarations are changed
+	private Declaration declarationWithMinimumChars;
 	/**
 	 * Creates an empty Item
 	 */
 	public Item() {
 		declarations = new LinkedHashSet<>();
-		support = new LinkedHashSet<>();
+		support = new Support();
 	}
 	
 	
@@ -78,6 +80,7 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 				paretnItemSet.rebuildSupport();
 		}
 		hashCode = -1;
+		declarationWithMinimumChars = null;
 		return declarationsChanged;
 	}
 	
@@ -88,8 +91,10 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 		for (Declaration d : declarations)
 			if (add(d))
 				changed = true;
-		if (changed)
+		if (changed) {
 			hashCode = -1;
+			declarationWithMinimumChars = null;
+		}
 		return changed;
 	}
 
@@ -99,6 +104,7 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 		support.clear();
 		mediaQueryLists = null;
 		hashCode = -1;
+		declarationWithMinimumChars = null;
 	}
 
 	@Override
@@ -130,6 +136,7 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 		if (support.isEmpty())
 			mediaQueryLists = null;
 		hashCode = -1;
+		declarationWithMinimumChars = null;
 		return declarations.remove(o);
 	}
 
@@ -139,8 +146,10 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 		for (Object o : c)
 			if (remove(o))
 				changed = true;
-		if (changed)
+		if (changed) {
 			hashCode = -1;
+			declarationWithMinimumChars = null;
+		}
 		return changed;
 	}
 
@@ -155,6 +164,7 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 			if (support.isEmpty())
 				mediaQueryLists = null;
 			hashCode = -1;
+			declarationWithMinimumChars = null;
 		}
 		return changed;
 	}
@@ -215,6 +225,10 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 		return support;
 	}
 
+	Support getSupportSet() {
+		return support;
+	}
+
 	/**
 	 * Returns the first declaration in the set
 	 * which is used as the representative of the set
@@ -289,21 +303,21 @@ public class Item implements Set<Declaration>, Cloneable, Comparable<Item> {
 	 * @return
 	 */
 	public Declaration getDeclarationWithMinimumChars() {
-		if (declarations.size() > 0) {
+		if (declarationWithMinimumChars == null && declarations.size() > 0) {
 			Declaration min = null; 
+			int minChars = 0;
 			for (Declaration d : declarations) {
 				if (d instanceof ShorthandDeclaration && ((ShorthandDeclaration)d).isVirtual())
 					continue;
-				if (min == null)
+				int chars = d.toString().length();
+				if (min == null || minChars > chars) {
 					min = d;
-				else {
-					if (min.toString().length() > d.toString().length())
-						min = d;
+					minChars = chars;
 				}
 			}
-			return min;
+			declarationWithMinimumChars = min;
 		}
-		return null;
+		return declarationWithMinimumChars;
 	}
 	
 	public void addDuplicationType(int type) {
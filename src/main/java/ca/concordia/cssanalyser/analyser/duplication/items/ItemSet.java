@@ -37,7 +37,7 @@ import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
 public class ItemSet implements Set<Item>, Cloneable {
 	
 	private final Set<Item> itemset;
-	private final Set<Selector> support;
+	private final Support support;
 	private ItemSetList parentItemSetList;
 	// Store refactoring impact, so don't compute it again
 	protected int refactoringImpact = -1;
@@ -45,7 +45,7 @@ public class ItemSet implements Set<Item>, Cloneable {
 	
 	public ItemSet() {
 		itemset = new HashSet<>();
-		support = new HashSet<>();
+		support = new Support();
 	} 
 	
 	public ItemSet(Set<Item> items) {
@@ -108,12 +108,11 @@ public class ItemSet implements Set<Item>, Cloneable {
 		if (itemsChanged) {
 			if (itemset.size() == 1) {
 				supportChanged = true;
-				for (Selector s : e.getSupport())
-					support.add(s);
+				support.set(e.getSupportSet());
 				mediaQueryLists = e.getMediaQueryLists();
 			}
 			else
-				supportChanged = support.retainAll((Collection<Selector>)e.getSupport());
+				supportChanged = support.retainAll(e.getSupportSet());
 			refactoringImpact = -1;
 		}
 		e.setParentItemSet(this);
@@ -179,12 +178,11 @@ public class ItemSet implements Set<Item>, Cloneable {
 		support.clear();
 		boolean mustUnion = true;
 		for (Item i : itemset) {
-			Collection<Selector> selectors = (Collection<Selector>)i.getSupport();
 			if (mustUnion) {
-				support.addAll(selectors);
+				support.set(i.getSupportSet());
 				mustUnion = false;
 			} else {
-				support.retainAll(selectors);
+				support.retainAll(i.getSupportSet());
 			}
 		}
 		if (itemset.size() == 0)
@@ -265,29 +263,12 @@ public class ItemSet implements Set<Item>, Cloneable {
 		
 		int groupedDeclarationsLength = 0;
 		for (Item item : this.itemset) {
-			// Get the declaration with minimum chars in every item
-			groupedDeclarationsLength += item.getDeclarationWithMinimumChars().toString().length() + 1; // +1 is for semicolon 
+			groupedDeclarationsLength += getGroupedDeclarationLength(item);
 		}
 		
 		int realDeclarationsLength = 0;
 		for (Item item : this.itemset) {
-			for (Declaration declaration : item){
-				// The declaration must be in the involving selectors in this refactoring opportunity
-				if (this.support.contains(declaration.getSelector()))
-				{		
-					if (declaration instanceof ShorthandDeclaration) {
-						ShorthandDeclaration shorthand = (ShorthandDeclaration)declaration;
-						if (shorthand.isVirtual()) {
-							for (Declaration individual : shorthand.getIndividualDeclarations())
-								realDeclarationsLength += individual.toString().length() + 1; // +1 is for semicolon 
-						} else {
-							realDeclarationsLength += declaration.toString().length() + 1;
-						}
-					} else {
-						realDeclarationsLength += declaration.toString().length() + 1;
-					}
-				}
-			}
+			realDeclarationsLength += getRealDeclarationsLength(item);
 		}
 		
 		result = realDeclarationsLength - groupedDeclarationsLength - newSelectorCharsLength;
@@ -295,6 +276,43 @@ public class ItemSet implements Set<Item>, Cloneable {
 		return refactoringImpact;
 	}
 	
+	/*
+	 * The length of the declaration of the given item in the grouping selector
+	 */
+	static int getGroupedDeclarationLength(Item item) {
+		// Get the declaration with minimum chars in every item
+		return item.getDeclarationWithMinimumChars().toString().length() + 1; // +1 is for semicolon 
+	}
+
+	/*
+	 * The length of the declarations of the given item removed by the grouping refactoring
+	 */
+	private int getRealDeclarationsLength(Item item) {
+		int realDeclarationsLength = 0;
+		for (Declaration declaration : item){
+			// The declaration must be in the involving selectors in this refactoring opportunity
+			if (this.support.contains(declaration.getSelector()))
+				realDeclarationsLength += getRealDeclarationLength(declaration);
+		}
+		return realDeclarationsLength;
+	}
+
+	/*
+	 * The length of the given declaration, removed by a grouping refactoring
+	 */
+	static int getRealDeclarationLength(Declaration declaration) {
+		if (declaration instanceof ShorthandDeclaration) {
+			ShorthandDeclaration shorthand = (ShorthandDeclaration)declaration;
+			if (shorthand.isVirtual()) {
+				int length = 0;
+				for (Declaration individual : shorthand.getIndividualDeclarations())
+					length += individual.toString().length() + 1; // +1 is for semicolon 
+				return length;
+			}
+		}
+		return declaration.toString().length() + 1;
+	}
+	
 	/**
 	 * Returns one declaration for every item in this itemset.
 	 * Uses {@link Item#getFirstDeclaration()} for getting the representative declaration from ItemSet 
@@ -0,0 +1,87 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the given ItemSets of each size, and finds their maximum support,
+ * without keeping them
+ */
+public class ItemSetCounter implements ItemSetSink {
+
+	// Indexed by the size of the ItemSets, the first element is not used
+	private final List<Integer> numbersOfItemSets = new ArrayList<>();
+	private final List<Integer> maximumSupports = new ArrayList<>();
+	private int numberOfItemSets = 0;
+	private final boolean countPositiveImpacts;
+	private int numberOfItemSetsWithPositiveImpact = 0;
+
+	public ItemSetCounter() {
+		this(false);
+	}
+
+	/**
+	 * @param countPositiveImpacts Whether the ItemSets having a positive
+	 * {@link ItemSet#getGroupingRefactoringImpact()} are counted too, which computes their impacts
+	 */
+	public ItemSetCounter(boolean countPositiveImpacts) {
+		this.countPositiveImpacts = countPositiveImpacts;
+	}
+
+	@Override
+	public void accept(ItemSet itemSet) {
+		int size = itemSet.size();
+		while (numbersOfItemSets.size() <= size) {
+			numbersOfItemSets.add(0);
+			maximumSupports.add(0);
+		}
+		numbersOfItemSets.set(size, numbersOfItemSets.get(size) + 1);
+		if (itemSet.getSupportSize() > maximumSupports.get(size))
+			maximumSupports.set(size, itemSet.getSupportSize());
+		numberOfItemSets++;
+		if (countPositiveImpacts && itemSet.getGroupingRefactoringImpact() > 0)
+			numberOfItemSetsWithPositiveImpact++;
+	}
+
+	public int getNumberOfItemSets() {
+		return numberOfItemSets;
+	}
+
+	public int getNumberOfItemSets(int size) {
+		if (size < numbersOfItemSets.size())
+			return numbersOfItemSets.get(size);
+		return 0;
+	}
+
+	/**
+	 * Returns the number of the given ItemSets having a positive grouping refactoring impact.
+	 * They are only counted when the counter is made with {@link #ItemSetCounter(boolean)}.
+	 * @return
+	 */
+	public int getNumberOfItemSetsWithPositiveImpact() {
+		if (!countPositiveImpacts)
+			throw new IllegalStateException("The ItemSets with a positive impact are not counted");
+		return numberOfItemSetsWithPositiveImpact;
+	}
+
+	/**
+	 * Returns the size of the biggest ItemSets, or 0 if no ItemSet is given
+	 * @return
+	 */
+	public int getMaximumSize() {
+		return Math.max(0, numbersOfItemSets.size() - 1);
+	}
+
+	/**
+	 * Returns the maximum support of the ItemSets of the given size,
+	 * like {@link ItemSetList#getMaximumSupport()}
+	 * @param size
+	 * @return
+	 */
+	public int getMaximumSupport(int size) {
+		if (size < maximumSupports.size())
+			return maximumSupports.get(size);
+		return 0;
+	}
+
+}
@@ -0,0 +1,37 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import ca.concordia.cssanalyser.io.IOHelper;
+
+/**
+ * Writes every given ItemSet to a file, in a line like the ones of {@link ItemSetList#toString()}.
+ * Unlike {@link ItemSetList}, the ItemSets are written in the order they are given,
+ * without a heading for each size.
+ */
+public class ItemSetFileWriter implements ItemSetSink, Closeable {
+
+	private final BufferedWriter writer;
+
+	public ItemSetFileWriter(String path) throws IOException {
+		writer = IOHelper.openFile(path);
+	}
+
+	@Override
+	public void accept(ItemSet itemSet) {
+		try {
+			IOHelper.writeFile(writer, ItemSetList.toString(itemSet));
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOHelper.closeFile(writer);
+	}
+
+}
@@ -60,21 +60,7 @@ public class ItemSetList implements Set<ItemSet> {
 		StringBuilder sets = new StringBuilder();
 
 		for (ItemSet itemSetAndSupport : itemsets) {
-
-			StringBuilder set = new StringBuilder("{");
-
-			for (Item d : itemSetAndSupport) {
-				set.append("(" + getRepresentativeItemString(d) + "), ");
-			}
-
-			set.delete(set.length() - 2, set.length()).append("}");
-
-			sets.append(set);
-			sets.append(", " + itemSetAndSupport.getSupportSize() + " : ");
-
-			// for (Selector s : itemSetAndSupport.getSupport())
-			// sets.append(s + ", ");
-			sets.append(itemSetAndSupport.getSupport());
+			sets.append(toString(itemSetAndSupport));
 			sets.append("\n");
 		}
 
@@ -89,8 +75,23 @@ public class ItemSetList implements Set<ItemSet> {
 		return sets.toString();
 	}
 
-	protected String getRepresentativeItemString(Item item) {
-		return item.getFirstDeclaration().toString();
+	/**
+	 * Returns the line of the given ItemSet in {@link #toString()}
+	 * @param itemSet
+	 * @return
+	 */
+	static String toString(ItemSet itemSet) {
+		StringBuilder set = new StringBuilder("{");
+
+		for (Item d : itemSet) {
+			set.append("(" + d.getFirstDeclaration().toString() + "), ");
+		}
+
+		set.delete(set.length() - 2, set.length()).append("}");
+
+		set.append(", " + itemSet.getSupportSize() + " : ");
+		set.append(itemSet.getSupport());
+		return set.toString();
 	}
 
 	@Override
@@ -0,0 +1,40 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps all the given ItemSets, in an {@link ItemSetList} for each size
+ */
+public class ItemSetListCollector implements ItemSetSink {
+
+	private final Map<Integer, ItemSetList> itemSetLists = new HashMap<>();
+
+	@Override
+	public void accept(ItemSet itemSet) {
+		ItemSetList correspondingItemSetList = itemSetLists.get(itemSet.size());
+		if (correspondingItemSetList == null) {
+			correspondingItemSetList = new ItemSetList();
+			itemSetLists.put(itemSet.size(), correspondingItemSetList);
+		}
+		correspondingItemSetList.add(itemSet);
+	}
+
+	/**
+	 * Returns the ItemSetLists, smaller ItemSets first.
+	 * The ItemSets of each list are in the order they were given.
+	 * @return
+	 */
+	public List<ItemSetList> getItemSetLists() {
+		List<Integer> sizes = new ArrayList<>(itemSetLists.keySet());
+		Collections.sort(sizes);
+		List<ItemSetList> results = new ArrayList<>();
+		for (int size : sizes)
+			results.add(itemSetLists.get(size));
+		return results;
+	}
+
+}
@@ -0,0 +1,25 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+/**
+ * Receives the frequent ItemSets one by one, as they are mined,
+ * so that they don't have to be kept in memory all together.
+ * An ItemSet is given to a sink once.
+ */
+@FunctionalInterface
+public interface ItemSetSink {
+
+	void accept(ItemSet itemSet);
+
+	/**
+	 * Returns a sink giving every ItemSet to this sink, then to the given one
+	 * @param next
+	 * @return
+	 */
+	default ItemSetSink andThen(ItemSetSink next) {
+		return itemSet -> {
+			accept(itemSet);
+			next.accept(itemSet);
+		};
+	}
+
+}
@@ -0,0 +1,191 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+import ca.concordia.cssanalyser.cssmodel.selectors.SelectorIndex;
+
+/**
+ * The support of an {@link Item} or an {@link ItemSet}, i.e., a set of selectors.
+ * Selectors are kept as a bit set of their indices in the {@link SelectorIndex}
+ * of the style sheet of the first added selector, so that intersecting, comparing
+ * and hashing the supports of a style sheet are done word by word.
+ * Selectors are iterated in the order of their indices.
+ */
+public class Support extends AbstractSet<Selector> {
+
+	private SelectorIndex selectorIndex;
+	private final BitSet selectors = new BitSet();
+	private int size = 0;
+	private int hashCode = -1;
+
+	public Support() {
+	}
+
+	public Support(Support support) {
+		set(support);
+	}
+
+	@Override
+	public boolean add(Selector selector) {
+		if (selectorIndex == null) {
+			// A selector which is not in a style sheet still needs an index
+			if (selector.getParentStyleSheet() != null)
+				selectorIndex = selector.getParentStyleSheet().getSelectorIndex();
+			else
+				selectorIndex = new SelectorIndex();
+		}
+		int index = selectorIndex.add(selector);
+		if (selectors.get(index))
+			return false;
+		selectors.set(index);
+		size++;
+		hashCode = -1;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int index = indexOf(o);
+		if (index < 0 || !selectors.get(index))
+			return false;
+		clear(index);
+		return true;
+	}
+
+	private void clear(int index) {
+		selectors.clear(index);
+		size--;
+		hashCode = -1;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		int index = indexOf(o);
+		return index >= 0 && selectors.get(index);
+	}
+
+	private int indexOf(Object o) {
+		if (selectorIndex == null)
+			return -1;
+		return selectorIndex.indexOf(o);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		selectors.clear();
+		size = 0;
+		hashCode = -1;
+	}
+
+	/**
+	 * Makes this support the same as the given one
+	 * @param support
+	 */
+	public void set(Support support) {
+		selectorIndex = support.selectorIndex;
+		selectors.clear();
+		selectors.or(support.selectors);
+		size = support.size;
+		hashCode = support.hashCode;
+	}
+
+	/**
+	 * Keeps only the selectors which are also in the given support
+	 * @param support
+	 * @return true if this support is changed
+	 */
+	public boolean retainAll(Support support) {
+		if (selectorIndex == support.selectorIndex) {
+			selectors.and(support.selectors);
+			int newSize = selectors.cardinality();
+			if (newSize == size)
+				return false;
+			size = newSize;
+			hashCode = -1;
+			return true;
+		}
+		boolean changed = false;
+		for (int i = selectors.nextSetBit(0); i >= 0; i = selectors.nextSetBit(i + 1)) {
+			if (!support.contains(selectorIndex.get(i))) {
+				clear(i);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @param support
+	 * @return true if all of the selectors of the given support are in this support
+	 */
+	public boolean containsAll(Support support) {
+		if (selectorIndex == support.selectorIndex || support.isEmpty()) {
+			BitSet missingSelectors = (BitSet)support.selectors.clone();
+			missingSelectors.andNot(selectors);
+			return missingSelectors.isEmpty();
+		}
+		return super.containsAll(support);
+	}
+
+	@Override
+	public Iterator<Selector> iterator() {
+		return new Iterator<Selector>() {
+
+			private int next = selectors.nextSetBit(0);
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Selector next() {
+				if (next < 0)
+					throw new NoSuchElementException();
+				last = next;
+				next = selectors.nextSetBit(next + 1);
+				return selectorIndex.get(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0)
+					throw new IllegalStateException();
+				clear(last);
+				last = -1;
+			}
+
+		};
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this)
+			return true;
+		if (obj instanceof Support) {
+			Support otherSupport = (Support)obj;
+			if (selectorIndex == otherSupport.selectorIndex || size == 0 || otherSupport.size == 0)
+				return size == otherSupport.size && selectors.equals(otherSupport.selectors);
+		}
+		return super.equals(obj);
+	}
+
+	@Override
+	public int hashCode() {
+		// Follows the contract of Set.hashCode(), so it is kept until the support is changed
+		if (hashCode == -1)
+			hashCode = super.hashCode();
+		return hashCode;
+	}
+
+}
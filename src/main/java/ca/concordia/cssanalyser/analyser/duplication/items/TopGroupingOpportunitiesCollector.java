@@ -0,0 +1,110 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Keeps the K given ItemSets having the biggest {@link ItemSet#getGroupingRefactoringImpact()},
+ * among the ones with a positive impact which are {@link ItemSet#isApplicable()}.
+ * Of the ItemSets with the same impact, the ones given first are kept.
+ */
+public class TopGroupingOpportunitiesCollector implements ItemSetSink {
+
+	/*
+	 * A grouping opportunity with its impact, and the order in which it was given
+	 */
+	private static class RankedItemSet implements Comparable<RankedItemSet> {
+		private final ItemSet itemSet;
+		private final int impact;
+		private final int order;
+
+		public RankedItemSet(ItemSet itemSet, int impact, int order) {
+			this.itemSet = itemSet;
+			this.impact = impact;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(RankedItemSet other) {
+			if (impact != other.impact)
+				return Integer.compare(impact, other.impact);
+			return -Integer.compare(order, other.order);
+		}
+	}
+
+	private final int k;
+	private final GroupingRefactoringImpactBound impactBound;
+	// The worst kept ItemSet first
+	private final PriorityQueue<RankedItemSet> topItemSets = new PriorityQueue<>();
+	private final Set<ItemSet> topItemSetsSet = new HashSet<>();
+	private int numberOfRankedItemSets = 0;
+
+	public TopGroupingOpportunitiesCollector(int k) {
+		this(k, null);
+	}
+
+	/**
+	 * @param k
+	 * @param impactBound If not null, used for finding the impacts of the given ItemSets,
+	 * so they are not computed for the ItemSets which are not kept
+	 */
+	public TopGroupingOpportunitiesCollector(int k, GroupingRefactoringImpactBound impactBound) {
+		this.k = k;
+		this.impactBound = impactBound;
+	}
+
+	@Override
+	public void accept(ItemSet itemSet) {
+		if (topItemSetsSet.contains(itemSet))
+			return;
+		int impact = impactBound != null ? impactBound.getImpact(itemSet) : itemSet.getGroupingRefactoringImpact();
+		if (impact <= getImpactThreshold() || !itemSet.isApplicable())
+			return;
+		topItemSets.add(new RankedItemSet(itemSet, impact, numberOfRankedItemSets++));
+		topItemSetsSet.add(itemSet);
+		if (topItemSets.size() > k)
+			topItemSetsSet.remove(topItemSets.poll().itemSet);
+	}
+
+	/**
+	 * Returns the impact which an ItemSet must exceed to be kept
+	 * @return
+	 */
+	public int getImpactThreshold() {
+		if (topItemSets.size() < k)
+			return 0;
+		return topItemSets.peek().impact;
+	}
+
+	/**
+	 * Returns the kept ItemSets, in the descending order of their impacts
+	 * @return
+	 */
+	public List<ItemSet> getTopItemSets() {
+		List<RankedItemSet> rankedItemSets = new ArrayList<>(topItemSets);
+		Collections.sort(rankedItemSets, Collections.reverseOrder());
+		return getItemSets(rankedItemSets);
+	}
+
+	/**
+	 * Returns the kept ItemSets, in the order they were given
+	 * @return
+	 */
+	public List<ItemSet> getItemSetsInOrderGiven() {
+		List<RankedItemSet> rankedItemSets = new ArrayList<>(topItemSets);
+		rankedItemSets.sort((rankedItemSet1, rankedItemSet2) -> Integer.compare(rankedItemSet1.order, rankedItemSet2.order));
+		return getItemSets(rankedItemSets);
+	}
+
+	private static List<ItemSet> getItemSets(List<RankedItemSet> rankedItemSets) {
+		List<ItemSet> itemSets = new ArrayList<>();
+		for (RankedItemSet rankedItemSet : rankedItemSets)
+			itemSets.add(rankedItemSet.itemSet);
+		return itemSets;
+	}
+
+}
@@ -53,6 +53,16 @@ public class CSSAnalyserCLI {
 
 		ParametersParser params = new ParametersParser(args);
 
+		CSSDomFreeDependencyDetector.setEmptinessCheckerBackend(params.getEmptinessCheckerBackend());
+		CSSDomFreeDependencyDetector.setNumberOfIntersectionToolProcesses(params.getNumberOfIntersectionToolProcesses());
+		if (params.getOverlapMemoFile() != null) {
+			try {
+				CSSDomFreeDependencyDetector.setPersistentOverlapMemo(new File(params.getOverlapMemoFile()), params.getOverlapMemoSize());
+			} catch (IOException ex) {
+				LOGGER.warn("Could not use the overlap memo " + params.getOverlapMemoFile() + "\n" + ex);
+			}
+		}
+
 		switch (params.getProgramMode()) {
 		case CRAWL:
 			doCloneRefactoringInCrawlMode(params);
@@ -79,9 +89,6 @@ public class CSSAnalyserCLI {
 			break;
 		default:
 		}
-
-        // Seems hacky to have to call this, but such is life
-        CSSDomFreeDependencyDetector.killExecutor();
 	}
 
 	interface ProcessLessFiles {
@@ -155,6 +162,10 @@ public class CSSAnalyserCLI {
 			LOGGER.error("Please provide an input folder with --in-folder \"in/folder\"");
 			return;
 		}
+		cssAnalyser.setNumberOfThreads(params.getNumberOfThreads());
+		cssAnalyser.setFrequentItemSetMiner(params.getFrequentItemSetMiner());
+		cssAnalyser.setFPGrowthMemoryLimit(params.getFPGrowthMemoryLimit());
+		cssAnalyser.setMaximumItemSetSize(params.getMaximumItemSetSize());
 		cssAnalyser.analyse(params.getFPGrowthMinsup(),
                             params.getDomFreeDeps());
 	}
@@ -166,28 +177,19 @@ public class CSSAnalyserCLI {
 			LOGGER.error("Please provide an input folder with --in-folder \"in/folder\" or list of folders using --folders-file \"path/to/file\".");
 		} else {
 
-			for (String folder : folders) {
-				List<File> allStatesFiles = IOHelper.searchForFiles(folder + "crawljax/doms", "html");
-				if (allStatesFiles.size() == 0) {
-					LOGGER.warn("No HTML file found in " + folder + "crawljax/doms, skipping this folder");
-				} else {
-					for (File domStateHtml : allStatesFiles) {
-
-						String stateName = domStateHtml.getName();
-						// Remove .html
-						String correspondingCSSFolderName = stateName.substring(0, stateName.length() - 5);
-
-						try {
-
-							CSSAnalyser cssAnalyser = new CSSAnalyser(domStateHtml.getAbsolutePath(), folder + "css/" + correspondingCSSFolderName);
-							cssAnalyser.analyse(params.getFPGrowthMinsup());
-
-						} catch (FileNotFoundException fnfe) {
-							LOGGER.warn(fnfe.getMessage());
-						}
-
-					}
+			try (DOMStatesScheduler scheduler = new DOMStatesScheduler(params.getNumberOfParallelStates(), params.getProgressLedgerFile(),
+					(domStateHtml, cssFolderPath) -> {
+						CSSAnalyser cssAnalyser = new CSSAnalyser(domStateHtml.getAbsolutePath(), cssFolderPath);
+						cssAnalyser.setNumberOfThreads(params.getNumberOfThreads());
+						cssAnalyser.setFrequentItemSetMiner(params.getFrequentItemSetMiner());
+						cssAnalyser.setFPGrowthMemoryLimit(params.getFPGrowthMemoryLimit());
+						cssAnalyser.setMaximumItemSetSize(params.getMaximumItemSetSize());
+						cssAnalyser.analyse(params.getFPGrowthMinsup());
+					})) {
+				for (String folder : folders) {
+					scheduler.submitFolder(folder);
 				}
+				awaitDOMStates(scheduler);
 			}
 		}
 	}
@@ -209,33 +211,42 @@ public class CSSAnalyserCLI {
 			urls.add(params.getUrl());
 		}
 
-		for (String currentUrl : urls) {
-
-			String outputFolderPath = params.getOutputFolderPath() + currentUrl.replaceFirst("http[s]?://", "").replaceFirst("file://", "").replace("/", "_").replace(":", "_") + "/";
-			// Make sure to configure ca.concordia.cssanalyser.crawler in Crawler class
-			Crawler crawler = new Crawler(currentUrl, outputFolderPath);
-			crawler.start();
-
-			// Get all ca.concordia.cssanalyser.dom states in outputFolder/crawljax/doms
-			List<File> allStatesFiles = IOHelper.searchForFiles(outputFolderPath + "crawljax/doms", "html");
-			for (File domStateHtml : allStatesFiles) {
-
-				String stateName = domStateHtml.getName();
-				// Remove .html
-				String correspondingCSSFolderName = stateName.substring(0, stateName.length() - 5);
-
-				try {
-
-					CSSAnalyser cssAnalyser = new CSSAnalyser(domStateHtml.getAbsolutePath(), outputFolderPath + "css/" + correspondingCSSFolderName);
+		// The states of a site are analysed while the next sites are crawled
+		try (DOMStatesScheduler scheduler = new DOMStatesScheduler(params.getNumberOfParallelStates(), params.getProgressLedgerFile(),
+				(domStateHtml, cssFolderPath) -> {
+					CSSAnalyser cssAnalyser = new CSSAnalyser(domStateHtml.getAbsolutePath(), cssFolderPath);
 					cssAnalyser.analyse(params.getFPGrowthMinsup());
+				})) {
 
-				} catch (FileNotFoundException fnfe) {
-					LOGGER.warn(fnfe.getMessage());
+			for (String currentUrl : urls) {
+
+				String outputFolderPath = params.getOutputFolderPath() + currentUrl.replaceFirst("http[s]?://", "").replaceFirst("file://", "").replace("/", "_").replace(":", "_") + "/";
+				if (scheduler.isAnalysed(outputFolderPath)) {
+					LOGGER.info("All DOM states of " + currentUrl + " were analysed, skipping this url");
+					continue;
 				}
+				// Make sure to configure ca.concordia.cssanalyser.crawler in Crawler class
+				Crawler crawler = new Crawler(currentUrl, outputFolderPath);
+				crawler.start();
+
+				// Analyse all ca.concordia.cssanalyser.dom states in outputFolder/crawljax/doms
+				scheduler.submitFolder(outputFolderPath);
 
 			}
 
+			awaitDOMStates(scheduler);
+		}
+	}
+
+	private static void awaitDOMStates(DOMStatesScheduler scheduler) throws IOException {
+		try {
+			scheduler.awaitCompletion();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while analysing the DOM states", ex);
 		}
+		if (scheduler.getNumberOfFailedStates() > 0)
+			LOGGER.warn(scheduler.getNumberOfFailedStates() + " DOM state(s) could not be analysed, they are analysed again if the run is resumed with the same --progress-ledger");
 	}
 
 	private static void doPreprocessorMigration(ParametersParser params) {
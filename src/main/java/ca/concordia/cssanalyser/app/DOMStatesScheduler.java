@@ -0,0 +1,223 @@
+package ca.concordia.cssanalyser.app;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+
+import ca.concordia.cssanalyser.io.IOHelper;
+
+/**
+ * Analyses the DOM states of crawled web sites, i.e., the HTML files in
+ * <code>folder/crawljax/doms</code>, each one with the CSS files in <code>folder/css/state name</code>.
+ * The states of all of the submitted folders are analysed by a bounded pool of workers;
+ * every state is analysed on its own, so a state which cannot be analysed does not stop the others.
+ * If a progress ledger is given, every analysed state, and every folder whose states
+ * were all analysed, is recorded in it, and the states and folders found in it
+ * are skipped, so a run which was stopped picks up where it stopped.
+ */
+class DOMStatesScheduler implements AutoCloseable {
+
+	private static final Logger LOGGER = FileLogger.getLogger(DOMStatesScheduler.class);
+
+	private static final String STATE_ENTRY = "state\t";
+	private static final String FOLDER_ENTRY = "folder\t";
+
+	/**
+	 * Analyses one DOM state
+	 */
+	@FunctionalInterface
+	interface DOMStateAnalysis {
+		void analyse(File domStateHtml, String cssFolderPath) throws IOException;
+	}
+
+	private final DOMStateAnalysis analysis;
+	private final ExecutorService executor;
+	private final List<Future<?>> futures = new ArrayList<>();
+	private final Set<String> analysedStates = new HashSet<>();
+	private final Set<String> analysedFolders = new HashSet<>();
+	private final BufferedWriter ledgerWriter;
+	private final AtomicInteger numberOfFailedStates = new AtomicInteger();
+
+	/**
+	 * @param numberOfWorkers The number of states analysed in parallel.
+	 * With less than two workers, the states are analysed when their folders are submitted.
+	 * @param ledgerPath The path to the progress ledger, or null
+	 * @param analysis
+	 * @throws IOException If the ledger cannot be read or written
+	 */
+	public DOMStatesScheduler(int numberOfWorkers, String ledgerPath, DOMStateAnalysis analysis) throws IOException {
+		this.analysis = analysis;
+		if (ledgerPath != null) {
+			Path ledger = Paths.get(ledgerPath);
+			if (Files.exists(ledger)) {
+				// The last line of a ledger of a killed run may be cut, then it is not found
+				for (String line : Files.readAllLines(ledger, StandardCharsets.UTF_8)) {
+					if (line.startsWith(STATE_ENTRY))
+						analysedStates.add(line.substring(STATE_ENTRY.length()));
+					else if (line.startsWith(FOLDER_ENTRY))
+						analysedFolders.add(line.substring(FOLDER_ENTRY.length()));
+				}
+				LOGGER.info(String.format("Skipping %s state(s) and %s folder(s) found in %s",
+						analysedStates.size(), analysedFolders.size(), ledgerPath));
+			}
+			ledgerWriter = Files.newBufferedWriter(ledger, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			// A cut line of a killed run must not be joined with the next entry
+			ledgerWriter.newLine();
+			ledgerWriter.flush();
+		} else {
+			ledgerWriter = null;
+		}
+		if (numberOfWorkers < 2) {
+			executor = null;
+		} else {
+			executor = Executors.newFixedThreadPool(numberOfWorkers);
+		}
+	}
+
+	/**
+	 * Returns whether all of the states of the given folder were analysed in a previous run
+	 * @param folder
+	 * @return
+	 */
+	public boolean isAnalysed(String folder) {
+		return analysedFolders.contains(getKey(folder));
+	}
+
+	/**
+	 * Submits the states of the given folder which were not analysed before
+	 * @param folder
+	 */
+	public void submitFolder(String folder) {
+		String folderKey = getKey(folder);
+		if (analysedFolders.contains(folderKey)) {
+			LOGGER.info("All DOM states of " + folder + " were analysed, skipping this folder");
+			return;
+		}
+		List<File> allStatesFiles = IOHelper.searchForFiles(folder + "crawljax/doms", "html");
+		if (allStatesFiles.size() == 0) {
+			LOGGER.warn("No HTML file found in " + folder + "crawljax/doms, skipping this folder");
+			return;
+		}
+
+		List<File> statesFiles = new ArrayList<>();
+		for (File domStateHtml : allStatesFiles) {
+			if (!analysedStates.contains(getKey(domStateHtml.getPath())))
+				statesFiles.add(domStateHtml);
+		}
+		if (statesFiles.size() < allStatesFiles.size())
+			LOGGER.info(String.format("Skipping %s analysed DOM state(s) of %s", allStatesFiles.size() - statesFiles.size(), folder));
+		if (statesFiles.isEmpty()) {
+			record(FOLDER_ENTRY + folderKey);
+			return;
+		}
+
+		AtomicInteger remainingStates = new AtomicInteger(statesFiles.size());
+		AtomicBoolean folderFailed = new AtomicBoolean();
+		for (File domStateHtml : statesFiles) {
+			Runnable task = () -> {
+				if (!analyseState(folder, domStateHtml))
+					folderFailed.set(true);
+				if (remainingStates.decrementAndGet() == 0 && !folderFailed.get())
+					record(FOLDER_ENTRY + folderKey);
+			};
+			if (executor == null)
+				task.run();
+			else
+				futures.add(executor.submit(task));
+		}
+	}
+
+	/*
+	 * Analyses the given state, recording it if it is analysed.
+	 * Returns false if the state cannot be analysed.
+	 */
+	private boolean analyseState(String folder, File domStateHtml) {
+		String stateName = domStateHtml.getName();
+		// Remove .html
+		String correspondingCSSFolderName = stateName.substring(0, stateName.length() - 5);
+		try {
+			analysis.analyse(domStateHtml, folder + "css/" + correspondingCSSFolderName);
+			record(STATE_ENTRY + getKey(domStateHtml.getPath()));
+			return true;
+		} catch (FileNotFoundException fnfe) {
+			LOGGER.warn(fnfe.getMessage());
+		} catch (IOException | RuntimeException | StackOverflowError ex) {
+			LOGGER.error("Couldn't analyse " + domStateHtml.getAbsolutePath() + ". Skipping to the next state. " + ex);
+		}
+		numberOfFailedStates.incrementAndGet();
+		return false;
+	}
+
+	private synchronized void record(String entry) {
+		if (ledgerWriter == null)
+			return;
+		try {
+			ledgerWriter.write(entry);
+			ledgerWriter.newLine();
+			ledgerWriter.flush();
+		} catch (IOException ex) {
+			LOGGER.warn("Couldn't write to the progress ledger. " + ex);
+		}
+	}
+
+	private static String getKey(String path) {
+		return new File(path).getAbsolutePath();
+	}
+
+	/**
+	 * Waits until all of the submitted states are analysed
+	 * @throws InterruptedException
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (ExecutionException ex) {
+			// analyseState() only lets errors through
+			Throwable cause = ex.getCause();
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new RuntimeException(cause);
+		} finally {
+			futures.clear();
+		}
+	}
+
+	/**
+	 * The number of the submitted states which could not be analysed
+	 * @return
+	 */
+	public int getNumberOfFailedStates() {
+		return numberOfFailedStates.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (executor != null)
+			executor.shutdownNow();
+		if (ledgerWriter != null) {
+			synchronized (this) {
+				ledgerWriter.close();
+			}
+		}
+	}
+
+}
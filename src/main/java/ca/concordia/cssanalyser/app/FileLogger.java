@@ -17,7 +17,7 @@ public class FileLogger {
 	private static LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
 	private static List<FileAppender<ILoggingEvent>> appenders = new ArrayList<>();
 	
-	public static org.slf4j.Logger getLogger(Class<?> clazz) {
+	public static synchronized org.slf4j.Logger getLogger(Class<?> clazz) {
 	
 	 	logBackLogger = loggerContext.getLogger(clazz.getName());
 	 	
@@ -29,7 +29,7 @@ public class FileLogger {
 		
 	}
 	
-	public static void addFileAppender(String filePath, boolean append) {
+	public static synchronized void addFileAppender(String filePath, boolean append) {
 		LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
 	    FileAppender<ILoggingEvent> fileAppender = new FileAppender<ILoggingEvent>();
 	    fileAppender.setContext(loggerContext);
@@ -13,7 +13,9 @@ import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.slf4j.Logger;
 
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector.FrequentItemSetMiner;
 import ca.concordia.cssanalyser.io.IOHelper;
+import css.intersection.CSSDomFreeDependencyDetector.EmptinessCheckerBackend;
 
 /**
  * Parses input arguments.
@@ -58,9 +60,39 @@ class ParametersParser {
 	@Option(name="--input-file", usage="File containing the list of URLs for analysis")
 	private String inputFile;
 
-    @Option(name="--dom-free-deps", usage="Infer dependencies without the aid of a DOM (please set up ./intersection-tool.sh)")
+    @Option(name="--dom-free-deps", usage="Infer dependencies without the aid of a DOM")
     private boolean domFreeDeps;
 
+	@Option(name="--emptiness-checker", usage="How DOM-free dependencies check whether two selectors can match the same element: NATIVE (default), INTERSECTION_TOOL (./intersection-tool.sh) or COMPARE (uses the tool, logs disagreements with NATIVE)")
+	private EmptinessCheckerBackend emptinessChecker = EmptinessCheckerBackend.NATIVE;
+
+	@Option(name="--intersection-tool-processes", usage="Number of ./intersection-tool.sh processes checking selectors in parallel (default: number of processors)")
+	private int intersectionToolProcesses = -1;
+
+	@Option(name="--overlap-memo", usage="File keeping the results of DOM-free dependency selector checks between runs")
+	private String overlapMemoFile;
+
+	@Option(name="--overlap-memo-size", usage="Maximum number of results kept in the --overlap-memo file (default: 1000000)")
+	private int overlapMemoSize = 1000000;
+
+	@Option(name="--threads", usage="Number of style sheets to be analysed in parallel, and of threads used for each style sheet by FP-Growth and for checking grouping refactorings")
+	private int threads = 1;
+
+	@Option(name="--miner", usage="Algorithm mining the duplicated declarations: FPGROWTH (default) or ECLAT (intersects the lists of the selectors having each declaration)")
+	private FrequentItemSetMiner miner = FrequentItemSetMiner.FPGROWTH;
+
+	@Option(name="--fp-mem-limit", usage="Memory, in megabytes, which the FP-tree of a style sheet may take; bigger style sheets are mined partition by partition from temporary files (default: no limit)")
+	private int fpMemLimit = -1;
+
+	@Option(name="--max-itemset-size", usage="Maximum number of declarations of the mined duplicated declarations; bigger sets of duplicated declarations are not mined (default: no limit)")
+	private int maxItemSetSize = -1;
+
+	@Option(name="--parallel-states", usage="Number of DOM states analysed in parallel in the FOLDER and CRAWL modes, over all of the folders or URLs (default: 1)")
+	private int parallelStates = 1;
+
+	@Option(name="--progress-ledger", usage="File recording the DOM states and folders analysed in the FOLDER and CRAWL modes; the ones found in it are skipped, so a stopped run can be resumed")
+	private String progressLedgerFile;
+
 	private final CmdLineParser parser;
 
 	public ParametersParser(String[] args) {
@@ -225,4 +257,66 @@ class ParametersParser {
     public boolean getDomFreeDeps() {
         return domFreeDeps;
     }
+
+	public EmptinessCheckerBackend getEmptinessCheckerBackend() {
+		return emptinessChecker;
+	}
+
+	public int getNumberOfIntersectionToolProcesses() {
+		if (intersectionToolProcesses < 1)
+			intersectionToolProcesses = Runtime.getRuntime().availableProcessors();
+		return intersectionToolProcesses;
+	}
+
+	public String getOverlapMemoFile() {
+		return overlapMemoFile;
+	}
+
+	public int getOverlapMemoSize() {
+		return overlapMemoSize;
+	}
+
+	public int getNumberOfThreads() {
+		if (threads < 1) {
+			threads = 1;
+			LOGGER.warn("Invalid number was given for the number of threads (--threads), 1 is selected by default.");
+		}
+		return threads;
+	}
+
+	public FrequentItemSetMiner getFrequentItemSetMiner() {
+		return miner;
+	}
+
+	/**
+	 * Returns the --fp-mem-limit in bytes, or -1 if there is no limit
+	 * @return
+	 */
+	public long getFPGrowthMemoryLimit() {
+		if (fpMemLimit < 0)
+			return -1;
+		return fpMemLimit * 1024L * 1024L;
+	}
+
+	/**
+	 * Returns the --max-itemset-size, or -1 if there is no limit
+	 * @return
+	 */
+	public int getMaximumItemSetSize() {
+		if (maxItemSetSize < 1)
+			return -1;
+		return maxItemSetSize;
+	}
+
+	public int getNumberOfParallelStates() {
+		if (parallelStates < 1) {
+			parallelStates = 1;
+			LOGGER.warn("Invalid number was given for the number of DOM states analysed in parallel (--parallel-states), 1 is selected by default.");
+		}
+		return parallelStates;
+	}
+
+	public String getProgressLedgerFile() {
+		return progressLedgerFile;
+	}
 }
@@ -20,8 +20,10 @@ import ca.concordia.cssanalyser.cssmodel.media.MediaQueryList;
 import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
 import ca.concordia.cssanalyser.cssmodel.selectors.GroupingSelector;
 import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+import ca.concordia.cssanalyser.cssmodel.selectors.SelectorIndex;
 import ca.concordia.cssanalyser.dom.DOMNodeWrapper;
 import ca.concordia.cssanalyser.dom.DOMNodeWrapperList;
+import ca.concordia.cssanalyser.dom.SelectorMatchCache;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSDependencyDetector;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSValueOverridingDependencyList;
 
@@ -36,6 +38,7 @@ public class StyleSheet extends CSSModelObject {
     Logger LOGGER = FileLogger.getLogger(StyleSheet.class);
 
 	private Map<Selector, Integer> selectors;
+	private final SelectorIndex selectorIndex = new SelectorIndex();
 	private String cssFilePath;
 	private CSSValueOverridingDependencyList orderDependencies;
 
@@ -58,10 +61,20 @@ public class StyleSheet extends CSSModelObject {
 	public void addSelector(Selector selector) {
 		if (!selectors.containsKey(selector)) {
 			selectors.put(selector, selectors.size() + 1);
+			selectorIndex.add(selector);
 		}
 		selector.setParentStyleSheet(this);
 	}
 
+	/**
+	 * Returns the dense indices of the selectors which have been added to this style sheet.
+	 * Unlike the selector numbers, these indices are not changed when selectors are removed.
+	 * @return
+	 */
+	public SelectorIndex getSelectorIndex() {
+		return selectorIndex;
+	}
+
 	/**
 	 * Returns all the selectors, whether single or grouped in the style sheet.
 	 *
@@ -190,6 +203,19 @@ public class StyleSheet extends CSSModelObject {
 		return cssFilePath;
 	}
 
+	/**
+	 * Returns a copy of this style sheet which is the same as
+	 * the style sheet that the parser returns for {@link #toString()}.
+	 * That is, the selectors and declarations are numbered again, and
+	 * the location info of them correspond to the string representation
+	 * of this style sheet.
+	 * This can be used instead of writing the style sheet to a file and parsing it again.
+	 * @return
+	 */
+	public StyleSheet getRenumberedCopy() {
+		return new StyleSheetRenumberer(this).getRenumberedStyleSheet();
+	}
+
 	@Override
 	public StyleSheet clone() {
 		StyleSheet styleSheet = new StyleSheet();
@@ -207,6 +233,7 @@ public class StyleSheet extends CSSModelObject {
 	 */
 	public Map<BaseSelector, DOMNodeWrapperList> mapStylesheetOnDocument(Document document) {
 		List<BaseSelector> allSelectors = getAllBaseSelectors();
+		SelectorMatchCache.getCache(document).matchSelectors(allSelectors);
 		Map<BaseSelector, DOMNodeWrapperList> selectorNodeListMap = new LinkedHashMap<>();
 		for (BaseSelector selector : allSelectors) {
 			selectorNodeListMap.put(selector, selector.getSelectedNodes(document));
@@ -225,7 +252,9 @@ public class StyleSheet extends CSSModelObject {
 
 		// Map every node in the DOM tree to a list of selectors in the stylesheet
 		Map<DOMNodeWrapper, List<BaseSelector>> nodeToSelectorsMapping = new HashMap<>();
-		for (BaseSelector selector : getAllBaseSelectors()) {
+		List<BaseSelector> allSelectors = getAllBaseSelectors();
+		SelectorMatchCache.getCache(document).matchSelectors(allSelectors);
+		for (BaseSelector selector : allSelectors) {
 			DOMNodeWrapperList matchedNodes = selector.getSelectedNodes(document);
 			for (DOMNodeWrapper domNodeWrapper : matchedNodes) {
 				List<BaseSelector> correspondingSelectors = nodeToSelectorsMapping.get(domNodeWrapper);
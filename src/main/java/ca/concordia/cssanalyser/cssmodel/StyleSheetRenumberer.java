@@ -0,0 +1,385 @@
+package ca.concordia.cssanalyser.cssmodel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import ca.concordia.cssanalyser.cssmodel.declaration.Declaration;
+import ca.concordia.cssanalyser.cssmodel.declaration.DeclarationFactory;
+import ca.concordia.cssanalyser.cssmodel.declaration.ShorthandDeclaration;
+import ca.concordia.cssanalyser.cssmodel.declaration.value.DeclarationValue;
+import ca.concordia.cssanalyser.cssmodel.declaration.value.ValueType;
+import ca.concordia.cssanalyser.cssmodel.media.MediaFeatureExpression;
+import ca.concordia.cssanalyser.cssmodel.media.MediaQuery;
+import ca.concordia.cssanalyser.cssmodel.media.MediaQueryList;
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.Combinator;
+import ca.concordia.cssanalyser.cssmodel.selectors.GroupingSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+import ca.concordia.cssanalyser.cssmodel.selectors.SimpleSelector;
+
+/**
+ * Builds a copy of a {@link StyleSheet} which is the same as what the parser
+ * would return for the string returned by {@link StyleSheet#toString()}.
+ * This way, the location info of selectors, declarations, values and media queries,
+ * and the numbers of the selectors and declarations, are the ones of the written file,
+ * without having to write the style sheet and parse it again.
+ *
+ * The string is laid out exactly as {@link StyleSheet#toString()} does,
+ * and the locations are computed the same way as the Less parser does
+ * (e.g., the location of a selector starts at its first token and ends at the closing brace).
+ *
+ */
+class StyleSheetRenumberer {
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final StyleSheet styleSheet;
+	private final StringBuilder text = new StringBuilder();
+	private int lineNumber;
+	private int lineStartOffset;
+
+	/**
+	 * A media query block which is opened in the string and is not yet closed
+	 */
+	private static class OpenMediaQueryList {
+		private final MediaQueryList mediaQueryList;
+		private final int lineNumber, columnNumber, offset;
+
+		public OpenMediaQueryList(MediaQueryList mediaQueryList, int lineNumber, int columnNumber, int offset) {
+			this.mediaQueryList = mediaQueryList;
+			this.lineNumber = lineNumber;
+			this.columnNumber = columnNumber;
+			this.offset = offset;
+		}
+	}
+
+	public StyleSheetRenumberer(StyleSheet styleSheet) {
+		this.styleSheet = styleSheet;
+	}
+
+	public StyleSheet getRenumberedStyleSheet() {
+
+		text.setLength(0);
+		lineNumber = 1;
+		lineStartOffset = 0;
+
+		StyleSheet renumberedStyleSheet = new StyleSheet();
+		renumberedStyleSheet.setPath(styleSheet.getFilePath());
+
+		// Same as StyleSheet.toString()
+		LinkedList<OpenMediaQueryList> openMediaQueryLists = new LinkedList<>();
+		Set<MediaQueryList> lastMediaQueryLists = null;
+		Iterator<Selector> selectorIterator = styleSheet.getAllSelectors().iterator();
+		int currentIndentation = 0;
+		if (selectorIterator.hasNext()) {
+			Selector s = selectorIterator.next();
+			while (true) {
+				if (lastMediaQueryLists == null || (lastMediaQueryLists != null && !lastMediaQueryLists.equals(s.getMediaQueryLists()))) {
+					for (Iterator<MediaQueryList> mediaQueryList = s.getMediaQueryLists().iterator(); mediaQueryList.hasNext();) {
+						MediaQueryList mql = mediaQueryList.next();
+						if (lastMediaQueryLists == null || (lastMediaQueryLists != null && !lastMediaQueryLists.contains(mql))) {
+							append(getIndentsString(currentIndentation));
+							openMediaQueryLists.push(openMediaQueryList(mql));
+							currentIndentation++;
+						}
+					}
+					lastMediaQueryLists = s.getMediaQueryLists();
+				}
+
+				append(getIndentsString(currentIndentation));
+				Selector renumberedSelector = getRenumberedSelector(s, currentIndentation);
+				// The parser only keeps the inner most media query list
+				if (!openMediaQueryLists.isEmpty())
+					renumberedSelector.addMediaQueryList(openMediaQueryLists.peek().mediaQueryList);
+				renumberedStyleSheet.addSelector(renumberedSelector);
+				append(LINE_SEPARATOR + LINE_SEPARATOR);
+
+				if (selectorIterator.hasNext()) {
+					s = selectorIterator.next();
+					if (lastMediaQueryLists != null) {
+						if (!lastMediaQueryLists.equals(s.getMediaQueryLists())) {
+							// For each MediaQueryList which is not in the new selector, close the MediaQuery
+							for (MediaQueryList mq : lastMediaQueryLists) {
+								if (!s.getMediaQueryLists().contains(mq)) {
+									currentIndentation--;
+									append(getIndentsString(currentIndentation));
+									closeMediaQueryList(openMediaQueryLists.poll());
+									append(LINE_SEPARATOR + LINE_SEPARATOR);
+								}
+							}
+						}
+					}
+				} else {
+					break;
+				}
+			}
+
+			while (currentIndentation > 0) { // unclosed media queries
+				currentIndentation--;
+				append(getIndentsString(currentIndentation));
+				closeMediaQueryList(openMediaQueryLists.poll());
+				append(LINE_SEPARATOR);
+			}
+
+		}
+
+		return renumberedStyleSheet;
+	}
+
+	/**
+	 * Appends the given selector with its declarations, and returns
+	 * the copy of the selector with the corresponding location info.
+	 * The media query lists are not added to the returned selector.
+	 * @param selector
+	 * @param indentation
+	 * @return
+	 */
+	private Selector getRenumberedSelector(Selector selector, int indentation) {
+
+		int selectorOffset = text.length();
+
+		Selector renumberedSelector;
+		LocationInfo firstTokenLocationInfo;
+		if (selector instanceof GroupingSelector) {
+			GroupingSelector renumberedGroupingSelector = new GroupingSelector();
+			int baseSelectorOffset = selectorOffset;
+			for (BaseSelector baseSelector : ((GroupingSelector)selector).getBaseSelectors()) {
+				BaseSelector renumberedBaseSelector = getRenumberedBaseSelector(baseSelector, baseSelectorOffset);
+				renumberedGroupingSelector.add(renumberedBaseSelector);
+				renumberedBaseSelector.setParentGroupSelector(renumberedGroupingSelector);
+				baseSelectorOffset += baseSelector.toString().length() + 2; // ", "
+			}
+			renumberedSelector = renumberedGroupingSelector;
+			firstTokenLocationInfo = renumberedGroupingSelector.getBaseSelectors().iterator().next().getSelectorNameLocationInfo();
+		} else {
+			renumberedSelector = getRenumberedBaseSelector((BaseSelector)selector, selectorOffset);
+			firstTokenLocationInfo = renumberedSelector.getSelectorNameLocationInfo();
+		}
+		append(selector + " {" + LINE_SEPARATOR);
+
+		for (Declaration declaration : selector.getDeclarations()) {
+			if (declaration instanceof ShorthandDeclaration) {
+				if (((ShorthandDeclaration)declaration).isVirtual())
+					continue;
+			}
+			append(getIndentsString(indentation + 1));
+			renumberedSelector.addDeclaration(getRenumberedDeclaration(declaration));
+			append(LINE_SEPARATOR);
+		}
+
+		append(getIndentsString(indentation));
+		int closingBraceOffset = text.length();
+		append("}");
+
+		renumberedSelector.setLocationInfo(new LocationInfo(firstTokenLocationInfo.getLineNumber(), firstTokenLocationInfo.getColumnNumber(),
+				firstTokenLocationInfo.getOffset(), closingBraceOffset - firstTokenLocationInfo.getOffset() + 1));
+
+		return renumberedSelector;
+	}
+
+	/**
+	 * Returns a copy of the given base selector (without declarations and media query lists),
+	 * which is already appended to the string at the given offset.
+	 * @param baseSelector
+	 * @param offset
+	 * @return
+	 */
+	private BaseSelector getRenumberedBaseSelector(BaseSelector baseSelector, int offset) {
+		BaseSelector renumberedBaseSelector = (BaseSelector)baseSelector.copyEmptySelector();
+		setSelectorNameLocationInfo(renumberedBaseSelector, offset);
+		return renumberedBaseSelector;
+	}
+
+	private void setSelectorNameLocationInfo(BaseSelector baseSelector, int offset) {
+
+		// The parser only sets the location info for the top-level selectors
+		baseSelector.setLocationInfo(new LocationInfo());
+		baseSelector.getMediaQueryLists().clear();
+
+		if (baseSelector instanceof Combinator) {
+
+			Combinator combinator = (Combinator)baseSelector;
+			BaseSelector leftHandSideSelector = combinator.getLeftHandSideSelector();
+			SimpleSelector rightHandSideSelector = combinator.getRightHandSideSelector();
+			setSelectorNameLocationInfo(leftHandSideSelector, offset);
+			setSelectorNameLocationInfo(rightHandSideSelector,
+					offset + combinator.toString().length() - rightHandSideSelector.toString().length());
+
+			LocationInfo left = leftHandSideSelector.getSelectorNameLocationInfo();
+			LocationInfo right = rightHandSideSelector.getSelectorNameLocationInfo();
+			combinator.setSelectorNameLocationInfo(new LocationInfo(left.getLineNumber(), left.getColumnNumber(),
+					left.getOffset(), right.getOffset() + right.getLength() - left.getOffset()));
+
+		} else if (baseSelector instanceof SimpleSelector) {
+
+			// The parser gives the location of the first part of the simple selector
+			SimpleSelector simpleSelector = (SimpleSelector)baseSelector;
+			String selectorString = simpleSelector.toString();
+			String elementName = simpleSelector.getSelectedElementName();
+			// "*" is not written when there are other parts, so the parser will not see it
+			if ("*".equals(elementName) && !selectorString.startsWith("*")) {
+				elementName = "";
+				simpleSelector.setSelectedElementName(elementName);
+			}
+			int start = 0, length = 0;
+			if (elementName != null && !"".equals(elementName) && selectorString.startsWith(elementName)) {
+				length = elementName.length();
+			} else if (selectorString.startsWith("#")) {
+				length = simpleSelector.getElementID().length() + 1;
+			} else if (selectorString.startsWith(".")) {
+				length = simpleSelector.getClassNames().get(0).length() + 1;
+			} else if (selectorString.startsWith("[")) {
+				// Starts from the name of the attribute, ends with "]"
+				start = 1;
+				length = simpleSelector.getConditions().get(0).toString().length() + 1;
+			} else if (selectorString.startsWith("::")) {
+				length = simpleSelector.getPseudoElements().get(0).toString().length() + 2;
+			} else if (selectorString.startsWith(":")) {
+				length = simpleSelector.getPseudoClasses().get(0).toString().length() + 1;
+			}
+			simpleSelector.setSelectorNameLocationInfo(getLocationInfo(offset + start, length));
+
+		}
+
+	}
+
+	/**
+	 * Appends the given declaration (with the semicolon) and returns a new declaration,
+	 * created the same way as the parser does, with the corresponding location info.
+	 * @param declaration
+	 * @return
+	 */
+	private Declaration getRenumberedDeclaration(Declaration declaration) {
+
+		String declarationString = declaration.toString();
+		int declarationOffset = text.length();
+		append(declarationString);
+		if (declaration.isImportant())
+			append(" !important");
+		append(";");
+
+		List<DeclarationValue> values = new ArrayList<>();
+		int position = declaration.getProperty().length() + 2; // "property: "
+		for (DeclarationValue value : declaration.getDeclarationValues()) {
+			if (value.isAMissingValue())
+				continue;
+			DeclarationValue renumberedValue = value.clone();
+			String valueString = value.toString();
+			int valuePosition = declarationString.indexOf(valueString, position);
+			if (valuePosition >= 0) {
+				int length = valueString.length();
+				// The parser includes the white space after the separators
+				if (value.getType() == ValueType.SEPARATOR &&
+						valuePosition + length < declarationString.length() &&
+						declarationString.charAt(valuePosition + length) == ' ')
+					length++;
+				renumberedValue.setLocationInfo(getLocationInfo(declarationOffset + valuePosition, length));
+				position = valuePosition + valueString.length();
+			} else {
+				renumberedValue.setLocationInfo(new LocationInfo());
+			}
+			values.add(renumberedValue);
+		}
+		if (values.size() == 0) // Parser does the same for the declarations with no values
+			values.add(new DeclarationValue("", ValueType.OTHER));
+
+		LocationInfo locationInfo = getLocationInfo(declarationOffset, text.length() - declarationOffset);
+
+		return DeclarationFactory.getDeclaration(declaration.getProperty(), values, null, declaration.isImportant(), true, locationInfo);
+	}
+
+	/**
+	 * Appends "@media ... {" for the given media query list,
+	 * and returns a copy of the media query list with the corresponding location info
+	 * @param mediaQueryList
+	 * @return
+	 */
+	private OpenMediaQueryList openMediaQueryList(MediaQueryList mediaQueryList) {
+
+		int mediaQueryListLineNumber = lineNumber;
+		int mediaQueryListColumnNumber = text.length() - lineStartOffset + 1;
+		MediaQueryList renumberedMediaQueryList = new MediaQueryList();
+		int mediaQueryListOffset = -1;
+
+		append("@media ");
+		for (Iterator<MediaQuery> iterator = mediaQueryList.iterator(); iterator.hasNext();) {
+			MediaQuery mediaQuery = iterator.next();
+			int mediaQueryOffset = text.length();
+			append(mediaQuery.toString());
+
+			// Same as MediaQuery.toString()
+			MediaQuery renumberedMediaQuery = new MediaQuery(mediaQuery.getPrefix(), mediaQuery.getMediaType());
+			int position = 0;
+			if (mediaQuery.getPrefix() != null)
+				position += mediaQuery.getPrefix().toString().length() + 1;
+			if (mediaQuery.getMediaType() != null)
+				position += mediaQuery.getMediaType().length();
+			for (MediaFeatureExpression mediaFeatureExpression : mediaQuery.getMediaFeatureExpressions()) {
+				if (position > 0)
+					position += 5; // " and "
+				// Starts from the feature, ends with ")"
+				int length = mediaFeatureExpression.toString().length();
+				MediaFeatureExpression renumberedMediaFeatureExpression = mediaFeatureExpression.clone();
+				renumberedMediaFeatureExpression.setLocationInfo(getLocationInfo(mediaQueryOffset + position + 1, length - 1));
+				renumberedMediaQuery.addMediaFeatureExpression(renumberedMediaFeatureExpression);
+				position += length;
+			}
+
+			LocationInfo mediaQueryLocationInfo;
+			if (mediaQuery.toString().startsWith("("))
+				mediaQueryLocationInfo = getLocationInfo(mediaQueryOffset + 1, text.length() - mediaQueryOffset - 1);
+			else
+				mediaQueryLocationInfo = getLocationInfo(mediaQueryOffset, text.length() - mediaQueryOffset);
+			renumberedMediaQuery.setLocationInfo(mediaQueryLocationInfo);
+			renumberedMediaQueryList.addMediaQuery(renumberedMediaQuery);
+
+			if (mediaQueryListOffset < 0)
+				mediaQueryListOffset = mediaQueryLocationInfo.getOffset();
+
+			if (iterator.hasNext())
+				append(", ");
+		}
+		append(" {" + LINE_SEPARATOR + LINE_SEPARATOR);
+
+		return new OpenMediaQueryList(renumberedMediaQueryList, mediaQueryListLineNumber, mediaQueryListColumnNumber, mediaQueryListOffset);
+	}
+
+	/**
+	 * Appends the closing brace of the given media query list
+	 * and sets its location info
+	 * @param openMediaQueryList
+	 */
+	private void closeMediaQueryList(OpenMediaQueryList openMediaQueryList) {
+		int closingBraceOffset = text.length();
+		append("}");
+		if (openMediaQueryList != null) {
+			openMediaQueryList.mediaQueryList.setLocationInfo(new LocationInfo(openMediaQueryList.lineNumber, openMediaQueryList.columnNumber,
+					openMediaQueryList.offset, closingBraceOffset - openMediaQueryList.offset + 1));
+		}
+	}
+
+	private LocationInfo getLocationInfo(int offset, int length) {
+		// All the locations are in the current line
+		return new LocationInfo(lineNumber, offset - lineStartOffset + 1, offset, length);
+	}
+
+	private void append(String string) {
+		int start = text.length();
+		text.append(string);
+		for (int i = string.indexOf('\n'); i >= 0; i = string.indexOf('\n', i + 1)) {
+			lineNumber++;
+			lineStartOffset = start + i + 1;
+		}
+	}
+
+	private String getIndentsString(int currentIndentation) {
+		String s = "";
+		for (int i = 0; i < currentIndentation; i++)
+			s += "\t";
+		return s;
+	}
+
+}
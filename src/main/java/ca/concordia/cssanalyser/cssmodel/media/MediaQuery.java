@@ -35,6 +35,10 @@ public class MediaQuery extends CSSModelObject {
 		return mediaType;
 	}
 
+	public MediaQueryPrefix getPrefix() {
+		return prefix;
+	}
+
 	public void addMediaFeatureExpression(MediaFeatureExpression expression) {
 		mediaFeatureExpresions.add(expression);
 	}
@@ -164,7 +168,8 @@ public class MediaQuery extends CSSModelObject {
         int hashCode = 0;
 		if (mediaType != null)
             hashCode += mediaType.hashCode();
-		hashCode += prefix.hashCode();
+		if (prefix != null)
+			hashCode += prefix.hashCode();
 
         if (mediaFeatureExpresions != null) {
 			for (MediaFeatureExpression mediaFeatureExpression : mediaFeatureExpresions) {
@@ -1,12 +1,14 @@
 package ca.concordia.cssanalyser.cssmodel.selectors;
 
+import java.util.List;
+
 import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
+import org.w3c.dom.Node;
 
-import ca.concordia.cssanalyser.dom.DOMHelper;
 import ca.concordia.cssanalyser.dom.DOMHelper.BadXPathException;
 import ca.concordia.cssanalyser.dom.DOMNodeWrapper;
 import ca.concordia.cssanalyser.dom.DOMNodeWrapperList;
+import ca.concordia.cssanalyser.dom.SelectorMatchCache;
 
 /**
  * Represents one of the binary CSS combinators
@@ -32,9 +34,9 @@ public abstract class Combinator extends BaseSelector {
 	public DOMNodeWrapperList getSelectedNodes(Document document) {
 		DOMNodeWrapperList toReturn = new DOMNodeWrapperList();
 		try {
-			NodeList nodes = DOMHelper.queryDocument(document, getXPath());
-			for (int i = 0; i < nodes.getLength(); i++) {
-				toReturn.add(new DOMNodeWrapper(nodes.item(i), getRightHandSideSelector().getUnsupportedPseudoClasses()));
+			List<Node> nodes = SelectorMatchCache.getCache(document).getSelectedNodes(this);
+			for (Node node : nodes) {
+				toReturn.add(new DOMNodeWrapper(node, getRightHandSideSelector().getUnsupportedPseudoClasses()));
 			}
 			
 		} catch (BadXPathException | UnsupportedSelectorToXPathException e) {
@@ -0,0 +1,53 @@
+package ca.concordia.cssanalyser.cssmodel.selectors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives dense indices to selectors, starting from zero, in the order they are added.
+ * An index is never changed or reused, even if its selector is removed from the style sheet,
+ * so it can be used for keeping sets of selectors as bit sets.
+ */
+public class SelectorIndex {
+
+	private final Map<Selector, Integer> indices = new HashMap<>();
+	private final List<Selector> selectors = new ArrayList<>();
+
+	/**
+	 * Gives an index to the given selector, if it does not have one
+	 * @param selector
+	 * @return The index of the given selector
+	 */
+	public int add(Selector selector) {
+		Integer index = indices.get(selector);
+		if (index == null) {
+			index = selectors.size();
+			indices.put(selector, index);
+			selectors.add(selector);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of the given selector, or -1 if it has no index
+	 * @param selector
+	 * @return
+	 */
+	public int indexOf(Object selector) {
+		Integer index = indices.get(selector);
+		if (index == null)
+			return -1;
+		return index;
+	}
+
+	public Selector get(int index) {
+		return selectors.get(index);
+	}
+
+	public int size() {
+		return selectors.size();
+	}
+
+}
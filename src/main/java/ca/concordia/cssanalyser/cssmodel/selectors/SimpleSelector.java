@@ -9,16 +9,16 @@ import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
+import org.w3c.dom.Node;
 
 import ca.concordia.cssanalyser.app.FileLogger;
 import ca.concordia.cssanalyser.cssmodel.LocationInfo;
 import ca.concordia.cssanalyser.cssmodel.declaration.Declaration;
 import ca.concordia.cssanalyser.cssmodel.selectors.conditions.SelectorCondition;
-import ca.concordia.cssanalyser.dom.DOMHelper;
 import ca.concordia.cssanalyser.dom.DOMHelper.BadXPathException;
 import ca.concordia.cssanalyser.dom.DOMNodeWrapper;
 import ca.concordia.cssanalyser.dom.DOMNodeWrapperList;
+import ca.concordia.cssanalyser.dom.SelectorMatchCache;
 
 
 /**
@@ -41,6 +41,11 @@ public class SimpleSelector extends BaseSelector {
 
 	private static final Logger LOGGER = FileLogger.getLogger(SimpleSelector.class);
 
+	/*
+	 * Based on http://www.w3.org/TR/css3-selectors/#nth-child-pseudo
+	 */
+	private static final Pattern POSITION_PATTERN = Pattern.compile("(([-+]?(?:\\d+)?)[nN])?+\\s*([-+]?\\s*\\d+)?");
+
 	public SimpleSelector() {
 		this(null, new LocationInfo());
 	}
@@ -303,79 +308,88 @@ public class SimpleSelector extends BaseSelector {
 	}
 
 	/**
-	 * Returns the condition based on the given value which could be an+b, even, odd
-	 * @param function
+	 * Parses the given value of a position pseudo class, which could be an+b, even, odd
 	 * @param value
-	 * @return
-	 * @throws UnsupportedSelectorToXPathException
+	 * @return The a and b of the value, or null if the value is not in the an+b pattern
+	 * @throws NumberFormatException If a or b is too big
 	 */
-	protected String getPositionCondition(String function, String value) throws UnsupportedSelectorToXPathException {
+	public static int[] getPositionPattern(String value) {
 		// Treat even and odd as the general an+b pattern
 		if ("even".equals(value))
 			value = "2n";
 		else if ("odd".equals(value))
 			value = "2n+1";
 
+		Matcher matcher = POSITION_PATTERN.matcher(value);
+
+		if (!matcher.matches())
+			return null;
+
+		String aString = matcher.group(2);
 		/*
-		 * Based on http://www.w3.org/TR/css3-selectors/#nth-child-pseudo
+		 * In cases like +n or -n, we have the aString would be + or -
+		 * so we have to make them as +1 or -1
 		 */
-		String patternString = "(([-+]?(?:\\d+)?)[nN])?+\\s*([-+]?\\s*\\d+)?";
-
-		Pattern pattern = Pattern.compile(patternString);
-		Matcher matcher = pattern.matcher(value);
+		if (aString == null)
+			aString = "0";
+		if (aString.equals(""))
+			aString = "1";
+		if ("+".equals(aString) || "-".equals(aString))
+			aString += "1";
+		int a = Integer.valueOf(aString);
+
+		String bString = matcher.group(3);
+		if (bString == null)
+			bString = "0";
+		int b = Integer.valueOf(bString);
+
+		return new int[] { a, b };
+	}
 
-		//if (!Pattern.matches(patternString, value))
-		//	return null;
-		if (!matcher.matches())
-			throw new UnsupportedSelectorToXPathException(this); // To select nothing, if the pattern is not correct
+	/**
+	 * Returns the condition based on the given value which could be an+b, even, odd
+	 * @param function
+	 * @param value
+	 * @return
+	 * @throws UnsupportedSelectorToXPathException
+	 */
+	protected String getPositionCondition(String function, String value) throws UnsupportedSelectorToXPathException {
 
+		int[] pattern;
 		try {
+			pattern = getPositionPattern(value);
+		} catch (NumberFormatException ex) {
+			LOGGER.warn("Error in an+b pattern: " + value);
+			throw new UnsupportedSelectorToXPathException(this);
+		}
 
-			String aString = matcher.group(2);
-			/*
-			 * In cases like +n or -n, we have the aString would be + or -
-			 * so we have to make them as +1 or -1
-			 */
-			if (aString == null)
-				aString = "0";
-			if (aString.equals(""))
-				aString = "1";
-			if ("+".equals(aString) || "-".equals(aString))
-				aString += "1";
-			int a = Integer.valueOf(aString);
-
-			String bString = matcher.group(3);
-			if (bString == null)
-				bString = "0";
-			int b = Integer.valueOf(bString);
-
-			if (a != 0) {// "an" or "an+b"
-
-				String s = "";
-				if ("nth-child".equals(function) || "nth-of-type".equals(function)) {
-					s = "((position() - (%s)) mod (%s) = 0) and (position() >= (%s))";
-				} else { // nth-last-child
-					s = "((position() + (%s)) mod -(%s) = 0) and (position() < (last() - (%s)))";
-				}
+		if (pattern == null)
+			throw new UnsupportedSelectorToXPathException(this); // To select nothing, if the pattern is not correct
 
-				return String.format(s, b, a, b);
+		int a = pattern[0], b = pattern[1];
 
-			} else {
+		if (a != 0) {// "an" or "an+b"
 
-				String s = "";
-				if ("nth-child".equals(function) || "nth-of-type".equals(function)) {
-					s = "position() - (%s) = 0";
-				} else { // nth-last-child
-					s = "position() + (%s - 1) = last()";
-				}
+			String s = "";
+			if ("nth-child".equals(function) || "nth-of-type".equals(function)) {
+				s = "((position() - (%s)) mod (%s) = 0) and (position() >= (%s))";
+			} else { // nth-last-child
+				s = "((position() + (%s)) mod -(%s) = 0) and (position() < (last() - (%s)))";
+			}
 
-				return String.format(s, b);
+			return String.format(s, b, a, b);
 
+		} else {
+
+			String s = "";
+			if ("nth-child".equals(function) || "nth-of-type".equals(function)) {
+				s = "position() - (%s) = 0";
+			} else { // nth-last-child
+				s = "position() + (%s - 1) = last()";
 			}
 
-		} catch (Exception ex) {
-			LOGGER.warn("Error in an+b pattern: " + value);
-			throw new UnsupportedSelectorToXPathException(this);
+			return String.format(s, b);
+
 		}
 
 	}
@@ -616,10 +630,10 @@ public class SimpleSelector extends BaseSelector {
 	public DOMNodeWrapperList getSelectedNodes(Document document) {
 		DOMNodeWrapperList toReturn = new DOMNodeWrapperList();
 		try {
-			NodeList nodes = DOMHelper.queryDocument(document, getXPath());
+			List<Node> nodes = SelectorMatchCache.getCache(document).getSelectedNodes(this);
 			Set<PseudoClass> unsupportedPseudoClasses = getUnsupportedPseudoClasses();
-			for (int i = 0; i < nodes.getLength(); i++) {
-				toReturn.add(new DOMNodeWrapper(nodes.item(i), unsupportedPseudoClasses));
+			for (Node node : nodes) {
+				toReturn.add(new DOMNodeWrapper(node, unsupportedPseudoClasses));
 			}
 
 		} catch (BadXPathException | UnsupportedSelectorToXPathException e) {
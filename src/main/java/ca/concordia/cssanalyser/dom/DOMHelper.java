@@ -6,10 +6,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
@@ -67,7 +64,8 @@ public final class DOMHelper {
 	}
 	
 	/**
-	 * Queries a document with a given xPath and returns the result elements
+	 * Queries a document with a given xPath and returns the result elements.
+	 * The xPath is compiled once per document, see {@link SelectorMatchCache}.
 	 * @param doc Document to be queried
 	 * @param XPath XPath of the query
 	 * @return A list of elements (org.w3c.dom.Element)
@@ -75,17 +73,7 @@ public final class DOMHelper {
 	 */
 	public static NodeList queryDocument(Document doc, String XPath) throws BadXPathException {
 
-		try {
-
-			XPath xPathObj = XPathFactory.newInstance().newXPath();
-
-			NodeList nodes = (NodeList) xPathObj.evaluate(XPath, doc, XPathConstants.NODESET);
-
-			return nodes;
-
-		} catch (XPathExpressionException e) {
-			throw new BadXPathException(e);
-		}
+		return SelectorMatchCache.getCache(doc).query(XPath);
 		
 	}
 	
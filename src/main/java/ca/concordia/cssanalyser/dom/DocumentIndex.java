@@ -0,0 +1,207 @@
+package ca.concordia.cssanalyser.dom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Indexes the elements of a Document for {@link SelectorMatcher}s:
+ * the elements are numbered in document order, and are kept by their ids,
+ * their class names and their names, so a selector is only matched against
+ * the elements which have the id, a class name or the name of its rightmost part.
+ * The Document must not be changed while it is indexed.
+ */
+public class DocumentIndex {
+
+	/**
+	 * An element of the Document, with what the matchers need to know about it
+	 */
+	static class ElementInfo {
+		final Element element;
+		// The index of the element in document order
+		final int index;
+		// The index after the last descendant of the element
+		int end;
+		// Null if the parent of the element is not an element (i.e., for the root element)
+		final ElementInfo parent;
+		// The elements which are children of the parent node of the element, including the element
+		final List<ElementInfo> siblings;
+		// The position of the element among its siblings, starting from one
+		final int position;
+		final List<ElementInfo> children = new ArrayList<>();
+		// The attributes without namespaces, by their exact names (HTML elements ignore the case in getAttribute())
+		final Map<String, String> attributes = new HashMap<>();
+		final Set<String> classNames = new LinkedHashSet<>();
+
+		ElementInfo(Element element, int index, ElementInfo parent, List<ElementInfo> siblings) {
+			this.element = element;
+			this.index = index;
+			this.parent = parent;
+			this.siblings = siblings;
+			this.position = siblings.size() + 1;
+			NamedNodeMap attributesMap = element.getAttributes();
+			for (int i = 0; i < attributesMap.getLength(); i++) {
+				Node attribute = attributesMap.item(i);
+				String name = attribute.getNodeName();
+				// Namespace declarations are not attributes in XPath
+				if (attribute.getNamespaceURI() == null && name.indexOf(':') < 0 && !"xmlns".equals(name))
+					attributes.put(name, attribute.getNodeValue());
+			}
+			String classAttribute = attributes.get("class");
+			if (classAttribute != null) {
+				for (String className : classAttribute.split("[ \t\r\n]+")) {
+					if (!"".equals(className))
+						classNames.add(className);
+				}
+			}
+		}
+
+		String getAttribute(String name) {
+			String value = attributes.get(name);
+			return value == null ? "" : value;
+		}
+	}
+
+	private final List<ElementInfo> elements = new ArrayList<>();
+	// The elements by their ids (prefixed by "#"), class names (prefixed by ".") and names
+	private final Map<String, List<ElementInfo>> elementsByKey = new HashMap<>();
+
+	public DocumentIndex(Document document) {
+		addElements(document, null, new ArrayList<>());
+	}
+
+	private void addElements(Node parentNode, ElementInfo parent, List<ElementInfo> children) {
+		for (Node node = parentNode.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				ElementInfo element = new ElementInfo((Element) node, elements.size(), parent, children);
+				children.add(element);
+				elements.add(element);
+				for (String key : getKeys(element)) {
+					List<ElementInfo> elementsWithKey = elementsByKey.get(key);
+					if (elementsWithKey == null) {
+						elementsWithKey = new ArrayList<>();
+						elementsByKey.put(key, elementsWithKey);
+					}
+					elementsWithKey.add(element);
+				}
+				addElements(node, element, element.children);
+				element.end = elements.size();
+			}
+		}
+	}
+
+	private static List<String> getKeys(ElementInfo element) {
+		List<String> keys = new ArrayList<>();
+		String id = element.attributes.get("id");
+		if (id != null)
+			keys.add("#" + id);
+		for (String className : element.classNames)
+			keys.add("." + className);
+		keys.add(element.element.getNodeName());
+		return keys;
+	}
+
+	/**
+	 * Returns the elements selected by the given matcher, in document order.
+	 * Only the elements having the id, a class name or the name of the rightmost part
+	 * of the selector (whichever has the fewest elements) are matched.
+	 * @param matcher
+	 * @return
+	 */
+	public List<Node> getSelectedNodes(SelectorMatcher matcher) {
+		List<Node> nodes = new ArrayList<>();
+		String key = getCandidatesKey(matcher);
+		List<ElementInfo> candidates = key == null ? elements : elementsByKey.get(key);
+		if (candidates != null) {
+			for (ElementInfo element : candidates) {
+				if (matcher.matches(element))
+					nodes.add(element.element);
+			}
+		}
+		matcher.clearResults();
+		return nodes;
+	}
+
+	/**
+	 * Returns the elements selected by each of the given matchers, in document order.
+	 * Every matcher is put in the bucket of the id, a class name or the name of the rightmost part
+	 * of its selector, as in {@link #getSelectedNodes(SelectorMatcher)}, and all of the matchers
+	 * are matched in one pass over the elements: an element is only matched against the matchers
+	 * in the buckets of its id, its class names and its name, and the ones without a bucket.
+	 * @param matchers
+	 * @return The lists of the selected elements, in the order of the given matchers
+	 */
+	public List<List<Node>> getSelectedNodes(List<SelectorMatcher> matchers) {
+		List<List<Node>> selectedNodes = new ArrayList<>();
+		Map<String, List<Integer>> buckets = new HashMap<>();
+		List<Integer> matchersWithoutBucket = new ArrayList<>();
+		for (int i = 0; i < matchers.size(); i++) {
+			selectedNodes.add(new ArrayList<>());
+			String key = getCandidatesKey(matchers.get(i));
+			if (key == null) {
+				matchersWithoutBucket.add(i);
+			} else if (elementsByKey.containsKey(key)) {
+				List<Integer> bucket = buckets.get(key);
+				if (bucket == null) {
+					bucket = new ArrayList<>();
+					buckets.put(key, bucket);
+				}
+				bucket.add(i);
+			}
+		}
+
+		for (ElementInfo element : elements) {
+			addSelectedNode(element, matchersWithoutBucket, matchers, selectedNodes);
+			for (String key : getKeys(element))
+				addSelectedNode(element, buckets.get(key), matchers, selectedNodes);
+		}
+
+		for (SelectorMatcher matcher : matchers)
+			matcher.clearResults();
+		return selectedNodes;
+	}
+
+	private static void addSelectedNode(ElementInfo element, List<Integer> bucket, List<SelectorMatcher> matchers, List<List<Node>> selectedNodes) {
+		if (bucket == null)
+			return;
+		for (int matcherIndex : bucket) {
+			if (matchers.get(matcherIndex).matches(element))
+				selectedNodes.get(matcherIndex).add(element.element);
+		}
+	}
+
+	/*
+	 * Returns the key of the elements which the given matcher may select: the id, a class name or the name
+	 * of the rightmost part of its selector, whichever has the fewest elements, or null for all of the elements
+	 */
+	private String getCandidatesKey(SelectorMatcher matcher) {
+		List<String> keys = new ArrayList<>();
+		if (matcher.getId() != null)
+			keys.add("#" + matcher.getId());
+		for (String className : matcher.getClassNames())
+			keys.add("." + className);
+		if (matcher.getName() != null)
+			keys.add(matcher.getName());
+		String candidatesKey = null;
+		int numberOfCandidates = elements.size();
+		for (String key : keys) {
+			List<ElementInfo> elementsWithKey = elementsByKey.get(key);
+			if (elementsWithKey == null)
+				return key; // Nothing is selected
+			if (elementsWithKey.size() < numberOfCandidates || candidatesKey == null) {
+				candidatesKey = key;
+				numberOfCandidates = elementsWithKey.size();
+			}
+		}
+		return candidatesKey;
+	}
+
+}
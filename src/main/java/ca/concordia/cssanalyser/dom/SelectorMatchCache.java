@@ -0,0 +1,171 @@
+package ca.concordia.cssanalyser.dom;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector.UnsupportedSelectorToXPathException;
+import ca.concordia.cssanalyser.dom.DOMHelper.BadXPathException;
+
+/**
+ * Keeps the nodes of a Document selected by the base selectors queried on it,
+ * and the compiled XPath expressions of the queries.
+ * The selectors are matched natively by {@link SelectorMatcher}s over a {@link DocumentIndex}
+ * of the Document; only the ones which cannot be compiled are queried with their XPaths.
+ * Selectors with the same XPath select the same nodes, so a selector kept by
+ * a refactoring (or an equal selector of another style sheet) is queried once,
+ * for all of the refactored style sheets checked against the same Document.
+ * The cache is kept as user data of its Document, so it is dropped with the Document.
+ * The Document must not be changed while it is queried.
+ */
+public class SelectorMatchCache {
+
+	private static final String USER_DATA_KEY = SelectorMatchCache.class.getName();
+
+	private final Document document;
+	private final XPath xPath = XPathFactory.newInstance().newXPath();
+	private final Map<String, XPathExpression> compiledExpressions = new HashMap<>();
+	private final Map<String, List<Node>> selectedNodes = new HashMap<>();
+	private DocumentIndex documentIndex;
+	private int hits, misses;
+
+	private SelectorMatchCache(Document document) {
+		this.document = document;
+	}
+
+	/**
+	 * Returns the cache of the given Document, creating it if needed
+	 * @param document
+	 * @return
+	 */
+	public static synchronized SelectorMatchCache getCache(Document document) {
+		SelectorMatchCache cache = (SelectorMatchCache) document.getUserData(USER_DATA_KEY);
+		if (cache == null) {
+			cache = new SelectorMatchCache(document);
+			document.setUserData(USER_DATA_KEY, cache, null);
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the nodes selected by the XPath of the given selector,
+	 * matching the selector only if no selector with the same XPath was matched before.
+	 * Selectors are not compared with selectorEquals(), which, e.g., does not tell
+	 * <code>a > b</code> from <code>a b</code>.
+	 * @param selector
+	 * @return An unmodifiable list of the nodes, in document order
+	 * @throws BadXPathException
+	 * @throws UnsupportedSelectorToXPathException
+	 */
+	public List<Node> getSelectedNodes(BaseSelector selector) throws BadXPathException, UnsupportedSelectorToXPathException {
+		String xPathString = selector.getXPath();
+		synchronized (this) {
+			List<Node> nodes = selectedNodes.get(xPathString);
+			if (nodes != null) {
+				hits++;
+				return nodes;
+			}
+			misses++;
+			SelectorMatcher matcher = SelectorMatcher.compile(selector);
+			if (matcher != null) {
+				nodes = getDocumentIndex().getSelectedNodes(matcher);
+			} else {
+				NodeList nodeList = query(xPathString);
+				nodes = new ArrayList<>(nodeList.getLength());
+				for (int i = 0; i < nodeList.getLength(); i++)
+					nodes.add(nodeList.item(i));
+			}
+			nodes = Collections.unmodifiableList(nodes);
+			selectedNodes.put(xPathString, nodes);
+			return nodes;
+		}
+	}
+
+	/**
+	 * Matches the given selectors which were not matched before, all together,
+	 * in one pass over the elements of the Document (see {@link DocumentIndex#getSelectedNodes(List)}),
+	 * so their nodes are then found in the cache by {@link #getSelectedNodes(BaseSelector)}.
+	 * The selectors which cannot be matched natively are left to {@link #getSelectedNodes(BaseSelector)}.
+	 * @param selectors
+	 */
+	public synchronized void matchSelectors(Collection<? extends BaseSelector> selectors) {
+		Map<String, SelectorMatcher> matchers = new LinkedHashMap<>();
+		for (BaseSelector selector : selectors) {
+			try {
+				String xPathString = selector.getXPath();
+				if (!selectedNodes.containsKey(xPathString) && !matchers.containsKey(xPathString)) {
+					SelectorMatcher matcher = SelectorMatcher.compile(selector);
+					if (matcher != null)
+						matchers.put(xPathString, matcher);
+				}
+			} catch (UnsupportedSelectorToXPathException e) {
+				// Reported when the selector is queried
+			}
+		}
+		if (matchers.isEmpty())
+			return;
+		List<List<Node>> nodesOfMatchers = getDocumentIndex().getSelectedNodes(new ArrayList<>(matchers.values()));
+		int i = 0;
+		for (String xPathString : matchers.keySet()) {
+			selectedNodes.put(xPathString, Collections.unmodifiableList(nodesOfMatchers.get(i++)));
+			misses++;
+		}
+	}
+
+	private DocumentIndex getDocumentIndex() {
+		if (documentIndex == null)
+			documentIndex = new DocumentIndex(document);
+		return documentIndex;
+	}
+
+	/**
+	 * Queries the Document with the given XPath, compiled once
+	 * @param xPathString
+	 * @return
+	 * @throws BadXPathException
+	 */
+	public synchronized NodeList query(String xPathString) throws BadXPathException {
+		try {
+			XPathExpression expression = compiledExpressions.get(xPathString);
+			if (expression == null) {
+				expression = xPath.compile(xPathString);
+				compiledExpressions.put(xPathString, expression);
+			}
+			return (NodeList) expression.evaluate(document, XPathConstants.NODESET);
+		} catch (XPathExpressionException e) {
+			throw new BadXPathException(e);
+		}
+	}
+
+	/**
+	 * The number of selectors whose nodes were found in the cache
+	 * @return
+	 */
+	public synchronized int getNumberOfHits() {
+		return hits;
+	}
+
+	/**
+	 * The number of selectors which were matched on the Document
+	 * @return
+	 */
+	public synchronized int getNumberOfMisses() {
+		return misses;
+	}
+
+}
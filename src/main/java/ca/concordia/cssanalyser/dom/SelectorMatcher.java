@@ -0,0 +1,462 @@
+package ca.concordia.cssanalyser.dom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import ca.concordia.cssanalyser.cssmodel.selectors.AdjacentSiblingSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.ChildSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.DescendantSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.NegationPseudoClass;
+import ca.concordia.cssanalyser.cssmodel.selectors.PseudoClass;
+import ca.concordia.cssanalyser.cssmodel.selectors.SiblingSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.SimpleSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.conditions.SelectorCondition;
+import ca.concordia.cssanalyser.cssmodel.selectors.conditions.SelectorConditionType;
+import ca.concordia.cssanalyser.dom.DocumentIndex.ElementInfo;
+
+/**
+ * Matches a base selector against the elements of a {@link DocumentIndex}, from right to left,
+ * instead of evaluating the XPath of the selector (see {@link BaseSelector#getXPath()}).
+ *
+ * The XPath of a selector is a path of steps, e.g., <code>div p:first-child</code> is
+ * <code>//*[name() = 'DIV']/descendant::*&#47;*[(name() = 'P') and (position() - (1) = 0)]</code>.
+ * A matcher is compiled to the same steps, with the same conditions, and the positions in a step
+ * are counted on the axis of the step, as in the XPath, so a matcher selects the same nodes as the XPath.
+ * An element is selected by a step if one of its context nodes on the axis of the step
+ * (its parent, one of its ancestors or one of its preceding siblings) is selected by the previous step.
+ *
+ * Selectors which cannot be compiled (e.g., the ones with invalid XPaths) must be queried with their XPaths.
+ * A matcher may only be used by one thread at a time.
+ */
+public class SelectorMatcher {
+
+	private enum Axis { CHILD, DESCENDANT, FOLLOWING_SIBLING }
+
+	/**
+	 * A condition of a step on an element,
+	 * its position and the number of the nodes on the axis of the step
+	 */
+	private interface Condition {
+		boolean matches(ElementInfo element, int position, int size);
+	}
+
+	/**
+	 * Conditions which must all hold, as in an XPath predicate.
+	 * The ones depending on the position of the element are kept apart,
+	 * so the others are checked once for all of the context nodes.
+	 */
+	private static class Conditions {
+		private final List<Condition> conditions = new ArrayList<>();
+		private final List<Condition> positionConditions = new ArrayList<>();
+
+		void add(Condition condition, boolean dependsOnPosition) {
+			(dependsOnPosition ? positionConditions : conditions).add(condition);
+		}
+
+		boolean isEmpty() {
+			return conditions.isEmpty() && positionConditions.isEmpty();
+		}
+
+		boolean dependsOnPosition() {
+			return !positionConditions.isEmpty();
+		}
+
+		boolean matches(ElementInfo element) {
+			for (Condition condition : conditions) {
+				if (!condition.matches(element, 0, 0))
+					return false;
+			}
+			return true;
+		}
+
+		boolean matchesPosition(ElementInfo element, int position, int size) {
+			for (Condition condition : positionConditions) {
+				if (!condition.matches(element, position, size))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	private static class Step {
+		private final Axis axis;
+		private final Conditions conditions;
+
+		Step(Axis axis, Conditions conditions) {
+			this.axis = axis;
+			this.conditions = conditions;
+		}
+	}
+
+	// Names in XPath name tests, without namespace prefixes
+	private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z_][-A-Za-z0-9_.]*");
+
+	private final List<Step> steps = new ArrayList<>();
+	// The id, class names and name of the element selected by the last step, if its conditions have them
+	private String id;
+	private final List<String> classNames = new ArrayList<>();
+	private String name;
+	// The elements selected, or not, by the steps before the last one
+	private final List<Map<ElementInfo, Boolean>> results = new ArrayList<>();
+
+	private SelectorMatcher() {}
+
+	/**
+	 * Compiles a matcher for the given selector
+	 * @param selector
+	 * @return The matcher, or null if the XPath of the selector has to be evaluated instead
+	 */
+	public static SelectorMatcher compile(BaseSelector selector) {
+		SelectorMatcher matcher = new SelectorMatcher();
+		if (!matcher.addSteps(selector, Axis.CHILD))
+			return null;
+		for (int i = 0; i < matcher.steps.size() - 1; i++)
+			matcher.results.add(new HashMap<>());
+		return matcher;
+	}
+
+	/*
+	 * Adds the steps of the given selector, the first of which is on the given axis,
+	 * as in BaseSelector.getXPathConditionsString()
+	 */
+	private boolean addSteps(BaseSelector selector, Axis axis) {
+		if (selector instanceof SimpleSelector) {
+			return addSteps((SimpleSelector) selector, axis);
+		} else if (selector instanceof DescendantSelector) {
+			DescendantSelector descendantSelector = (DescendantSelector) selector;
+			return addSteps(descendantSelector.getParentSelector(), axis) &&
+					addSteps(descendantSelector.getChildSelector(), selector instanceof ChildSelector ? Axis.CHILD : Axis.DESCENDANT);
+		} else if (selector instanceof SiblingSelector) {
+			SiblingSelector siblingSelector = (SiblingSelector) selector;
+			if (!addSteps(siblingSelector.getFirstSelector(), axis) ||
+					!addSteps(siblingSelector.getSecondSelector(), Axis.FOLLOWING_SIBLING))
+				return false;
+			// The first following sibling
+			if (selector instanceof AdjacentSiblingSelector)
+				steps.get(steps.size() - 1).conditions.add((element, position, size) -> position == 1, true);
+			return true;
+		}
+		return false;
+	}
+
+	private boolean addSteps(SimpleSelector selector, Axis axis) {
+		id = name = null;
+		classNames.clear();
+		Conditions conditions = new Conditions();
+		String prefix = addConditions(selector, conditions, false);
+		if ("*/*".equals(prefix)) {
+			// The conditions are on the children of the elements on the given axis
+			steps.add(new Step(axis, new Conditions()));
+			steps.add(new Step(Axis.CHILD, conditions));
+		} else if ("*".equals(prefix)) {
+			steps.add(new Step(axis, conditions));
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Adds the conditions of the given selector, as in SimpleSelector.getXPathConditionsString().
+	 * Returns the prefix of the XPath of the selector, or null if the conditions cannot be compiled.
+	 * The id, class names and name of a selector which is not negated are kept for the DocumentIndex
+	 * (addSteps() forgets the ones of the selectors before the rightmost one).
+	 * The conditions of a negated selector are joined without parentheses in the XPath,
+	 * so the ones with "or" are not compiled.
+	 */
+	private String addConditions(SimpleSelector selector, Conditions conditions, boolean negated) {
+
+		boolean elementAdded = false;
+		String prefix = "";
+		String elementName = selector.getSelectedElementName();
+		String upperCaseElementName = elementName.toUpperCase();
+
+		if (!"".equals(selector.getElementID())) {
+			String selectorId = selector.getElementID();
+			if (!isLiteral(selectorId))
+				return null;
+			conditions.add((element, position, size) -> selectorId.equals(element.attributes.get("id")), false);
+			if (!negated)
+				id = selectorId;
+		}
+
+		for (String className : selector.getClassNames()) {
+			// Class names with spaces match more than one class of an element
+			if (!isLiteral(className) || "".equals(className) || !className.equals(className.replaceAll("[ \t\r\n]", "")))
+				return null;
+			conditions.add((element, position, size) -> element.classNames.contains(className), false);
+			if (!negated)
+				classNames.add(className);
+		}
+
+		for (PseudoClass pseudoClass : selector.getPseudoClasses()) {
+			if (pseudoClass.isPseudoclassWithNoXpathEquivalence())
+				continue;
+
+			String value = String.valueOf(pseudoClass.getValue());
+			switch (pseudoClass.getName()) {
+			case "lang":
+				if (!isLiteral(value))
+					return null;
+				conditions.add((element, position, size) -> value.equals(element.attributes.get("lang")), false);
+				break;
+			case "first-child":
+			case "last-child":
+			case "nth-child":
+			case "nth-last-child":
+			case "only-child":
+				if (!"*".equals(elementName)) {
+					if (!addNameCondition(upperCaseElementName, conditions, negated))
+						return null;
+				}
+				prefix = "*/*";
+				elementAdded = true;
+				if ("only-child".equals(pseudoClass.getName()))
+					conditions.add((element, position, size) -> size == 1, true);
+				else if (!addPositionCondition(pseudoClass, conditions))
+					return null;
+				break;
+			case "first-of-type":
+			case "nth-of-type":
+			case "last-of-type":
+			case "nth-last-of-type":
+				prefix = "*/";
+				if (!addPositionCondition(pseudoClass, conditions))
+					return null;
+				break;
+			case "only-of-type":
+				conditions.add((element, position, size) -> size == 1, true);
+				break;
+			case "empty":
+				conditions.add((element, position, size) -> element.children.isEmpty() && isWhitespace(element.element.getTextContent()), false);
+				break;
+			case "checked":
+				conditions.add((element, position, size) ->
+					(element.attributes.containsKey("selected") || element.attributes.containsKey("checked")) &&
+					("INPUT".equals(element.element.getNodeName()) || "OPTION".equals(element.element.getNodeName())), false);
+				break;
+			case "contains":
+				if (!isLiteral(value))
+					return null;
+				conditions.add((element, position, size) -> element.element.getTextContent().contains(value), false);
+				break;
+			case "not":
+				if (!(pseudoClass instanceof NegationPseudoClass) ||
+						!(((NegationPseudoClass) pseudoClass).getSelector() instanceof SimpleSelector))
+					return null;
+				SimpleSelector negatedSelector = (SimpleSelector) ((NegationPseudoClass) pseudoClass).getSelector();
+				for (SelectorCondition condition : negatedSelector.getConditions()) {
+					if (condition.getConditionType() == SelectorConditionType.VALUE_START_WITH_DASH_SEPARATED)
+						return null;
+				}
+				Conditions negatedConditions = new Conditions();
+				// not() is not a valid XPath
+				if (addConditions(negatedSelector, negatedConditions, true) == null || negatedConditions.isEmpty())
+					return null;
+				conditions.add((element, position, size) ->
+					!(negatedConditions.matches(element) && negatedConditions.matchesPosition(element, position, size)),
+					negatedConditions.dependsOnPosition());
+				break;
+			case "root":
+				conditions.add((element, position, size) -> element.parent == null, false);
+				break;
+			}
+		}
+
+		for (SelectorCondition condition : selector.getConditions()) {
+			String attributeName = condition.getAttributeName();
+			String conditionValue = condition.getValue();
+			if (condition.getConditionType() == null || !NAME_PATTERN.matcher(attributeName).matches() || !isLiteral(conditionValue))
+				return null;
+			switch (condition.getConditionType()) {
+			case HAS_ATTRIBUTE:
+				conditions.add((element, position, size) -> element.attributes.containsKey(attributeName), false);
+				break;
+			case VALUE_CONTAINS:
+				conditions.add((element, position, size) -> element.getAttribute(attributeName).contains(conditionValue), false);
+				break;
+			case VALUE_CONTAINS_WORD_SPACE_SEPARATED:
+				conditions.add((element, position, size) ->
+					(" " + normalizeSpace(element.getAttribute(attributeName)) + " ").contains(" " + conditionValue + " "), false);
+				break;
+			case VALUE_ENDS_WITH:
+				conditions.add((element, position, size) -> element.getAttribute(attributeName).endsWith(conditionValue), false);
+				break;
+			case VALUE_EQUALS_EXACTLY:
+				conditions.add((element, position, size) -> conditionValue.equals(element.attributes.get(attributeName)), false);
+				break;
+			case VALUE_STARTS_WITH:
+				conditions.add((element, position, size) -> element.getAttribute(attributeName).startsWith(conditionValue), false);
+				break;
+			case VALUE_START_WITH_DASH_SEPARATED:
+				conditions.add((element, position, size) -> conditionValue.equals(element.attributes.get(attributeName)) ||
+						element.getAttribute(attributeName).startsWith(conditionValue + "-"), false);
+				break;
+			}
+		}
+
+		if (!elementAdded) {
+			prefix = "*";
+			if (!"*".equals(elementName) && !"".equals(elementName)) {
+				if (!addNameCondition(upperCaseElementName, conditions, negated))
+					return null;
+			}
+		}
+
+		return prefix;
+	}
+
+	private boolean addNameCondition(String elementName, Conditions conditions, boolean negated) {
+		if (!isLiteral(elementName))
+			return false;
+		conditions.add((element, position, size) -> elementName.equals(element.element.getNodeName()), false);
+		// Not mistaken for the key of an id or a class name in the DocumentIndex
+		if (!negated && !elementName.startsWith("#") && !elementName.startsWith("."))
+			name = elementName;
+		return true;
+	}
+
+	/*
+	 * As in SimpleSelector.getPositionCondition()
+	 */
+	private static boolean addPositionCondition(PseudoClass pseudoClass, Conditions conditions) {
+		String function = pseudoClass.getName();
+		String value = pseudoClass.getValue();
+		if ("first-child".equals(function) || "first-of-type".equals(function)) {
+			value = "1";
+			function = "nth-child";
+		} else if ("last-child".equals(function) || "last-of-type".equals(function)) {
+			value = "1";
+			function = "nth-last-child";
+		}
+		if (value == null)
+			return false;
+		int[] pattern;
+		try {
+			pattern = SimpleSelector.getPositionPattern(value);
+		} catch (NumberFormatException ex) {
+			return false;
+		}
+		if (pattern == null)
+			return false;
+		int a = pattern[0], b = pattern[1];
+		boolean fromFirst = "nth-child".equals(function) || "nth-of-type".equals(function);
+		if (a != 0) {
+			if (fromFirst)
+				conditions.add((element, position, size) -> ((long) position - b) % a == 0 && position >= b, true);
+			else
+				conditions.add((element, position, size) -> ((long) position + b) % a == 0 && position < (long) size - b, true);
+		} else {
+			if (fromFirst)
+				conditions.add((element, position, size) -> position == b, true);
+			else
+				conditions.add((element, position, size) -> (long) position + b - 1 == size, true);
+		}
+		return true;
+	}
+
+	// Strings with apostrophes are not valid XPath literals in the XPaths of the selectors
+	private static boolean isLiteral(String string) {
+		return string.indexOf('\'') < 0;
+	}
+
+	// As in XPath, where only these are whitespace characters
+	private static boolean isWhitespace(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c != ' ' && c != '\t' && c != '\r' && c != '\n')
+				return false;
+		}
+		return true;
+	}
+
+	private static String normalizeSpace(String string) {
+		return string.replaceAll("[ \t\r\n]+", " ").trim();
+	}
+
+	/**
+	 * The id which the elements selected by this matcher have, if any
+	 * @return
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * The class names which the elements selected by this matcher have
+	 * @return
+	 */
+	public List<String> getClassNames() {
+		return classNames;
+	}
+
+	/**
+	 * The name which the elements selected by this matcher have, if any
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Whether the given element is selected by this matcher
+	 * @param element
+	 * @return
+	 */
+	boolean matches(ElementInfo element) {
+		return matches(steps.size() - 1, element);
+	}
+
+	/**
+	 * Forgets the results for the elements of the last matched Document
+	 */
+	void clearResults() {
+		for (Map<ElementInfo, Boolean> stepResults : results)
+			stepResults.clear();
+	}
+
+	private boolean matches(int stepIndex, ElementInfo element) {
+		Step step = steps.get(stepIndex);
+		Conditions conditions = step.conditions;
+		if (!conditions.matches(element))
+			return false;
+		switch (step.axis) {
+		case CHILD:
+			if (!conditions.matchesPosition(element, element.position, element.siblings.size()))
+				return false;
+			// The first step is on the children of any node
+			return stepIndex == 0 || (element.parent != null && isSelectedByStep(stepIndex - 1, element.parent));
+		case DESCENDANT:
+			for (ElementInfo ancestor = element.parent; ancestor != null; ancestor = ancestor.parent) {
+				if (conditions.matchesPosition(element, element.index - ancestor.index, ancestor.end - ancestor.index - 1) &&
+						isSelectedByStep(stepIndex - 1, ancestor))
+					return true;
+			}
+			return false;
+		case FOLLOWING_SIBLING:
+			for (int i = element.position - 2; i >= 0; i--) {
+				ElementInfo sibling = element.siblings.get(i);
+				if (conditions.matchesPosition(element, element.position - sibling.position, element.siblings.size() - sibling.position) &&
+						isSelectedByStep(stepIndex - 1, sibling))
+					return true;
+			}
+			return false;
+		}
+		return false;
+	}
+
+	private boolean isSelectedByStep(int stepIndex, ElementInfo element) {
+		Map<ElementInfo, Boolean> stepResults = results.get(stepIndex);
+		Boolean selected = stepResults.get(element);
+		if (selected == null) {
+			selected = matches(stepIndex, element);
+			stepResults.put(element, selected);
+		}
+		return selected;
+	}
+
+}
@@ -1,19 +1,29 @@
 package ca.concordia.cssanalyser.refactoring;
 
 import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.refactoring.dependencies.CSSValueOverridingDependencyList;
 
 public class BatchGroupingRefactoringResult implements RefactoringResults {
 	private final StyleSheet styleSheet;
+	private final CSSValueOverridingDependencyList dependencies;
 	private final int numberOfAppliedRefactorings;
 	private final int numberOfPositiveRefactorins;
-	public BatchGroupingRefactoringResult(StyleSheet styleSheet, int appliedRefactorings, int positiveRefactorins) {
+	public BatchGroupingRefactoringResult(StyleSheet styleSheet, CSSValueOverridingDependencyList dependencies, int appliedRefactorings, int positiveRefactorins) {
 		this.styleSheet = styleSheet;
+		this.dependencies = dependencies;
 		this.numberOfAppliedRefactorings = appliedRefactorings;
 		this.numberOfPositiveRefactorins = positiveRefactorins;
 	}
 	public StyleSheet getStyleSheet() {
 		return styleSheet;
 	}
+	/**
+	 * The dependencies of the refactored style sheet
+	 * @return
+	 */
+	public CSSValueOverridingDependencyList getDependencies() {
+		return dependencies;
+	}
 	public int getNumberOfAppliedRefactorings() {
 		return numberOfAppliedRefactorings;
 	}
@@ -5,6 +5,9 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
@@ -20,9 +23,6 @@ import ca.concordia.cssanalyser.cssmodel.declaration.ShorthandDeclaration;
 import ca.concordia.cssanalyser.cssmodel.selectors.GroupingSelector;
 import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
 import ca.concordia.cssanalyser.io.IOHelper;
-import ca.concordia.cssanalyser.parser.CSSParser;
-import ca.concordia.cssanalyser.parser.CSSParserFactory;
-import ca.concordia.cssanalyser.parser.CSSParserFactory.CSSParserType;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSDependencyDetector;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSDependencyDifferenceList;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSValueOverridingDependencyList;
@@ -35,10 +35,20 @@ public class RefactorDuplicationsToGroupingSelector {
 
 	private StyleSheet originalStyleSheet;
     private boolean domFreeDeps = false;
+    private int numberOfThreads = 1;
 
     private class RefactoringResult {
         StyleSheet newStyleSheet = null;
+        // The style sheet after grouping, before reordering
+        StyleSheet groupedStyleSheet = null;
+        // Null if reordering was not needed
+        StyleSheet reorderedStyleSheet = null;
+        // The dependencies of the new style sheet, if the refactoring was possible
+        CSSValueOverridingDependencyList newDependencies = null;
         boolean refactoringWasPossible = false;
+        // Written by the caller, so parallel attempts don't write the same files
+        String dependencyDifferences = null;
+        String dependencyDifferencesAfterReordering = null;
     }
 
     /**
@@ -58,6 +68,17 @@ public class RefactorDuplicationsToGroupingSelector {
 		return this.originalStyleSheet;
 	}
 
+	/**
+	 * Sets the number of grouping refactorings of pairs of items which are checked in parallel
+	 * in {@link #refactorGroupingOpportunities(int, String, List, Document, boolean, boolean)},
+	 * and of threads used by FP-Growth after each refactoring.
+	 * Refactorings are always checked one by one when a DOM is given.
+	 * @param value
+	 */
+	public void setNumberOfThreads(int value) {
+		numberOfThreads = value;
+	}
+
 	/**
 	 * Applies one grouping refactoring for the given ItemSet on the given style sheet.
 	 * Doesn't touch the original given stylesheet
@@ -148,6 +169,17 @@ public class RefactorDuplicationsToGroupingSelector {
 
 		IOHelper.writeStringToFile(originalDependencies.toString(), folderName + "/orderDependencies.txt");
 
+		/*
+		 * The dependencies of the current style sheet, updated after each applied refactoring.
+		 * The refactored style sheets are renumbered copies, i.e., parsed again, which may change
+		 * the selectors not touched by a refactoring (e.g., "*[hidden]" becomes "[hidden]"),
+		 * so the first ones are found on a renumbered copy of the original style sheet.
+		 * With a DOM, all of the dependencies are found again after each refactoring.
+		 */
+		CSSValueOverridingDependencyList dependencies = originalDependencies;
+		if (dom == null)
+			dependencies = stylesheetToBeRefactored.getRenumberedCopy().getValueOverridingDependencies(dom, domFreeDeps);
+
 		TreeSet<ItemSet> itemSetsTreeSet = new TreeSet<>(new Comparator<ItemSet>() {
 			@Override
 			public int compare(ItemSet o1, ItemSet o2) {
@@ -168,6 +200,12 @@ public class RefactorDuplicationsToGroupingSelector {
 
 		List<ItemSet> listOfInfeasibleRefactorings = new ArrayList<>();
 
+		/*
+		 * The detector of the current style sheet. After the first applied refactoring,
+		 * duplications and FP-Growth results are only updated for the changed declarations.
+		 */
+		DuplicationDetector duplicationDetector = null;
+
 		boolean firstRun = true;
 		int numberOfPositiveRefactorings = 0;
 		int refactoringRound = 0;
@@ -201,27 +239,36 @@ public class RefactorDuplicationsToGroupingSelector {
                 LOGGER.info("Testing " + pairs.size() + " pairs");
 
                 // do all pairs then add infeasible to infeasible list
+                List<ItemSet> pairsToTest = new ArrayList<>();
+                for (ItemSet is : pairs) {
+                    if (!containsItemSet(listOfInfeasibleRefactorings, is))
+                        pairsToTest.add(is);
+                }
+                List<RefactoringResult> pairsResults
+                    = attemptRefactorings(stylesheetToBeRefactored,
+                                          pairsToTest,
+                                          folderName,
+                                          refactoringRound,
+                                          dom,
+                                          domFreeDeps,
+                                          originalDependencies,
+                                          dependencies);
+                // Merge in the order of the pairs, so the results don't depend on the number of threads
                 int badCount = 0;
                 int total = 0;
-                for (ItemSet is : pairs) {
+                for (int i = 0; i < pairsToTest.size(); i++) {
+                    ItemSet is = pairsToTest.get(i);
                     if (!containsItemSet(listOfInfeasibleRefactorings, is)) {
-                        RefactoringResult result
-                            = attemptRefactoring(stylesheetToBeRefactored,
-                                                 is,
-                                                 writeIntermediateFiles,
-                                                 folderName,
-                                                 refactoringRound,
-                                                 dom,
-                                                 domFreeDeps,
-                                                 originalDependencies);
+                        RefactoringResult result = pairsResults.get(i);
+                        writeDependencyDifferences(result, folderName, refactoringRound);
                         if (!result.refactoringWasPossible) {
                             listOfInfeasibleRefactorings.add(is);
                             badCount++;
                         }
                         total++;
-                        LOGGER.info("Done " + total + " pairs");
                     }
                 }
+                LOGGER.info("Done " + total + " pairs");
                 LOGGER.info("Found " + badCount + " bad pairs");
 
                 // The following is already taken care of below, but let's just
@@ -262,19 +309,32 @@ public class RefactorDuplicationsToGroupingSelector {
 
             RefactoringResult result = attemptRefactoring(stylesheetToBeRefactored,
                                                           itemSetWithMaxImpact,
-                                                          writeIntermediateFiles,
                                                           folderName,
                                                           refactoringRound,
                                                           dom,
                                                           domFreeDeps,
-                                                          originalDependencies);
+                                                          originalDependencies,
+                                                          dependencies);
+            writeDependencyDifferences(result, folderName, refactoringRound);
             refactoringWasPossible = result.refactoringWasPossible;
             if(refactoringWasPossible) {
+				if (writeIntermediateFiles) {
+					IOHelper.writeStringToFile(result.groupedStyleSheet.toString(), result.groupedStyleSheet.getFilePath());
+					if (result.reorderedStyleSheet != null)
+						IOHelper.writeStringToFile(result.reorderedStyleSheet.toString(), result.reorderedStyleSheet.getFilePath());
+				}
 				stylesheetToBeRefactored = result.newStyleSheet;
-				DuplicationDetector duplicationFinderRefacored = new DuplicationDetector(stylesheetToBeRefactored);
-				duplicationFinderRefacored.findDuplications();
-				fpgrowthResults = duplicationFinderRefacored.fpGrowth(MIN_SUPPORT, false);
-				duplicationFinderRefacored = null;
+				dependencies = result.newDependencies;
+				if (duplicationDetector == null) {
+					// The given FP-Growth results do not come with their detector
+					duplicationDetector = new DuplicationDetector(stylesheetToBeRefactored);
+					duplicationDetector.setNumberOfThreads(numberOfThreads);
+					duplicationDetector.findDuplications();
+					fpgrowthResults = duplicationDetector.fpGrowth(MIN_SUPPORT, false);
+				} else {
+					duplicationDetector = duplicationDetector.getDuplicationDetectorAfterGroupingRefactoring(stylesheetToBeRefactored, itemSetWithMaxImpact);
+					fpgrowthResults = duplicationDetector.fpGrowthAfterGroupingRefactoring(MIN_SUPPORT, fpgrowthResults);
+				}
 
             } else {
                 listOfInfeasibleRefactorings.add(itemSetWithMaxImpact);
@@ -284,37 +344,98 @@ public class RefactorDuplicationsToGroupingSelector {
 
 
 		int numberOfAppliedRefactorings = refactoringRound - 1;
-		return new BatchGroupingRefactoringResult(stylesheetToBeRefactored, numberOfAppliedRefactorings , numberOfPositiveRefactorings);
+		return new BatchGroupingRefactoringResult(stylesheetToBeRefactored, dependencies, numberOfAppliedRefactorings , numberOfPositiveRefactorings);
 
 	}
 
 
+    /**
+     * Attempts the grouping refactorings of the given ItemSets independently,
+     * in parallel if more than one thread is allowed and no DOM is given.
+     * @param originalDependencies The dependencies of the original style sheet, which must be kept
+     * @param dependencies The dependencies of the style sheet to be refactored
+     * @return The results, in the order of the given ItemSets
+     */
+    private List<RefactoringResult> attemptRefactorings(StyleSheet stylesheetToBeRefactored,
+                                                        List<ItemSet> itemSets,
+                                                        String folderName,
+                                                        int refactoringRound,
+                                                        Document dom,
+                                                        boolean domFreeDeps,
+                                                        CSSValueOverridingDependencyList originalDependencies,
+                                                        CSSValueOverridingDependencyList dependencies) {
+        List<RefactoringResult> results = new ArrayList<>();
+        // The DOM cannot be queried by more than one thread
+        if (numberOfThreads < 2 || itemSets.size() < 2 || dom != null) {
+            for (ItemSet itemSet : itemSets) {
+                results.add(attemptRefactoring(stylesheetToBeRefactored, itemSet, folderName,
+                                               refactoringRound, dom, domFreeDeps, originalDependencies, dependencies));
+            }
+        } else {
+            LOGGER.info("Checking " + itemSets.size() + " refactorings using " + numberOfThreads + " threads");
+            ForkJoinPool pool = new ForkJoinPool(Math.min(numberOfThreads, itemSets.size()));
+            try {
+                List<Future<RefactoringResult>> resultsFutures = new ArrayList<>();
+                for (ItemSet itemSet : itemSets) {
+                    resultsFutures.add(pool.submit(() -> attemptRefactoring(stylesheetToBeRefactored, itemSet, folderName,
+                                                                            refactoringRound, dom, domFreeDeps, originalDependencies, dependencies)));
+                }
+                for (Future<RefactoringResult> resultFuture : resultsFutures) {
+                    results.add(resultFuture.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while checking the refactorings of round " + refactoringRound, ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException)cause;
+                if (cause instanceof Error)
+                    throw (Error)cause;
+                throw new RuntimeException(cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        return results;
+    }
+
+    private void writeDependencyDifferences(RefactoringResult result, String folderName, int refactoringRound) {
+        if (result.dependencyDifferences != null) {
+            LOGGER.info("Writing to file");
+            long startTime = System.currentTimeMillis();
+            IOHelper.writeStringToFile(result.dependencyDifferences, folderName + "/dependency-differences" + refactoringRound + ".txt");
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("Took " + (endTime - startTime) + "ms.");
+        }
+        if (result.dependencyDifferencesAfterReordering != null)
+            IOHelper.writeStringToFile(result.dependencyDifferencesAfterReordering, folderName + "/dependency-differences-after-reordering" + refactoringRound + ".txt");
+    }
+
     private RefactoringResult attemptRefactoring(StyleSheet stylesheetToBeRefactored,
                                                  ItemSet itemSet,
-                                                 boolean writeIntermediateFiles,
                                                  String folderName,
                                                  int refactoringRound,
                                                  Document dom,
                                                  boolean domFreeDeps,
-                                                 CSSValueOverridingDependencyList originalDependencies) {
+                                                 CSSValueOverridingDependencyList originalDependencies,
+                                                 CSSValueOverridingDependencyList dependencies) {
         RefactoringResult result = new RefactoringResult();
 
-        result.newStyleSheet = groupingRefactoring(stylesheetToBeRefactored, itemSet);
-
-        if (writeIntermediateFiles)
-            IOHelper.writeStringToFile(result.newStyleSheet.toString(),
-                                       folderName + "/refactored" + refactoringRound + ".css");
-
-        CSSParser parser = CSSParserFactory.getCSSParser(CSSParserType.LESS);
-        try {
-            result.newStyleSheet
-                = parser.parseExternalCSS(folderName + "/refactored" + refactoringRound + ".css");
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-
+        // The renumbered copy is the same as parsing the refactored style sheet again,
+        // the file is only written if this refactoring is applied
+        result.groupedStyleSheet = groupingRefactoring(stylesheetToBeRefactored, itemSet).getRenumberedCopy();
+        result.groupedStyleSheet.setPath(folderName + "/refactored" + refactoringRound + ".css");
+        result.newStyleSheet = result.groupedStyleSheet;
+
+        // Only the dependencies of the selectors losing declarations and of the new grouping selector are found again
+        List<Selector> changedSelectors = new ArrayList<>();
+        for (Selector selector : itemSet.getSupport())
+            changedSelectors.add(selector);
+        changedSelectors.add(itemSet.getGroupingSelector());
         CSSValueOverridingDependencyList refactoredDependencies
-            = result.newStyleSheet.getValueOverridingDependencies(dom, domFreeDeps);
+            = new CSSDependencyDetector(result.newStyleSheet, dom).findOverridingDependancies(dependencies, changedSelectors, domFreeDeps);
+        result.newDependencies = refactoredDependencies;
 
         LOGGER.info("Checking differences in the dependencies " + refactoredDependencies);
         long startTime = System.currentTimeMillis();
@@ -324,11 +445,7 @@ public class RefactorDuplicationsToGroupingSelector {
 
         if (differences.size() > 0 && !differences.allMissing()) {
 
-            LOGGER.info("Writing to file");
-            startTime = System.currentTimeMillis();
-            IOHelper.writeStringToFile(differences.toString(), folderName + "/dependency-differences" + refactoringRound + ".txt");
-            endTime = System.currentTimeMillis();
-            LOGGER.info("Took " + (endTime - startTime) + "ms.");
+            result.dependencyDifferences = differences.toString();
 
             LOGGER.info("Reordering needed at round " + refactoringRound);
 
@@ -347,24 +464,22 @@ public class RefactorDuplicationsToGroupingSelector {
 
                 result.refactoringWasPossible = true;
 
-                CSSDependencyDetector dependencyDetector2 = new CSSDependencyDetector(refactoredAndOrdered, dom);
+                // The selectors of the reordered style sheet keep their locations before reordering,
+                // which order the DOM-free dependencies, so the dependencies are found on its renumbered copy
+                result.reorderedStyleSheet = refactoredAndOrdered.getRenumberedCopy();
+                result.reorderedStyleSheet.setPath(folderName + "/refactored-reordered" + refactoringRound + ".css");
+                result.newStyleSheet = result.reorderedStyleSheet;
 
-                if (writeIntermediateFiles)
-                    IOHelper.writeStringToFile(refactoredAndOrdered.toString(), folderName + "/refactored-reordered" + refactoringRound + ".css");
+                CSSDependencyDetector dependencyDetector2 = new CSSDependencyDetector(result.reorderedStyleSheet, dom);
 
                 CSSValueOverridingDependencyList dependenciesReordered = dependencyDetector2.findOverridingDependancies(domFreeDeps);
+                result.newDependencies = dependenciesReordered;
                 differences = originalDependencies.getDifferencesWith(dependenciesReordered);
 
                 if (differences.size() > 0) {
                     LOGGER.warn("Differences in dependencies after reordering " + refactoringRound + "\n");
                     LOGGER.warn(differences.toString() + "\n");
-                    IOHelper.writeStringToFile(differences.toString(), folderName + "/dependency-differences-after-reordering" + refactoringRound + ".txt");
-                }
-
-                try {
-                    result.newStyleSheet = parser.parseExternalCSS(folderName + "/refactored-reordered" + refactoringRound + ".css");
-                } catch (Exception ex) {
-                    ex.printStackTrace();
+                    result.dependencyDifferencesAfterReordering = differences.toString();
                 }
             }
         } else { // If there were not difference between dependencies after grouping
@@ -1,10 +1,13 @@
 package ca.concordia.cssanalyser.refactoring.dependencies;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.w3c.dom.Document;
 
@@ -12,6 +15,8 @@ import ca.concordia.cssanalyser.cssmodel.StyleSheet;
 import ca.concordia.cssanalyser.cssmodel.declaration.Declaration;
 import ca.concordia.cssanalyser.cssmodel.declaration.ShorthandDeclaration;
 import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.GroupingSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
 import ca.concordia.cssanalyser.dom.DOMNodeWrapper;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSInterSelectorValueOverridingDependency.InterSelectorDependencyReason;
 
@@ -66,6 +71,69 @@ public class CSSDependencyDetector {
 		return dependencies;
 	}
 
+	/**
+	 * Returns the same dependencies as {@link #findOverridingDependancies(boolean)},
+	 * given the dependencies of a style sheet from which this one was made by changing only the given selectors,
+	 * i.e., adding or removing them, or adding or removing some of their declarations,
+	 * without changing the order of the other selectors (e.g., by a grouping refactoring).
+	 * Only the dependencies of the changed selectors, and of the selectors equal to them, are found again,
+	 * the other dependencies are the given ones. With a DOM, all of the dependencies are found again.
+	 * @param dependenciesBefore The dependencies of the style sheet before the change
+	 * @param changedSelectors The changed selectors, of either style sheet
+	 * @param domFreeDeps
+	 * @return
+	 */
+	public CSSValueOverridingDependencyList findOverridingDependancies(CSSValueOverridingDependencyList dependenciesBefore,
+			Collection<? extends Selector> changedSelectors, boolean domFreeDeps) {
+
+		if (this.document != null)
+			return findOverridingDependancies(domFreeDeps);
+
+		Predicate<Selector> isChanged = getSelectorsEqualTo(changedSelectors);
+		if (domFreeDeps)
+			return new CSSDomFreeDependencyDetector(this.styleSheet).findOverridingDependencies(dependenciesBefore, isChanged);
+
+		// Intra-selector dependencies only depend on the declarations of their selector
+		CSSValueOverridingDependencyList dependencies = new CSSValueOverridingDependencyList();
+		for (CSSValueOverridingDependency dependency : dependenciesBefore) {
+			if (!isChanged.test(dependency.getSelector1()))
+				dependencies.add(dependency);
+		}
+		for (BaseSelector selector : this.styleSheet.getAllBaseSelectors()) {
+			if (isChanged.test(selector))
+				dependencies.addAll(getValueOverridingDependenciesForSelector(selector));
+		}
+		return dependencies;
+	}
+
+	/*
+	 * Whether a selector is equal to one of the given selectors (see Selector.selectorEquals()),
+	 * or to a base selector of one of the given grouping selectors
+	 */
+	private static Predicate<Selector> getSelectorsEqualTo(Collection<? extends Selector> selectors) {
+		List<BaseSelector> baseSelectors = new ArrayList<>();
+		for (Selector selector : selectors) {
+			if (selector instanceof GroupingSelector) {
+				for (BaseSelector baseSelector : ((GroupingSelector)selector).getBaseSelectors())
+					baseSelectors.add(baseSelector);
+			} else if (selector instanceof BaseSelector) {
+				baseSelectors.add((BaseSelector)selector);
+			}
+		}
+		Set<Integer> hashCodes = new HashSet<>();
+		for (BaseSelector baseSelector : baseSelectors)
+			hashCodes.add(baseSelector.selectorHashCode());
+		return selector -> {
+			if (!hashCodes.contains(selector.selectorHashCode()))
+				return false;
+			for (BaseSelector baseSelector : baseSelectors) {
+				if (baseSelector.selectorEquals(selector))
+					return true;
+			}
+			return false;
+		};
+	}
+
 	private CSSValueOverridingDependencyList findInterSelectorDependencies() {
 
 		CSSValueOverridingDependencyList dependencies = new CSSValueOverridingDependencyList();
@@ -2,10 +2,12 @@ package ca.concordia.cssanalyser.refactoring.dependencies;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -197,8 +199,24 @@ public abstract class CSSDependencyList<T extends CSSDependency<?>> implements L
 		Set<CSSDependency<?>> toRemoveFromMissing = new HashSet<>();
 		Set<CSSDependency<?>> toRemoveFromAdded = new HashSet<>();
 
+		// The added dependencies by their nodes, so the ones reversing a missing dependency are found without
+		// comparing it with every added dependency. Each list keeps the order of the added dependencies
+		Map<NodePair, List<CSSDependency<?>>> addedByNodes = new HashMap<>();
+		for (CSSDependency<?> rd : added) {
+			NodePair nodes = new NodePair(rd.getStartingNode(), rd.getEndingNode());
+			List<CSSDependency<?>> addedWithSameNodes = addedByNodes.get(nodes);
+			if (addedWithSameNodes == null) {
+				addedWithSameNodes = new ArrayList<>();
+				addedByNodes.put(nodes, addedWithSameNodes);
+			}
+			addedWithSameNodes.add(rd);
+		}
+
 		for (CSSDependency<?> d : missing) {
-			for (CSSDependency<?> rd : added) {
+			List<CSSDependency<?>> reversedCandidates = addedByNodes.get(new NodePair(d.getEndingNode(), d.getStartingNode()));
+			if (reversedCandidates == null)
+				continue;
+			for (CSSDependency<?> rd : reversedCandidates) {
 				if (rd.getStartingNode().nodeEquals(d.getEndingNode()) &&
 						d.getStartingNode().nodeEquals(rd.getEndingNode()) &&
 						(rd.getDependencyLabels().containsAll(d.getDependencyLabels()) || d.getDependencyLabels().containsAll(rd.getDependencyLabels()))) {
@@ -295,6 +313,36 @@ public abstract class CSSDependencyList<T extends CSSDependency<?>> implements L
 		return toReturn;
 	}
 
+	/*
+	 * The starting and ending nodes of a dependency,
+	 * equal to the ones of another dependency with equal nodes (see CSSDependencyNode.nodeEquals())
+	 */
+	private static class NodePair {
+
+		private final CSSDependencyNode startingNode;
+		private final CSSDependencyNode endingNode;
+
+		public NodePair(CSSDependencyNode startingNode, CSSDependencyNode endingNode) {
+			this.startingNode = startingNode;
+			this.endingNode = endingNode;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * startingNode.nodeHashCode() + endingNode.nodeHashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof NodePair))
+				return false;
+			NodePair other = (NodePair)obj;
+			return startingNode.nodeEquals(other.startingNode) && endingNode.nodeEquals(other.endingNode);
+		}
+	}
+
 	public CSSDependency<?> getDependency(CSSDependencyNode node1,
 			CSSDependencyNode node2) {
 		for (CSSDependency<?> dependency : dependencies) {
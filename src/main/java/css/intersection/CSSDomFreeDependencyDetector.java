@@ -3,20 +3,15 @@ package css.intersection;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 
@@ -30,10 +25,30 @@ import ca.concordia.cssanalyser.cssmodel.selectors.GroupingSelector;
 import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSInterSelectorValueOverridingDependency;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSInterSelectorValueOverridingDependency.InterSelectorDependencyReason;
+import ca.concordia.cssanalyser.refactoring.dependencies.CSSValueOverridingDependency;
 import ca.concordia.cssanalyser.refactoring.dependencies.CSSValueOverridingDependencyList;
 
 public class CSSDomFreeDependencyDetector {
 
+    /**
+     * The ways of checking whether two selectors can match the same element
+     */
+    public enum EmptinessCheckerBackend {
+        /**
+         * {@link SelectorIntersectionChecker}, in the JVM
+         */
+        NATIVE,
+        /**
+         * The emptiness checker run by ./intersection-tool.sh
+         */
+        INTERSECTION_TOOL,
+        /**
+         * Uses the results of ./intersection-tool.sh, and logs the pairs for
+         * which {@link SelectorIntersectionChecker} gives a different result
+         */
+        COMPARE
+    }
+
     private static final String PYTHON_COMMAND = "./intersection-tool.sh";
 
     private static Logger LOGGER
@@ -101,18 +116,14 @@ public class CSSDomFreeDependencyDetector {
     }
 
     /**
-     * Tasks are created then sent to Python which writes the result back later.
-     * A poison task marks the end of the created tasks
+     * Tasks are created then sent to Python which writes the results back later
      */
     private static class DependencyTask {
-        public static final DependencyTask POISON = new DependencyTask();
-
-        public SelDec sd1 = null;
+        public SelDec sd1;
         public SelDec sd2;
         public String property;
-
-        // poison
-        public DependencyTask() { }
+        // null until the pair is checked, unless it is memoized
+        public Boolean overlap;
 
         public DependencyTask(SelDec sd1,
                               SelDec sd2,
@@ -121,10 +132,6 @@ public class CSSDomFreeDependencyDetector {
             this.sd2 = sd2;
             this.property = property;
         }
-
-        public boolean isPoison() {
-            return this.sd1 == null;
-        }
     }
 
 
@@ -166,6 +173,8 @@ public class CSSDomFreeDependencyDetector {
         = new HashMap<SelPair, Boolean>();
     // Temp SelPair to avoid creating objects just to check membership
     private static SelPair tempSelPair = new SelPair();
+    // Overlap results of previous runs, looked up when not in overlapMemo
+    private static PersistentOverlapMemo persistentOverlapMemo = null;
 
 
     // (p, spec) -> { ... (s, d) ... }
@@ -173,12 +182,17 @@ public class CSSDomFreeDependencyDetector {
     private Map<PropSpec, Set<SelDec>> overlapMap
         = new HashMap<PropSpec, Set<SelDec>>();
     private StyleSheet styleSheet;
-
-    private static Process emptinessChecker = null;
-    private static OutputStreamWriter empOut = null;
-    private static InputStreamReader empIn = null;
-    private static long totalTime = 0;
-    private static ExecutorService executor = Executors.newSingleThreadExecutor();
+    // when not null, only the pairs of rules having a changed selector are
+    // checked
+    private Predicate<Selector> isChanged = null;
+
+    private static final AtomicLong totalTime = new AtomicLong();
+    private static volatile EmptinessCheckerBackend backend = EmptinessCheckerBackend.NATIVE;
+    // the emptiness checker processes are shared by all instances, which may
+    // be running in parallel (one per style sheet), and started when needed
+    private static IntersectionToolPool intersectionToolPool = null;
+    private static int numberOfIntersectionToolProcesses
+        = Runtime.getRuntime().availableProcessors();
 
     public CSSDomFreeDependencyDetector(StyleSheet styleSheet) {
         this.styleSheet = styleSheet;
@@ -193,7 +207,13 @@ public class CSSDomFreeDependencyDetector {
     public CSSValueOverridingDependencyList findOverridingDependencies() {
         try {
             buildOverlapMap();
-            return buildDependencyList();
+            CSSValueOverridingDependencyList dependencies;
+            if (backend == EmptinessCheckerBackend.NATIVE)
+                dependencies = buildDependencyListNatively();
+            else
+                dependencies = buildDependencyList();
+            flushPersistentOverlapMemo();
+            return dependencies;
         } catch (IOException e) {
             LOGGER.error("IOException calculating dependencies, aborting.\n" + e);
             System.exit(-1);
@@ -202,134 +222,302 @@ public class CSSDomFreeDependencyDetector {
     }
 
     /**
-     * Needs to be called for program to terminate!
+     * Like findOverridingDependencies(), given the dependencies of a style
+     * sheet which differs from this one only by the rules of some selectors,
+     * the other selectors being in the same order (e.g. the style sheet before
+     * a grouping refactoring).  Only the pairs of rules having a changed
+     * selector are checked, the other dependencies are the given ones.
+     *
+     * @param dependenciesBefore the dependencies of the other style sheet
+     * @param isChanged whether the rules of a selector, of either style sheet,
+     * were changed
+     * @return the orderings within the file that must be respected
      */
-    public static void killExecutor() {
-        executor.shutdown();
+    public CSSValueOverridingDependencyList findOverridingDependencies(CSSValueOverridingDependencyList dependenciesBefore,
+                                                                       Predicate<Selector> isChanged) {
+        CSSValueOverridingDependencyList dependencies
+            = new CSSValueOverridingDependencyList();
+        for (CSSValueOverridingDependency dependency : dependenciesBefore) {
+            if (!isChanged.test(dependency.getSelector1()) &&
+                !isChanged.test(dependency.getSelector2()))
+                dependencies.add(dependency);
+        }
+        this.isChanged = isChanged;
+        try {
+            dependencies.addAll(findOverridingDependencies());
+        } finally {
+            this.isChanged = null;
+        }
+        return dependencies;
     }
 
-    private void startPython() throws IOException {
-        File pythonCommand = new File(PYTHON_COMMAND);
-        if (!pythonCommand.exists())
-            throw new IOException("Please create " +
-                                  PYTHON_COMMAND +
-                                  " script to start emptiness checker tool (you probably want a script that runs \"python <path to our main.py> -e\"");
+    /**
+     * Sets how the emptiness of the intersection of two selectors is checked
+     * for all instances.  The default is {@link EmptinessCheckerBackend#NATIVE}.
+     *
+     * @param emptinessCheckerBackend
+     */
+    public static void setEmptinessCheckerBackend(EmptinessCheckerBackend emptinessCheckerBackend) {
+        backend = emptinessCheckerBackend;
+    }
+
+    /**
+     * Sets the maximum number of emptiness checker processes which are used in
+     * parallel by the {@link EmptinessCheckerBackend#INTERSECTION_TOOL} and
+     * {@link EmptinessCheckerBackend#COMPARE} backends.  Has no effect after the
+     * first process is started.  The default is the number of processors.
+     *
+     * @param numberOfProcesses
+     */
+    public static synchronized void setNumberOfIntersectionToolProcesses(int numberOfProcesses) {
+        numberOfIntersectionToolProcesses = numberOfProcesses;
+    }
+
+    /**
+     * Keeps the overlap results of all instances in the given file, so that
+     * later runs do not check the same pairs of selectors again.  The results
+     * already in the file are loaded, unless they were written by another
+     * backend, so the backend should be set before calling this.  The file is
+     * written when the JVM shuts down.
+     *
+     * @param file
+     * @param maxSize the maximum number of results kept in the file; the least
+     * recently used ones are evicted
+     */
+    public static synchronized void setPersistentOverlapMemo(File file, int maxSize)
+            throws IOException {
+        // COMPARE gives the results of the intersection tool
+        String checkerName = backend == EmptinessCheckerBackend.NATIVE ?
+                             EmptinessCheckerBackend.NATIVE.name() :
+                             EmptinessCheckerBackend.INTERSECTION_TOOL.name();
+        PersistentOverlapMemo memo
+            = new PersistentOverlapMemo(file, checkerName, maxSize);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                memo.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Could not write the overlap memo " + file + "\n" + ex);
+            }
+        }));
+        synchronized (overlapMemo) {
+            persistentOverlapMemo = memo;
+        }
+    }
+
+    private static void flushPersistentOverlapMemo() {
+        PersistentOverlapMemo memo;
+        synchronized (overlapMemo) {
+            memo = persistentOverlapMemo;
+        }
+        if (memo != null) {
+            try {
+                memo.flush();
+            } catch (IOException ex) {
+                LOGGER.warn("Could not write the overlap memo\n" + ex);
+            }
+        }
+    }
+
+    /**
+     * @return the pool of emptiness checker processes, which is created on the
+     * first call.  The processes are stopped when the JVM shuts down.
+     */
+    private static synchronized IntersectionToolPool getIntersectionToolPool() {
+        if (intersectionToolPool == null) {
+            IntersectionToolPool pool
+                = new IntersectionToolPool(PYTHON_COMMAND,
+                                           numberOfIntersectionToolProcesses);
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdown));
+            intersectionToolPool = pool;
+        }
+        return intersectionToolPool;
+    }
 
-        if (emptinessChecker == null) {
-            emptinessChecker =
-                new ProcessBuilder().command(PYTHON_COMMAND).start();
+    /**
+     * After building overlapMap (buildOverlapMap()) call this function to build
+     * the dependency list using {@link SelectorIntersectionChecker}.  Unlike
+     * buildDependencyList(), many instances may run this in parallel.
+     *
+     * @return the dependency list
+     */
+    private CSSValueOverridingDependencyList buildDependencyListNatively() {
+        LOGGER.info("Starting to find dependencies...");
 
-            OutputStream out = emptinessChecker.getOutputStream();
-            empOut = new OutputStreamWriter(out);
+        long startTime = System.currentTimeMillis();
 
-            InputStream in = emptinessChecker.getInputStream();
-            empIn = new InputStreamReader(in);
+        CSSValueOverridingDependencyList dependencies = new CSSValueOverridingDependencyList();
+
+        for (Map.Entry<PropSpec, Set<SelDec>> e : overlapMap.entrySet()) {
+            String property = e.getKey().property;
+            Set<SelDec> sds = e.getValue();
+
+            SelDec[] sdArray = getRules(sds);
+            int len = sdArray.length;
+            int firstRules = getNumberOfFirstRules(sdArray);
+
+            for (int i = 0; i < firstRules; ++i) {
+                for (int j = i + 1; j < len; ++j) {
+                    SelDec sd1 = sdArray[i];
+                    SelDec sd2 = sdArray[j];
+                    if (!sd1.equals(sd2) &&
+                        !declareSameValues(sd1.declaration, sd2.declaration)) {
+                        Boolean memoRes = getMemoResult(sd1.selector,
+                                                        sd2.selector);
+                        if (memoRes == null) {
+                            memoRes = !SelectorIntersectionChecker.intersectionIsEmpty(sd1.selector,
+                                                                                       sd2.selector);
+                            setMemoResult(sd1.selector, sd2.selector, memoRes);
+                        }
+                        if (memoRes.equals(Boolean.TRUE))
+                            dependencies.add(makeDependency(sd1, sd2, property));
+                    }
+                }
+            }
         }
+
+        logTime(startTime, dependencies);
+
+        return dependencies;
     }
 
     /**
      * After building overlapMap (buildOverlapMap()) call this function to build
-     * the dependency list
+     * the dependency list using ./intersection-tool.sh
      *
      * @return the dependency list
      */
     private CSSValueOverridingDependencyList buildDependencyList()
             throws IOException {
-        startPython();
-
         LOGGER.info("Starting to find dependencies...");
 
         long startTime = System.currentTimeMillis();
 
 		CSSValueOverridingDependencyList dependencies = new CSSValueOverridingDependencyList();
 
-        // for creating tasks, finish with a poison task
-        BlockingQueue<DependencyTask> tasks = new LinkedBlockingQueue<DependencyTask>();
-
-        // first post all comparisons to python in an executor
-        executor.submit(() -> {
-            try {
-                for (Map.Entry<PropSpec, Set<SelDec>> e : overlapMap.entrySet()) {
-                    String property = e.getKey().property;
-                    Set<SelDec> sds = e.getValue();
-
-                    SelDec[] sdArray = sds.toArray(new SelDec[sds.size()]);
-                    int len = sdArray.length;
-
-                    for (int i = 0; i < len; ++i) {
-                        for (int j = i + 1; j < len; ++j) {
-                            SelDec sd1 = sdArray[i];
-                            SelDec sd2 = sdArray[j];
-                            if (!sd1.equals(sd2) &&
-                                !declareSameValues(sd1.declaration, sd2.declaration)) {
-                                Boolean memoRes = getMemoResult(sd1.selector,
-                                                                sd2.selector);
-                                if (memoRes == null) {
-                                    empOut.write(sd1.selector + "\n");
-                                    empOut.write(sd2.selector + "\n");
-                                    tasks.add(new DependencyTask(sd1, sd2, property));
-                                } else if (memoRes.equals(Boolean.TRUE)) {
-                                    CSSInterSelectorValueOverridingDependency dep
-                                        = makeDependency(sd1, sd2, property);
-                                    synchronized (dependencies) {
-                                        dependencies.add(dep);
-                                    }
-                                }
-                            }
+        // the pairs which are not memoized are sent to python.  Dependencies
+        // are added in the order of the pairs, whichever were memoized, so
+        // that the list is the same with or without an overlap memo
+        List<DependencyTask> tasks = new ArrayList<DependencyTask>();
+        List<DependencyTask> tasksToCheck = new ArrayList<DependencyTask>();
+        List<BaseSelector[]> selectorPairs = new ArrayList<BaseSelector[]>();
+
+        for (Map.Entry<PropSpec, Set<SelDec>> e : overlapMap.entrySet()) {
+            String property = e.getKey().property;
+            Set<SelDec> sds = e.getValue();
+
+            SelDec[] sdArray = getRules(sds);
+            int len = sdArray.length;
+            int firstRules = getNumberOfFirstRules(sdArray);
+
+            for (int i = 0; i < firstRules; ++i) {
+                for (int j = i + 1; j < len; ++j) {
+                    SelDec sd1 = sdArray[i];
+                    SelDec sd2 = sdArray[j];
+                    if (!sd1.equals(sd2) &&
+                        !declareSameValues(sd1.declaration, sd2.declaration)) {
+                        DependencyTask t = new DependencyTask(sd1, sd2, property);
+                        t.overlap = getMemoResult(sd1.selector, sd2.selector);
+                        if (t.overlap == null) {
+                            tasksToCheck.add(t);
+                            selectorPairs.add(new BaseSelector[] { sd1.selector, sd2.selector });
                         }
+                        tasks.add(t);
                     }
                 }
-
-                // force python to flush
-                empOut.write(".\n");
-                empOut.flush();
-            } catch (IOException ex) {
-                LOGGER.error("Exception generating dependency tasks!" + ex);
-                System.exit(-1);
-            } finally {
-                tasks.add(DependencyTask.POISON);
             }
-        });
+        }
 
-        // get results while the executor above is generating them
-        try {
-            while (true) {
-                DependencyTask t = tasks.take();
-                if (t.isPoison())
-                    break;
-
-                int result = empIn.read();
-
-                if ((char)result == 'N') {
-                    CSSInterSelectorValueOverridingDependency dep
-                        = makeDependency(t.sd1, t.sd2, t.property);
-                    synchronized (dependencies) {
-                        dependencies.add(dep);
-                    }
-                    setMemoResult(t.sd1.selector, t.sd2.selector, true);
-                } else {
-                    setMemoResult(t.sd1.selector, t.sd2.selector, false);
+        boolean[] overlaps = getIntersectionToolPool().checkOverlaps(selectorPairs);
+
+        for (int i = 0; i < tasksToCheck.size(); ++i) {
+            DependencyTask t = tasksToCheck.get(i);
+
+            if (backend == EmptinessCheckerBackend.COMPARE)
+                compareWithNativeResult(t, overlaps[i]);
+
+            t.overlap = overlaps[i];
+            setMemoResult(t.sd1.selector, t.sd2.selector, overlaps[i]);
+        }
+
+        for (DependencyTask t : tasks) {
+            if (t.overlap.equals(Boolean.TRUE))
+                dependencies.add(makeDependency(t.sd1, t.sd2, t.property));
+        }
+
+        logTime(startTime, dependencies);
+
+        return dependencies;
+    }
+
+    /**
+     * @param sds rules with the same property and specificity
+     * @return the rules, the ones of changed selectors first if only the
+     * pairs having one are checked
+     */
+    private SelDec[] getRules(Set<SelDec> sds) {
+        SelDec[] sdArray = sds.toArray(new SelDec[sds.size()]);
+        if (isChanged != null) {
+            int n = 0;
+            for (int i = 0; i < sdArray.length; ++i) {
+                if (isChanged.test(sdArray[i].selector)) {
+                    SelDec sd = sdArray[n];
+                    sdArray[n++] = sdArray[i];
+                    sdArray[i] = sd;
                 }
             }
-        } catch (InterruptedException ex) {
-            LOGGER.error("Interrupted during task consumption: " + ex);
-            System.exit(-1);
         }
+        return sdArray;
+    }
 
+    /**
+     * @param sdArray rules returned by getRules()
+     * @return n such that the pairs of rules to check are (sdArray[i],
+     * sdArray[j]) for i < j and i < n.  If only the pairs having a changed
+     * selector are checked, n is the number of rules of changed selectors
+     */
+    private int getNumberOfFirstRules(SelDec[] sdArray) {
+        if (isChanged == null)
+            return sdArray.length;
+        int n = 0;
+        while (n < sdArray.length && isChanged.test(sdArray[n].selector))
+            ++n;
+        return n;
+    }
+
+    private void logTime(long startTime, CSSValueOverridingDependencyList dependencies) {
         long endTime = System.currentTimeMillis();
 
         long thisTime = endTime - startTime;
-        totalTime += thisTime;
 
         LOGGER.info("Calculating dependencies took " +
                     thisTime +
                     "ms (total: " +
-                    totalTime +
+                    totalTime.addAndGet(thisTime) +
                     "ms).  Found " +
                     dependencies.size() +
                     ".");
+    }
 
-        return dependencies;
+    /**
+     * Logs a warning if SelectorIntersectionChecker does not agree with
+     * the intersection tool
+     *
+     * @param t the task of the checked selectors
+     * @param overlap the result of the intersection tool
+     */
+    private void compareWithNativeResult(DependencyTask t, boolean overlap) {
+        boolean nativeOverlap
+            = !SelectorIntersectionChecker.intersectionIsEmpty(t.sd1.selector,
+                                                               t.sd2.selector);
+        if (nativeOverlap != overlap)
+            LOGGER.warn("Emptiness checkers disagree on " +
+                        t.sd1.selector +
+                        " and " +
+                        t.sd2.selector +
+                        ": intersection tool says " +
+                        (overlap ? "non-empty" : "empty") +
+                        ", native checker says " +
+                        (nativeOverlap ? "non-empty" : "empty"));
     }
 
 
@@ -366,7 +554,13 @@ public class CSSDomFreeDependencyDetector {
         synchronized (overlapMemo) {
             tempSelPair.sel1 = sel1;
             tempSelPair.sel2 = sel2;
-            return overlapMemo.get(tempSelPair);
+            Boolean result = overlapMemo.get(tempSelPair);
+            if (result == null && persistentOverlapMemo != null) {
+                result = persistentOverlapMemo.get(sel1, sel2);
+                if (result != null)
+                    overlapMemo.put(new SelPair(sel1, sel2), result);
+            }
+            return result;
         }
     }
 
@@ -384,6 +578,14 @@ public class CSSDomFreeDependencyDetector {
         synchronized (overlapMemo) {
             SelPair sp = new SelPair(sel1, sel2);
             overlapMemo.put(sp, Boolean.valueOf(overlap));
+            if (persistentOverlapMemo != null) {
+                try {
+                    persistentOverlapMemo.put(sel1, sel2, overlap);
+                } catch (IOException ex) {
+                    LOGGER.warn("Could not write the overlap memo, results are not kept anymore\n" + ex);
+                    persistentOverlapMemo = null;
+                }
+            }
         }
     }
 
@@ -0,0 +1,234 @@
+package css.intersection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+import ca.concordia.cssanalyser.app.FileLogger;
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+
+/**
+ * A pool of emptiness checker processes (see ./intersection-tool.sh).
+ *
+ * Each process is given a pair of selectors per two lines, followed by a
+ * line with a single ".", and answers with one character per pair ('N' if
+ * the intersection is non-empty).  Processes are started when they are
+ * first needed, and at most one task uses a process at a time.
+ *
+ * All threads of the pool are daemon threads, so the pool does not keep the
+ * JVM alive.
+ */
+class IntersectionToolPool {
+
+    private static Logger LOGGER
+        = FileLogger.getLogger(IntersectionToolPool.class);
+
+    /**
+     * One emptiness checker process, with the thread writing to it, so that
+     * writing all pairs never waits for the answers to be read
+     */
+    private static class CheckerProcess {
+        public final Process process;
+        public final OutputStreamWriter out;
+        public final InputStreamReader in;
+        public final ExecutorService writer;
+
+        public CheckerProcess(Process process, ThreadFactory threadFactory) {
+            this.process = process;
+            this.out = new OutputStreamWriter(process.getOutputStream());
+            this.in = new InputStreamReader(process.getInputStream());
+            this.writer = Executors.newSingleThreadExecutor(threadFactory);
+        }
+
+        /**
+         * @param pairs
+         * @return for each pair, true if the intersection of its selectors is
+         * not empty
+         */
+        public boolean[] checkOverlaps(List<BaseSelector[]> pairs)
+                throws IOException, InterruptedException {
+            Future<?> writing = writer.submit(() -> {
+                for (BaseSelector[] pair : pairs) {
+                    out.write(pair[0] + "\n");
+                    out.write(pair[1] + "\n");
+                }
+                // force python to flush
+                out.write(".\n");
+                out.flush();
+                return null;
+            });
+
+            boolean[] overlaps = new boolean[pairs.size()];
+            for (int i = 0; i < overlaps.length; ++i) {
+                int result = in.read();
+                if (result == -1)
+                    throw new IOException("The emptiness checker exited before answering all pairs");
+                overlaps[i] = (char)result == 'N';
+            }
+
+            try {
+                writing.get();
+            } catch (ExecutionException ex) {
+                throw new IOException("Could not write to the emptiness checker", ex.getCause());
+            }
+
+            return overlaps;
+        }
+
+        public void destroy() {
+            writer.shutdownNow();
+            try {
+                out.close();
+            } catch (IOException ex) {
+                // The process is destroyed anyway
+            }
+            process.destroy();
+        }
+    }
+
+    private final String command;
+    private final int size;
+    private final ThreadFactory threadFactory;
+    private final ExecutorService shardExecutor;
+    private final BlockingQueue<CheckerProcess> idleProcesses
+        = new LinkedBlockingQueue<CheckerProcess>();
+    private final List<CheckerProcess> startedProcesses
+        = new ArrayList<CheckerProcess>();
+    private boolean shutDown = false;
+
+    /**
+     * @param command the command starting an emptiness checker process
+     * @param size the maximum number of processes
+     */
+    public IntersectionToolPool(String command, int size) {
+        this.command = command;
+        this.size = size;
+        this.threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "intersection-tool");
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.shardExecutor = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * Splits the given pairs into one shard per process, and checks the
+     * shards in parallel.
+     *
+     * @param pairs the pairs of selectors to check
+     * @return for each pair, true if the intersection of its selectors is not
+     * empty
+     */
+    public boolean[] checkOverlaps(List<BaseSelector[]> pairs) throws IOException {
+        boolean[] overlaps = new boolean[pairs.size()];
+        if (pairs.isEmpty())
+            return overlaps;
+
+        int numberOfShards = Math.min(size, pairs.size());
+        List<List<BaseSelector[]>> shards = new ArrayList<List<BaseSelector[]>>();
+        for (int i = 0; i < numberOfShards; ++i)
+            shards.add(new ArrayList<BaseSelector[]>());
+        for (int i = 0; i < pairs.size(); ++i)
+            shards.get(i % numberOfShards).add(pairs.get(i));
+
+        List<Future<boolean[]>> shardsOverlaps = new ArrayList<Future<boolean[]>>();
+        for (List<BaseSelector[]> shard : shards)
+            shardsOverlaps.add(shardExecutor.submit(() -> checkOverlapsInOneProcess(shard)));
+
+        try {
+            for (int shard = 0; shard < numberOfShards; ++shard) {
+                boolean[] shardOverlaps = shardsOverlaps.get(shard).get();
+                for (int i = 0; i < shardOverlaps.length; ++i)
+                    overlaps[i * numberOfShards + shard] = shardOverlaps[i];
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the emptiness checker", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException)
+                throw (IOException)cause;
+            throw new IOException("Emptiness checker failed", cause);
+        }
+
+        return overlaps;
+    }
+
+    private boolean[] checkOverlapsInOneProcess(List<BaseSelector[]> pairs)
+            throws IOException, InterruptedException {
+        CheckerProcess checkerProcess = borrowProcess();
+        boolean[] overlaps;
+        try {
+            overlaps = checkerProcess.checkOverlaps(pairs);
+        } catch (IOException | InterruptedException | RuntimeException ex) {
+            // The answers of the process are not in sync with the pairs anymore
+            discardProcess(checkerProcess);
+            throw ex;
+        }
+        idleProcesses.add(checkerProcess);
+        return overlaps;
+    }
+
+    private CheckerProcess borrowProcess() throws IOException, InterruptedException {
+        while (true) {
+            synchronized (this) {
+                if (shutDown)
+                    throw new IOException("The emptiness checkers are shut down");
+                CheckerProcess checkerProcess = idleProcesses.poll();
+                if (checkerProcess != null)
+                    return checkerProcess;
+                if (startedProcesses.size() < size) {
+                    checkerProcess = startProcess();
+                    startedProcesses.add(checkerProcess);
+                    return checkerProcess;
+                }
+            }
+            // Wait for another task, checking again if a process was discarded
+            CheckerProcess checkerProcess = idleProcesses.poll(1, TimeUnit.SECONDS);
+            if (checkerProcess != null)
+                return checkerProcess;
+        }
+    }
+
+    private CheckerProcess startProcess() throws IOException {
+        File pythonCommand = new File(command);
+        if (!pythonCommand.exists())
+            throw new IOException("Please create " +
+                                  command +
+                                  " script to start emptiness checker tool (you probably want a script that runs \"python <path to our main.py> -e\"");
+
+        LOGGER.info("Starting emptiness checker " + (startedProcesses.size() + 1) + " of " + size);
+        return new CheckerProcess(new ProcessBuilder().command(command).start(), threadFactory);
+    }
+
+    private synchronized void discardProcess(CheckerProcess checkerProcess) {
+        startedProcesses.remove(checkerProcess);
+        checkerProcess.destroy();
+    }
+
+    /**
+     * Stops all processes.  The pool cannot be used afterwards.
+     */
+    public synchronized void shutdown() {
+        shutDown = true;
+        shardExecutor.shutdownNow();
+        for (CheckerProcess checkerProcess : startedProcesses)
+            checkerProcess.destroy();
+        startedProcesses.clear();
+        idleProcesses.clear();
+    }
+
+}
@@ -0,0 +1,200 @@
+package css.intersection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+import ca.concordia.cssanalyser.app.FileLogger;
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+
+/**
+ * Overlap results of pairs of selectors, kept in a file between runs.
+ *
+ * The file has a header, followed by one record per result.  A pair is keyed
+ * by the commutative combination of the selectorHashCode(false) of its
+ * selectors, and a checksum of their text is kept to tell apart pairs with
+ * the same key.  At most maxSize results are kept; the least recently used
+ * ones are evicted.  New results are appended to the file, so that they are
+ * not lost if the run is killed, and the file is rewritten with the kept
+ * results, least recently used first, when the memo is closed (or when it
+ * is loaded with a truncated last record).
+ *
+ * The file may only be used by one process at a time.
+ */
+class PersistentOverlapMemo {
+
+    private static Logger LOGGER
+        = FileLogger.getLogger(PersistentOverlapMemo.class);
+
+    private static final int MAGIC = 0x4353534f;
+    private static final int VERSION = 1;
+    // A key and a value
+    private static final int RECORD_SIZE = 2 * Long.BYTES;
+
+    private final File file;
+    private final String checkerName;
+    // pair key -> checksum << 1 | overlap
+    private final Map<Long, Long> results;
+    private DataOutputStream out = null;
+
+    /**
+     * Loads the results of the given file, if it exists and was written for
+     * the same checker.
+     *
+     * @param file
+     * @param checkerName the name of the emptiness checker whose results are kept
+     * @param maxSize the maximum number of results which are kept
+     */
+    public PersistentOverlapMemo(File file, String checkerName, int maxSize) throws IOException {
+        this.file = file;
+        this.checkerName = checkerName;
+        this.results = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+        load();
+    }
+
+    private void load() throws IOException {
+        boolean hasHeader = false;
+        boolean truncated = false;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !checkerName.equals(in.readUTF())) {
+                    LOGGER.warn("Ignoring " + file + ", it is not an overlap memo of " + checkerName);
+                } else {
+                    hasHeader = true;
+                    byte[] record = new byte[RECORD_SIZE];
+                    while (true) {
+                        int length = 0;
+                        while (length < RECORD_SIZE) {
+                            int read = in.read(record, length, RECORD_SIZE - length);
+                            if (read < 0)
+                                break;
+                            length += read;
+                        }
+                        if (length < RECORD_SIZE) {
+                            // A truncated last record (e.g., of a killed run) is
+                            // ignored, and not appended to
+                            if (length > 0) {
+                                LOGGER.warn("Ignoring the truncated last record of " + file);
+                                truncated = true;
+                            }
+                            break;
+                        }
+                        ByteBuffer buffer = ByteBuffer.wrap(record);
+                        results.put(buffer.getLong(), buffer.getLong());
+                    }
+                }
+            } catch (EOFException ex) {
+                LOGGER.warn("Ignoring " + file + ", its header is truncated");
+            }
+            LOGGER.info("Loaded " + results.size() + " overlap results from " + file);
+        }
+
+        if (!hasHeader || truncated)
+            rewrite();
+        else
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /**
+     * Writes the kept results to a new file, least recently used first, and
+     * replaces the old file with it.
+     */
+    private void rewrite() throws IOException {
+        if (out != null)
+            out.close();
+        File newFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream newOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newFile)))) {
+            newOut.writeInt(MAGIC);
+            newOut.writeInt(VERSION);
+            newOut.writeUTF(checkerName);
+            for (Map.Entry<Long, Long> result : results.entrySet()) {
+                newOut.writeLong(result.getKey());
+                newOut.writeLong(result.getValue());
+            }
+        }
+        Files.move(newFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /**
+     * @param sel1
+     * @param sel2
+     * @return null if the overlap of the pair is not kept, otherwise true if
+     * the two selectors overlap
+     */
+    public synchronized Boolean get(BaseSelector sel1, BaseSelector sel2) {
+        Long value = results.get(getKey(sel1, sel2));
+        if (value == null || (value >> 1) != getChecksum(sel1, sel2))
+            return null;
+        return Boolean.valueOf((value & 1) == 1);
+    }
+
+    /**
+     * Keeps the overlap of the given pair, and appends it to the file
+     *
+     * @param sel1
+     * @param sel2
+     * @param overlap
+     */
+    public synchronized void put(BaseSelector sel1, BaseSelector sel2, boolean overlap) throws IOException {
+        long key = getKey(sel1, sel2);
+        long value = ((long)getChecksum(sel1, sel2) << 1) | (overlap ? 1 : 0);
+        Long oldValue = results.put(key, value);
+        if (oldValue == null || oldValue.longValue() != value) {
+            out.writeLong(key);
+            out.writeLong(value);
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Rewrites the file with the kept results, so that the next run evicts
+     * the results which were used least recently in this one
+     */
+    public synchronized void close() throws IOException {
+        rewrite();
+        out.close();
+    }
+
+    /**
+     * @return a key of the pair, which is the same for (sel1, sel2) and (sel2, sel1)
+     */
+    private static long getKey(BaseSelector sel1, BaseSelector sel2) {
+        int hash1 = sel1.selectorHashCode(false);
+        int hash2 = sel2.selectorHashCode(false);
+        int min = Math.min(hash1, hash2);
+        int max = Math.max(hash1, hash2);
+        return ((long)max << 32) | (min & 0xffffffffL);
+    }
+
+    private static int getChecksum(BaseSelector sel1, BaseSelector sel2) {
+        String text1 = sel1.toString();
+        String text2 = sel2.toString();
+        if (text1.compareTo(text2) > 0)
+            return (text2 + "\n" + text1).hashCode();
+        return (text1 + "\n" + text2).hashCode();
+    }
+
+}
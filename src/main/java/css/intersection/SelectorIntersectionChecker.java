@@ -0,0 +1,530 @@
+package css.intersection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.ChildSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.Combinator;
+import ca.concordia.cssanalyser.cssmodel.selectors.DescendantSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.NegationPseudoClass;
+import ca.concordia.cssanalyser.cssmodel.selectors.PseudoClass;
+import ca.concordia.cssanalyser.cssmodel.selectors.PseudoElement;
+import ca.concordia.cssanalyser.cssmodel.selectors.SiblingSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.SimpleSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.conditions.SelectorCondition;
+import ca.concordia.cssanalyser.cssmodel.selectors.conditions.SelectorConditionType;
+
+/**
+ * Checks, without the intersection tool, whether two selectors can match the
+ * same element of some document.
+ *
+ * The check is conservative: the intersection is only reported as empty when
+ * the two selectors require something contradictory from the same element,
+ * e.g. different element names, ids or attribute values, a pseudo-class and
+ * its opposite, or the negation of what the other selector requires.
+ * Ancestors of the matched element (descendant and child combinators) are
+ * matched exactly.  The elements introduced by sibling combinators are only
+ * checked on their own, and are never required to be the same element, which
+ * may only report some empty intersections as non-empty (i.e. add some
+ * dependencies).
+ *
+ * All methods are static and keep no state, so they can be called from many
+ * threads.
+ */
+public class SelectorIntersectionChecker {
+
+    // Pseudo-elements which may also be written as pseudo-classes (CSS2)
+    private static final Set<String> LEGACY_PSEUDO_ELEMENTS
+        = new HashSet<String>(Arrays.asList("before", "after", "first-line", "first-letter"));
+
+    // No element can have both of these pseudo-classes
+    private static final String[][] EXCLUSIVE_PSEUDO_CLASSES = {
+        { "link", "visited" },
+        { "enabled", "disabled" },
+        { "valid", "invalid" },
+        { "in-range", "out-of-range" },
+        { "required", "optional" },
+        { "read-only", "read-write" }
+    };
+
+    /**
+     * An element on the path from the matched element to the root
+     */
+    private static class PathElement {
+        public final SimpleSelector selector;
+        // The simple selectors of the preceding siblings of this element
+        public final List<SimpleSelector> precedingSiblings
+            = new ArrayList<SimpleSelector>();
+        // True if this element is the parent of the previous element on the
+        // path, false if it is any ancestor of it
+        public final boolean isParent;
+
+        public PathElement(SimpleSelector selector, boolean isParent) {
+            this.selector = selector;
+            this.isParent = isParent;
+        }
+    }
+
+    /**
+     * A state of matching two paths against the ancestors of an element.
+     * matched1 (matched2) elements of the first (second) path are matched, and
+     * placed1 (placed2) is true if the last one was matched to the previous
+     * ancestor.
+     */
+    private static class MatchingState {
+        public final int matched1;
+        public final int matched2;
+        public final boolean placed1;
+        public final boolean placed2;
+
+        public MatchingState(int matched1, int matched2, boolean placed1, boolean placed2) {
+            this.matched1 = matched1;
+            this.matched2 = matched2;
+            this.placed1 = placed1;
+            this.placed2 = placed2;
+        }
+
+        public boolean equals(Object o) {
+            if (o instanceof MatchingState) {
+                MatchingState s = (MatchingState)o;
+                return matched1 == s.matched1 &&
+                       matched2 == s.matched2 &&
+                       placed1 == s.placed1 &&
+                       placed2 == s.placed2;
+            }
+            return false;
+        }
+
+        public int hashCode() {
+            return ((matched1 * 31 + matched2) * 2 + (placed1 ? 1 : 0)) * 2 + (placed2 ? 1 : 0);
+        }
+    }
+
+    private SelectorIntersectionChecker() { }
+
+    /**
+     * @param selector1
+     * @param selector2
+     * @return true if no element of any document can be matched by both
+     * selectors.  The result is always false if it is not sure.
+     */
+    public static boolean intersectionIsEmpty(BaseSelector selector1,
+                                              BaseSelector selector2) {
+        List<PathElement> path1 = getPath(selector1);
+        List<PathElement> path2 = getPath(selector2);
+        if (path1 == null || path2 == null)
+            return false;
+
+        if (!siblingsAreSatisfiable(path1) || !siblingsAreSatisfiable(path2))
+            return true;
+
+        return !pathsCanMatch(path1, path2);
+    }
+
+    /**
+     * @param selector
+     * @return the elements on the path from the element matched by the given
+     * selector to the root, or null if the selector is not supported
+     */
+    private static List<PathElement> getPath(BaseSelector selector) {
+        List<PathElement> path = new ArrayList<PathElement>();
+        BaseSelector current = selector;
+        boolean isSibling = false;
+        boolean isParent = false;
+        while (true) {
+            SimpleSelector simpleSelector;
+            if (current instanceof SimpleSelector)
+                simpleSelector = (SimpleSelector)current;
+            else if (current instanceof Combinator)
+                simpleSelector = ((Combinator)current).getRightHandSideSelector();
+            else
+                return null;
+
+            if (isSibling)
+                path.get(path.size() - 1).precedingSiblings.add(simpleSelector);
+            else
+                path.add(new PathElement(simpleSelector, isParent));
+
+            if (current instanceof SimpleSelector) {
+                return path;
+            } else if (current instanceof DescendantSelector) {
+                isSibling = false;
+                isParent = current instanceof ChildSelector;
+            } else if (current instanceof SiblingSelector) {
+                // Siblings have the same parent, so the rest of the
+                // selector continues from the current element on the path
+                isSibling = true;
+            } else {
+                return null;
+            }
+            current = ((Combinator)current).getLeftHandSideSelector();
+        }
+    }
+
+    private static boolean siblingsAreSatisfiable(List<PathElement> path) {
+        for (PathElement element : path) {
+            for (SimpleSelector sibling : element.precedingSiblings) {
+                if (!isSatisfiable(Arrays.asList(sibling), false, false, false, false))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matches the two paths against the ancestors of one element, going up
+     * one ancestor at a time.  At each ancestor, each path may match its next
+     * element, or skip the ancestor if its next element is not the parent of
+     * its last matched element.
+     *
+     * @param path1
+     * @param path2
+     * @return true if there is a path from an element to the root matched by
+     * both paths
+     */
+    private static boolean pathsCanMatch(List<PathElement> path1, List<PathElement> path2) {
+        Set<MatchingState> visited = new HashSet<MatchingState>();
+        Deque<MatchingState> toVisit = new ArrayDeque<MatchingState>();
+        toVisit.add(new MatchingState(0, 0, true, true));
+
+        while (!toVisit.isEmpty()) {
+            MatchingState state = toVisit.poll();
+            if (!visited.add(state))
+                continue;
+
+            boolean isSubject = state.matched1 == 0 && state.matched2 == 0;
+            boolean done1 = state.matched1 == path1.size();
+            boolean done2 = state.matched2 == path2.size();
+            // The subject is matched by both paths
+            boolean mustPlace1 = isSubject ||
+                                 (!done1 && state.placed1 && path1.get(state.matched1).isParent);
+            boolean mustPlace2 = isSubject ||
+                                 (!done2 && state.placed2 && path2.get(state.matched2).isParent);
+
+            for (int option = 1; option <= 3; option++) {
+                boolean place1 = (option & 1) != 0;
+                boolean place2 = (option & 2) != 0;
+                if ((place1 && done1) || (!place1 && mustPlace1) ||
+                    (place2 && done2) || (!place2 && mustPlace2))
+                    continue;
+
+                List<SimpleSelector> selectors = new ArrayList<SimpleSelector>();
+                boolean hasPrecedingSiblings = false;
+                if (place1) {
+                    PathElement element = path1.get(state.matched1);
+                    selectors.add(element.selector);
+                    hasPrecedingSiblings |= !element.precedingSiblings.isEmpty();
+                }
+                if (place2) {
+                    PathElement element = path2.get(state.matched2);
+                    selectors.add(element.selector);
+                    hasPrecedingSiblings |= !element.precedingSiblings.isEmpty();
+                }
+
+                int matched1 = state.matched1 + (place1 ? 1 : 0);
+                int matched2 = state.matched2 + (place2 ? 1 : 0);
+                boolean isLast = matched1 == path1.size() && matched2 == path2.size();
+
+                if (!isSatisfiable(selectors, isSubject, !isSubject, hasPrecedingSiblings, isLast))
+                    continue;
+
+                if (isLast)
+                    return true;
+
+                toVisit.add(new MatchingState(matched1, matched2, place1, place2));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param selectors the simple selectors matching one element
+     * @param isSubject whether the element is the one matched by the selectors
+     * @param hasChildren whether the element has children
+     * @param hasPrecedingSiblings whether the element has preceding siblings
+     * @param canBeRoot whether the element can be the root of the document
+     * @return false if no element can be matched by all given simple selectors
+     */
+    private static boolean isSatisfiable(List<SimpleSelector> selectors,
+                                         boolean isSubject,
+                                         boolean hasChildren,
+                                         boolean hasPrecedingSiblings,
+                                         boolean canBeRoot) {
+        String elementName = null;
+        Set<String> pseudoElements = null;
+        Set<String> pseudoClasses = new HashSet<String>();
+        Map<String, List<SelectorCondition>> attributeConditions
+            = new HashMap<String, List<SelectorCondition>>();
+
+        for (SimpleSelector selector : selectors) {
+            String name = selector.getSelectedElementName();
+            if (name != null && !"".equals(name) && !"*".equals(name)) {
+                if (elementName != null && !elementName.equalsIgnoreCase(name))
+                    return false;
+                elementName = name;
+            }
+
+            if (!"".equals(selector.getElementID()))
+                addAttributeCondition(attributeConditions,
+                                      new SelectorCondition("id",
+                                                            selector.getElementID(),
+                                                            SelectorConditionType.VALUE_EQUALS_EXACTLY));
+            for (String className : selector.getClassNames())
+                addAttributeCondition(attributeConditions,
+                                      new SelectorCondition("class",
+                                                            className,
+                                                            SelectorConditionType.VALUE_CONTAINS_WORD_SPACE_SEPARATED));
+            for (SelectorCondition condition : selector.getConditions())
+                addAttributeCondition(attributeConditions, condition);
+
+            // Different pseudo-elements are different boxes
+            Set<String> selectorPseudoElements = new HashSet<String>();
+            for (PseudoElement pseudoElement : selector.getPseudoElements())
+                selectorPseudoElements.add(pseudoElement.toString().toLowerCase());
+            for (PseudoClass pseudoClass : selector.getPseudoClasses()) {
+                String pseudoClassName = pseudoClass.getName().toLowerCase();
+                if (LEGACY_PSEUDO_ELEMENTS.contains(pseudoClassName))
+                    selectorPseudoElements.add(pseudoClassName);
+                else if (!(pseudoClass instanceof NegationPseudoClass))
+                    pseudoClasses.add(pseudoClassName);
+            }
+            if (pseudoElements != null && !pseudoElements.equals(selectorPseudoElements))
+                return false;
+            pseudoElements = selectorPseudoElements;
+        }
+
+        if (!isSubject && pseudoElements != null && !pseudoElements.isEmpty())
+            return false;
+
+        for (String[] exclusivePseudoClasses : EXCLUSIVE_PSEUDO_CLASSES) {
+            if (pseudoClasses.contains(exclusivePseudoClasses[0]) &&
+                pseudoClasses.contains(exclusivePseudoClasses[1]))
+                return false;
+        }
+        if (pseudoClasses.contains("root") && (!canBeRoot || hasPrecedingSiblings))
+            return false;
+        if ((pseudoClasses.contains("first-child") || pseudoClasses.contains("only-child")) &&
+            hasPrecedingSiblings)
+            return false;
+        if (pseudoClasses.contains("empty") && hasChildren)
+            return false;
+
+        for (List<SelectorCondition> conditions : attributeConditions.values()) {
+            if (!attributeConditionsAreSatisfiable(conditions))
+                return false;
+        }
+
+        for (SimpleSelector selector : selectors) {
+            for (PseudoClass pseudoClass : selector.getPseudoClasses()) {
+                if (pseudoClass instanceof NegationPseudoClass) {
+                    BaseSelector negated = ((NegationPseudoClass)pseudoClass).getSelector();
+                    if (negated instanceof SimpleSelector &&
+                        isImplied((SimpleSelector)negated, selectors))
+                        return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static void addAttributeCondition(Map<String, List<SelectorCondition>> attributeConditions,
+                                              SelectorCondition condition) {
+        String attributeName = condition.getAttributeName().toLowerCase();
+        List<SelectorCondition> conditions = attributeConditions.get(attributeName);
+        if (conditions == null) {
+            conditions = new ArrayList<SelectorCondition>();
+            attributeConditions.put(attributeName, conditions);
+        }
+        conditions.add(condition);
+    }
+
+    /**
+     * Values are compared ignoring case, so values which only differ in case
+     * are never reported as contradictory.
+     *
+     * @param conditions the conditions on one attribute of an element
+     * @return false if no value of the attribute satisfies all conditions
+     */
+    private static boolean attributeConditionsAreSatisfiable(List<SelectorCondition> conditions) {
+        String exactValue = null;
+        for (SelectorCondition condition : conditions) {
+            if (condition.getConditionType() == SelectorConditionType.VALUE_EQUALS_EXACTLY) {
+                String value = getValue(condition);
+                if (exactValue != null && !exactValue.equals(value))
+                    return false;
+                exactValue = value;
+            }
+        }
+
+        List<String> prefixes = new ArrayList<String>();
+        List<String> suffixes = new ArrayList<String>();
+        List<String> dashPrefixes = new ArrayList<String>();
+
+        for (SelectorCondition condition : conditions) {
+            String value = getValue(condition);
+            switch (condition.getConditionType()) {
+            case VALUE_CONTAINS_WORD_SPACE_SEPARATED:
+                if (value.isEmpty() || !value.equals(value.replaceAll("\\s", "")))
+                    return false;
+                if (exactValue != null && !Arrays.asList(exactValue.split("\\s+")).contains(value))
+                    return false;
+                break;
+            case VALUE_START_WITH_DASH_SEPARATED:
+                if (exactValue != null && !exactValue.equals(value) && !exactValue.startsWith(value + "-"))
+                    return false;
+                dashPrefixes.add(value);
+                break;
+            case VALUE_STARTS_WITH:
+                if (value.isEmpty() || (exactValue != null && !exactValue.startsWith(value)))
+                    return false;
+                prefixes.add(value);
+                break;
+            case VALUE_ENDS_WITH:
+                if (value.isEmpty() || (exactValue != null && !exactValue.endsWith(value)))
+                    return false;
+                suffixes.add(value);
+                break;
+            case VALUE_CONTAINS:
+                if (value.isEmpty() || (exactValue != null && !exactValue.contains(value)))
+                    return false;
+                break;
+            default:
+            }
+        }
+
+        if (exactValue != null)
+            return true;
+
+        for (int i = 0; i < prefixes.size(); i++) {
+            for (int j = i + 1; j < prefixes.size(); j++) {
+                if (!prefixes.get(i).startsWith(prefixes.get(j)) &&
+                    !prefixes.get(j).startsWith(prefixes.get(i)))
+                    return false;
+            }
+            for (String dashPrefix : dashPrefixes) {
+                String prefix = prefixes.get(i);
+                if (!dashPrefix.startsWith(prefix) &&
+                    !(dashPrefix + "-").startsWith(prefix) &&
+                    !prefix.startsWith(dashPrefix + "-"))
+                    return false;
+            }
+        }
+        for (int i = 0; i < suffixes.size(); i++) {
+            for (int j = i + 1; j < suffixes.size(); j++) {
+                if (!suffixes.get(i).endsWith(suffixes.get(j)) &&
+                    !suffixes.get(j).endsWith(suffixes.get(i)))
+                    return false;
+            }
+        }
+        for (int i = 0; i < dashPrefixes.size(); i++) {
+            for (int j = i + 1; j < dashPrefixes.size(); j++) {
+                String dashPrefix1 = dashPrefixes.get(i);
+                String dashPrefix2 = dashPrefixes.get(j);
+                if (!dashPrefix1.equals(dashPrefix2) &&
+                    !dashPrefix1.startsWith(dashPrefix2 + "-") &&
+                    !dashPrefix2.startsWith(dashPrefix1 + "-"))
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String getValue(SelectorCondition condition) {
+        String value = condition.getValue();
+        if (value == null)
+            return "";
+        // The parser may keep the quotes of the value
+        if (value.length() >= 2 &&
+            (value.startsWith("\"") && value.endsWith("\"") ||
+             value.startsWith("'") && value.endsWith("'")))
+            value = value.substring(1, value.length() - 1);
+        return value.toLowerCase();
+    }
+
+    /**
+     * @param negated the simple selector inside a :not()
+     * @param selectors the simple selectors matching one element
+     * @return true if every element matched by all given selectors is also
+     * matched by the negated selector.  Values are compared exactly, so the
+     * result is false if it is not sure.
+     */
+    private static boolean isImplied(SimpleSelector negated, List<SimpleSelector> selectors) {
+        if (!negated.getPseudoElements().isEmpty())
+            return false;
+
+        String name = negated.getSelectedElementName();
+        if (name != null && !"".equals(name) && !"*".equals(name)) {
+            boolean found = false;
+            for (SimpleSelector selector : selectors)
+                found |= name.equalsIgnoreCase(selector.getSelectedElementName());
+            if (!found)
+                return false;
+        }
+
+        if (!"".equals(negated.getElementID())) {
+            boolean found = false;
+            for (SimpleSelector selector : selectors)
+                found |= negated.getElementID().equals(selector.getElementID());
+            if (!found)
+                return false;
+        }
+
+        for (String className : negated.getClassNames()) {
+            boolean found = false;
+            for (SimpleSelector selector : selectors)
+                found |= selector.getClassNames().contains(className);
+            if (!found)
+                return false;
+        }
+
+        for (SelectorCondition condition : negated.getConditions()) {
+            boolean found = false;
+            for (SimpleSelector selector : selectors) {
+                if (condition.getConditionType() == SelectorConditionType.HAS_ATTRIBUTE)
+                    found |= hasAttribute(selector, condition.getAttributeName());
+                else
+                    found |= selector.getConditions().contains(condition);
+            }
+            if (!found)
+                return false;
+        }
+
+        for (PseudoClass pseudoClass : negated.getPseudoClasses()) {
+            boolean found = false;
+            for (SimpleSelector selector : selectors) {
+                for (PseudoClass otherPseudoClass : selector.getPseudoClasses())
+                    found |= pseudoClass.getName().equalsIgnoreCase(otherPseudoClass.getName()) &&
+                             (pseudoClass.getValue() == null ?
+                                 otherPseudoClass.getValue() == null :
+                                 pseudoClass.getValue().equals(otherPseudoClass.getValue()));
+            }
+            if (!found)
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean hasAttribute(SimpleSelector selector, String attributeName) {
+        if ("id".equalsIgnoreCase(attributeName) && !"".equals(selector.getElementID()))
+            return true;
+        if ("class".equalsIgnoreCase(attributeName) && !selector.getClassNames().isEmpty())
+            return true;
+        for (SelectorCondition condition : selector.getConditions()) {
+            if (condition.getAttributeName().equalsIgnoreCase(attributeName))
+                return true;
+        }
+        return false;
+    }
+
+}
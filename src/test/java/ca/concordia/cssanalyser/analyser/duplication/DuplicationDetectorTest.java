@@ -0,0 +1,203 @@
+package ca.concordia.cssanalyser.analyser.duplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import ca.concordia.cssanalyser.analyser.duplication.items.Item;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSet;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.cssmodel.declaration.Declaration;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+import ca.concordia.cssanalyser.refactoring.RefactorDuplicationsToGroupingSelector;
+import ca.concordia.cssanalyser.refactoring.RefactorToSatisfyDependencies;
+import ca.concordia.cssanalyser.refactoring.dependencies.CSSDependencyDetector;
+
+public class DuplicationDetectorTest {
+
+	private static final String STYLE_SHEET =
+			".a { color: red; border: 0; margin: 0 }" +
+			".b { color: #f00; border: 0; margin-top: 0; margin-right: 0; margin-bottom: 0; margin-left: 0 }" +
+			".c { color: blue; padding: 0 }" +
+			".d { padding: 0; float: left; border: 0 }" +
+			"@media screen { .e { float: left; padding: 0 } .f { float: left; padding: 0; color: red } }" +
+			".g { color: red; border: 0; float: left }";
+
+	@Test
+	public void testDeclarationsInMediaQueriesWithoutPrefix() {
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(".a { color: red } @media screen { .b { color: red } .c { color: red } }");
+		DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+		duplicationDetector.findDuplications();
+		// Declarations in different media are not duplicated
+		DuplicationIncstanceList typeIDuplications = duplicationDetector.getTypeIDuplications();
+		assertEquals(1, typeIDuplications.getSize());
+		assertEquals("[.b, .c]", typeIDuplications.iterator().next().getSelectors().stream()
+				.map(Object::toString).sorted().collect(Collectors.toList()).toString());
+	}
+
+	@Test
+	public void testUpdateAfterGroupingRefactoring() {
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(STYLE_SHEET);
+		DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+		duplicationDetector.findDuplications();
+		List<ItemSetList> fpgrowthResults = duplicationDetector.fpGrowth(2, false);
+		RefactorDuplicationsToGroupingSelector refactoring = new RefactorDuplicationsToGroupingSelector(styleSheet);
+
+		int checkedRefactorings = 0;
+		for (ItemSet itemSet : getGroupingOpportunities(fpgrowthResults)) {
+			StyleSheet refactoredStyleSheet = refactoring.groupingRefactoring(itemSet).getRenumberedCopy();
+			DuplicationDetector updatedDetector = assertSameAsFindingAgain(duplicationDetector, fpgrowthResults, refactoredStyleSheet, itemSet);
+
+			// The next round is updated from the updated detector
+			List<ItemSetList> updatedResults = updatedDetector.fpGrowthAfterGroupingRefactoring(2, fpgrowthResults);
+			for (ItemSet nextItemSet : getGroupingOpportunities(updatedResults)) {
+				StyleSheet nextStyleSheet = new RefactorDuplicationsToGroupingSelector(refactoredStyleSheet)
+						.groupingRefactoring(nextItemSet).getRenumberedCopy();
+				assertSameAsFindingAgain(updatedDetector, updatedResults, nextStyleSheet, nextItemSet);
+			}
+
+			// The grouping selector, added at the end, is moved before the other selectors (e.g., by a reordering)
+			List<Selector> selectors = new ArrayList<>();
+			for (Selector selector : refactoredStyleSheet.getAllSelectors())
+				selectors.add(selector);
+			selectors.add(0, selectors.remove(selectors.size() - 1));
+			StyleSheet reorderedStyleSheet = new StyleSheet();
+			for (Selector selector : selectors)
+				reorderedStyleSheet.addSelector(selector);
+			assertSameAsFindingAgain(duplicationDetector, fpgrowthResults, reorderedStyleSheet.getRenumberedCopy(), itemSet);
+
+			checkedRefactorings++;
+		}
+		assertTrue(checkedRefactorings > 0);
+	}
+
+	@Test
+	public void testUpdateAfterReordering() {
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(STYLE_SHEET);
+		DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+		duplicationDetector.findDuplications();
+		List<ItemSetList> fpgrowthResults = duplicationDetector.fpGrowth(2, false);
+		RefactorDuplicationsToGroupingSelector refactoring = new RefactorDuplicationsToGroupingSelector(styleSheet, true);
+
+		int checkedRefactorings = 0;
+		for (ItemSet itemSet : getGroupingOpportunities(fpgrowthResults)) {
+			// As RefactorDuplicationsToGroupingSelector does when the dependencies are not kept
+			StyleSheet refactoredStyleSheet = refactoring.groupingRefactoring(itemSet).getRenumberedCopy();
+			StyleSheet reorderedStyleSheet = new RefactorToSatisfyDependencies().refactorToSatisfyOverridingDependencies(refactoredStyleSheet,
+					new CSSDependencyDetector(styleSheet).findOverridingDependancies(true));
+			if (reorderedStyleSheet == null || reorderedStyleSheet.toString().equals(refactoredStyleSheet.toString()))
+				continue;
+			assertSameAsFindingAgain(duplicationDetector, fpgrowthResults, reorderedStyleSheet.getRenumberedCopy(), itemSet);
+			checkedRefactorings++;
+		}
+		assertTrue(checkedRefactorings > 0);
+	}
+
+	private List<ItemSet> getGroupingOpportunities(List<ItemSetList> fpgrowthResults) {
+		List<ItemSet> itemSets = new ArrayList<>();
+		for (ItemSetList itemSetList : fpgrowthResults) {
+			for (ItemSet itemSet : itemSetList) {
+				if (itemSet.getGroupingRefactoringImpact() > 0 && itemSet.isApplicable())
+					itemSets.add(itemSet);
+			}
+		}
+		return itemSets;
+	}
+
+	/*
+	 * Checks that updating the given detector and its FP-Growth results for the given refactored style sheet
+	 * gives the same duplications, items and ItemSets as finding them again. Returns the updated detector.
+	 */
+	private DuplicationDetector assertSameAsFindingAgain(DuplicationDetector duplicationDetector, List<ItemSetList> fpgrowthResults,
+			StyleSheet refactoredStyleSheet, ItemSet appliedItemSet) {
+		DuplicationDetector updatedDetector = duplicationDetector.getDuplicationDetectorAfterGroupingRefactoring(refactoredStyleSheet, appliedItemSet);
+		DuplicationDetector detectorFindingAgain = new DuplicationDetector(refactoredStyleSheet);
+		detectorFindingAgain.findDuplications();
+
+		Map<Selector, Integer> selectorNumbers = new IdentityHashMap<>();
+		for (Selector selector : refactoredStyleSheet.getAllSelectors())
+			selectorNumbers.put(selector, selectorNumbers.size());
+
+		String message = "After grouping " + appliedItemSet + " in\n" + refactoredStyleSheet;
+		assertEquals(message, toString(detectorFindingAgain.getTypeIDuplications(), selectorNumbers), toString(updatedDetector.getTypeIDuplications(), selectorNumbers));
+		assertEquals(message, toString(detectorFindingAgain.getTypeIIDuplications(), selectorNumbers), toString(updatedDetector.getTypeIIDuplications(), selectorNumbers));
+		assertEquals(message, toString(detectorFindingAgain.getTypeIIIDuplications(), selectorNumbers), toString(updatedDetector.getTypeIIIDuplications(), selectorNumbers));
+		assertEquals(message, toString(detectorFindingAgain.getItemsIncludingTypenstances(), selectorNumbers),
+				toString(updatedDetector.getItemsIncludingTypenstances(), selectorNumbers));
+		assertEquals(message, toString(detectorFindingAgain.fpGrowth(2, false), selectorNumbers),
+				toString(updatedDetector.fpGrowthAfterGroupingRefactoring(2, fpgrowthResults), selectorNumbers));
+		return updatedDetector;
+	}
+
+	/*
+	 * The results are compared regardless of their order, and the selectors by their positions,
+	 * since the same selector may be found more than once
+	 */
+	private String toString(DuplicationIncstanceList duplications, Map<Selector, Integer> selectorNumbers) {
+		List<String> strings = new ArrayList<>();
+		for (DuplicationInstance duplication : duplications) {
+			List<Integer> numbers = new ArrayList<>();
+			for (Selector selector : duplication.getSelectors())
+				numbers.add(getSelectorNumber(selector, selectorNumbers));
+			Collections.sort(numbers);
+			strings.add(duplication.getType() + " " + numbers + " " + duplication);
+		}
+		Collections.sort(strings);
+		return String.join("\n", strings);
+	}
+
+	private String toString(Map<Integer, List<Item>> itemsByType, Map<Selector, Integer> selectorNumbers) {
+		List<String> strings = new ArrayList<>();
+		for (Map.Entry<Integer, List<Item>> entry : itemsByType.entrySet()) {
+			for (Item item : entry.getValue())
+				strings.add(entry.getKey() + " " + toString(item, selectorNumbers));
+		}
+		Collections.sort(strings);
+		return String.join("\n", strings);
+	}
+
+	private String toString(List<ItemSetList> itemSetLists, Map<Selector, Integer> selectorNumbers) {
+		List<String> strings = new ArrayList<>();
+		for (ItemSetList itemSetList : itemSetLists) {
+			for (ItemSet itemSet : itemSetList) {
+				List<String> items = new ArrayList<>();
+				for (Item item : itemSet)
+					items.add(toString(item, selectorNumbers));
+				Collections.sort(items);
+				List<Integer> support = new ArrayList<>();
+				for (Selector selector : itemSet.getSupport())
+					support.add(getSelectorNumber(selector, selectorNumbers));
+				Collections.sort(support);
+				strings.add(items + " " + support);
+			}
+		}
+		Collections.sort(strings);
+		return String.join("\n", strings);
+	}
+
+	private String toString(Item item, Map<Selector, Integer> selectorNumbers) {
+		List<String> declarations = new ArrayList<>();
+		for (Declaration declaration : item)
+			declarations.add(getSelectorNumber(declaration.getSelector(), selectorNumbers) + "$" + declaration);
+		Collections.sort(declarations);
+		return declarations + " " + new ArrayList<>(item.getDuplicationTypes());
+	}
+
+	private int getSelectorNumber(Selector selector, Map<Selector, Integer> selectorNumbers) {
+		Integer number = selectorNumbers.get(selector);
+		assertNotNull(selector + " is not a selector of the refactored style sheet", number);
+		return number;
+	}
+
+}
@@ -0,0 +1,58 @@
+package ca.concordia.cssanalyser.analyser.duplication.eclat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector;
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector.FrequentItemSetMiner;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSet;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class EclatTest {
+
+	@Test
+	public void testSameItemSetsAsFPGrowth() {
+		for (StyleSheet styleSheet : new StyleSheet[] {
+				FixturesUtil.getStyleSheetFromString(
+						".a { color: red; width: 0; height: 0; top: 0 }" +
+						".b { color: red; width: 0; top: 0 }" +
+						".c { color: red; height: 0 }" +
+						".d { width: 0; height: 0; top: 0 }" +
+						".e { left: 0 }"),
+				FixturesUtil.getTestCSSFile(FixturesUtil.SELECTORS_TEST_FILE_PATH) }) {
+			DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+			duplicationDetector.findDuplications();
+			for (boolean removeSubsets : new boolean[] { false, true }) {
+				for (int minSupport : new int[] { 2, 3 }) {
+					Map<ItemSet, Integer> expected = getSupportSizes(duplicationDetector.fpGrowth(minSupport, removeSubsets));
+					assertEquals(expected, getSupportSizes(duplicationDetector.eclat(minSupport, removeSubsets)));
+				}
+			}
+			duplicationDetector.setFrequentItemSetMiner(FrequentItemSetMiner.ECLAT);
+			assertEquals(getSupportSizes(duplicationDetector.fpGrowth(2, true)),
+					getSupportSizes(duplicationDetector.mineFrequentItemSets(2, true)));
+		}
+	}
+
+	/*
+	 * Every ItemSet is in the list of its size
+	 */
+	private Map<ItemSet, Integer> getSupportSizes(List<ItemSetList> itemSetLists) {
+		Map<ItemSet, Integer> supportSizes = new HashMap<>();
+		for (ItemSetList itemSetList : itemSetLists) {
+			for (ItemSet itemSet : itemSetList) {
+				assertEquals(itemSetList.iterator().next().size(), itemSet.size());
+				supportSizes.put(itemSet, itemSet.getSupportSize());
+			}
+		}
+		return supportSizes;
+	}
+
+}
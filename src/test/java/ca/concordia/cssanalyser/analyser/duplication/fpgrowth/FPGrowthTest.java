@@ -0,0 +1,185 @@
+package ca.concordia.cssanalyser.analyser.duplication.fpgrowth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector;
+import ca.concordia.cssanalyser.analyser.duplication.items.Item;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSet;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class FPGrowthTest {
+
+	private static final String STYLE_SHEET =
+			".a { color: red; width: 0; height: 0; top: 0 }" +
+			".b { color: red; width: 0; top: 0 }" +
+			".c { color: red; height: 0 }" +
+			".d { width: 0; height: 0; top: 0 }" +
+			".e { left: 0 }";
+
+	@Test
+	public void testAllFrequentItemSets() {
+		assertEquals("[" +
+				"{color}:3, {height}:3, {top}:3, {width}:3, " +
+				"{color, height}:2, {color, top}:2, {color, width}:2, {height, top}:2, {height, width}:2, {top, width}:3, " +
+				"{color, top, width}:2, {height, top, width}:2" +
+				"]", mine(false));
+	}
+
+	@Test
+	public void testSubsumedItemSetsAreRemoved() {
+		assertEquals("[" +
+				"{color}:3, {height}:3, " +
+				"{color, height}:2, {top, width}:3, " +
+				"{color, top, width}:2, {height, top, width}:2" +
+				"]", mine(true));
+	}
+
+	@Test
+	public void testOnlyClosedItemSetsAreMined() {
+		DuplicationDetector duplicationDetector = new DuplicationDetector(FixturesUtil.getTestCSSFile(FixturesUtil.SELECTORS_TEST_FILE_PATH));
+		duplicationDetector.findDuplications();
+		List<ItemSet> allItemSets = new ArrayList<>();
+		for (ItemSetList itemSetList : duplicationDetector.fpGrowth(2, false))
+			allItemSets.addAll(itemSetList);
+		Set<ItemSet> closedItemSets = new HashSet<>();
+		for (ItemSet itemSet : allItemSets) {
+			boolean closed = true;
+			for (ItemSet otherItemSet : allItemSets) {
+				if (otherItemSet.size() > itemSet.size() && otherItemSet.containsAll(itemSet) &&
+						otherItemSet.getSupportSize() == itemSet.getSupportSize()) {
+					closed = false;
+					break;
+				}
+			}
+			if (closed)
+				closedItemSets.add(itemSet);
+		}
+		Set<ItemSet> minedItemSets = new HashSet<>();
+		for (ItemSetList itemSetList : duplicationDetector.fpGrowth(2, true))
+			minedItemSets.addAll(itemSetList);
+		assertEquals(closedItemSets, minedItemSets);
+	}
+
+	@Test
+	public void testMiningInParallel() {
+		for (StyleSheet styleSheet : new StyleSheet[] {
+				FixturesUtil.getStyleSheetFromString(STYLE_SHEET),
+				FixturesUtil.getTestCSSFile(FixturesUtil.SELECTORS_TEST_FILE_PATH) }) {
+			DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+			duplicationDetector.findDuplications();
+			for (boolean removeSubsets : new boolean[] { false, true }) {
+				String expected = duplicationDetector.fpGrowth(2, removeSubsets).toString();
+				duplicationDetector.setNumberOfThreads(4);
+				assertEquals(expected, duplicationDetector.fpGrowth(2, removeSubsets).toString());
+				duplicationDetector.setNumberOfThreads(1);
+			}
+		}
+	}
+
+	@Test
+	public void testMiningProjectedPartitions() {
+		for (StyleSheet styleSheet : new StyleSheet[] {
+				FixturesUtil.getStyleSheetFromString(STYLE_SHEET),
+				FixturesUtil.getTestCSSFile(FixturesUtil.SELECTORS_TEST_FILE_PATH) }) {
+			DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+			duplicationDetector.findDuplications();
+			for (boolean removeSubsets : new boolean[] { false, true }) {
+				String expected = duplicationDetector.fpGrowth(2, removeSubsets).toString();
+				duplicationDetector.setFPGrowthMemoryLimit(0);
+				assertEquals(expected, duplicationDetector.fpGrowth(2, removeSubsets).toString());
+				duplicationDetector.setFPGrowthMemoryLimit(-1);
+			}
+			List<ItemSet> expected = duplicationDetector.getTopGroupingOpportunities(2, 5);
+			duplicationDetector.setFPGrowthMemoryLimit(0);
+			assertEquals(expected, duplicationDetector.getTopGroupingOpportunities(2, 5));
+			duplicationDetector.setFPGrowthMemoryLimit(-1);
+		}
+	}
+
+	@Test
+	public void testMaximumItemSetSize() {
+		DuplicationDetector duplicationDetector = new DuplicationDetector(FixturesUtil.getTestCSSFile(FixturesUtil.SELECTORS_TEST_FILE_PATH));
+		duplicationDetector.findDuplications();
+		for (boolean removeSubsets : new boolean[] { false, true }) {
+			Set<ItemSet> allItemSets = getItemSets(duplicationDetector.fpGrowth(2, removeSubsets));
+			for (int maximumItemSetSize : new int[] { 1, 2, 3 }) {
+				Set<ItemSet> smallItemSets = new HashSet<>();
+				for (ItemSet itemSet : allItemSets) {
+					if (itemSet.size() <= maximumItemSetSize)
+						smallItemSets.add(itemSet);
+				}
+				duplicationDetector.setMaximumItemSetSize(maximumItemSetSize);
+				assertEquals(smallItemSets, getItemSets(duplicationDetector.fpGrowth(2, removeSubsets)));
+				assertEquals(smallItemSets, getItemSets(duplicationDetector.eclat(2, removeSubsets)));
+				duplicationDetector.setMaximumItemSetSize(-1);
+			}
+		}
+	}
+
+	@Test
+	public void testTopGroupingOpportunities() {
+		DuplicationDetector duplicationDetector = new DuplicationDetector(FixturesUtil.getTestCSSFile(FixturesUtil.SELECTORS_TEST_FILE_PATH));
+		duplicationDetector.findDuplications();
+		Set<ItemSet> opportunities = new HashSet<>();
+		List<Integer> impacts = new ArrayList<>();
+		for (ItemSetList itemSetList : duplicationDetector.fpGrowth(2, false)) {
+			for (ItemSet itemSet : itemSetList) {
+				if (itemSet.getGroupingRefactoringImpact() > 0 && itemSet.isApplicable()) {
+					opportunities.add(itemSet);
+					impacts.add(itemSet.getGroupingRefactoringImpact());
+				}
+			}
+		}
+		Collections.sort(impacts, Collections.reverseOrder());
+		for (int k : new int[] { 1, 5, 20, impacts.size() + 1 }) {
+			List<ItemSet> topOpportunities = duplicationDetector.getTopGroupingOpportunities(2, k);
+			List<Integer> topImpacts = new ArrayList<>();
+			for (ItemSet itemSet : topOpportunities) {
+				assertTrue(opportunities.contains(itemSet));
+				topImpacts.add(itemSet.getGroupingRefactoringImpact());
+			}
+			assertEquals(impacts.subList(0, Math.min(k, impacts.size())), topImpacts);
+			duplicationDetector.setNumberOfThreads(4);
+			assertEquals(topOpportunities, duplicationDetector.getTopGroupingOpportunities(2, k));
+			duplicationDetector.setNumberOfThreads(1);
+		}
+	}
+
+	private Set<ItemSet> getItemSets(List<ItemSetList> itemSetLists) {
+		Set<ItemSet> itemSets = new HashSet<>();
+		for (ItemSetList itemSetList : itemSetLists)
+			itemSets.addAll(itemSetList);
+		return itemSets;
+	}
+
+	private String mine(boolean removeSubsets) {
+		DuplicationDetector duplicationDetector = new DuplicationDetector(FixturesUtil.getStyleSheetFromString(STYLE_SHEET));
+		duplicationDetector.findDuplications();
+		List<String> results = new ArrayList<>();
+		for (ItemSetList itemSetList : duplicationDetector.fpGrowth(2, removeSubsets)) {
+			List<String> itemSets = new ArrayList<>();
+			for (ItemSet itemSet : itemSetList) {
+				List<String> properties = new ArrayList<>();
+				for (Item item : itemSet)
+					properties.add(item.getFirstDeclaration().getProperty());
+				Collections.sort(properties);
+				itemSets.add(properties.toString().replace('[', '{').replace(']', '}') + ":" + itemSet.getSupportSize());
+			}
+			Collections.sort(itemSets);
+			results.addAll(itemSets);
+		}
+		return results.toString();
+	}
+
+}
@@ -0,0 +1,82 @@
+package ca.concordia.cssanalyser.analyser.duplication.fpgrowth;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector;
+import ca.concordia.cssanalyser.analyser.duplication.items.Item;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetCounter;
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.io.IOHelper;
+import ca.concordia.cssanalyser.parser.CSSParserFactory;
+import ca.concordia.cssanalyser.parser.CSSParserFactory.CSSParserType;
+import ca.concordia.cssanalyser.parser.ParseException;
+
+/**
+ * Times building the FP-tree of every style sheet of a folder, building the conditional tree
+ * of each of its items, and mining its closed frequent ItemSets (minimum support 2;
+ * all of the frequent ItemSets of some style sheets are too many).
+ * It is not a test: run it with the test classpath, e.g.
+ *
+ *     java -cp <classpath> ca.concordia.cssanalyser.analyser.duplication.fpgrowth.FPTreeBenchmark examples 20
+ *
+ * The arguments are the folder, searched recursively (default: examples),
+ * and the number of measured iterations (default: 20), which follow as many warm-up iterations.
+ * The median time of each step is printed per style sheet.
+ */
+public class FPTreeBenchmark {
+
+	private static final int MIN_SUPPORT = 2;
+
+	public static void main(String[] args) throws ParseException {
+		String folder = args.length > 0 ? args[0] : "examples";
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		System.out.println(String.format("%-40s %8s %12s %12s %12s", "Style sheet", "Nodes", "Tree (us)", "Cond. (us)", "Mining (us)"));
+		for (File file : IOHelper.searchForFiles(folder, ".css", true)) {
+			StyleSheet styleSheet = CSSParserFactory.getCSSParser(CSSParserType.LESS).parseExternalCSS(file.getAbsolutePath());
+			DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+			duplicationDetector.findDuplications();
+			List<TreeSet<Item>> dataSet = duplicationDetector.getTransactions(MIN_SUPPORT);
+			if (dataSet.isEmpty())
+				continue;
+
+			long[] treeTimes = new long[iterations];
+			long[] conditionalTreeTimes = new long[iterations];
+			long[] miningTimes = new long[iterations];
+			int numberOfNodes = 0;
+			for (int i = -iterations; i < iterations; i++) {
+				long start = System.nanoTime();
+				FPTree tree = new FPTree(dataSet);
+				long treeTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int j = 0; j < tree.getHeaderTableSize(0); j++)
+					tree.buildConditionalTree(0, tree.getHeaderTableItem(0, j), MIN_SUPPORT);
+				long conditionalTreeTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				new FPGrowth(true).mine(dataSet, MIN_SUPPORT, new ItemSetCounter());
+				long miningTime = System.nanoTime() - start;
+
+				if (i >= 0) {
+					treeTimes[i] = treeTime;
+					conditionalTreeTimes[i] = conditionalTreeTime;
+					miningTimes[i] = miningTime;
+				}
+				numberOfNodes = tree.getNumberOfNodes(0);
+			}
+			System.out.println(String.format("%-40s %8d %12d %12d %12d", file.getName(), numberOfNodes,
+					median(treeTimes), median(conditionalTreeTimes), median(miningTimes)));
+		}
+	}
+
+	private static long median(long[] times) {
+		long[] sortedTimes = times.clone();
+		Arrays.sort(sortedTimes);
+		return sortedTimes[sortedTimes.length / 2] / 1000;
+	}
+
+}
@@ -0,0 +1,82 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector;
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector.FrequentItemSetMiner;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class ItemSetSinkTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final DuplicationDetector duplicationDetector;
+
+	public ItemSetSinkTest() {
+		duplicationDetector = new DuplicationDetector(FixturesUtil.getStyleSheetFromString(
+				".a { color: red; width: 0; height: 0; top: 0 }" +
+				".b { color: red; width: 0; top: 0 }" +
+				".c { color: red; height: 0 }" +
+				".d { width: 0; height: 0; top: 0 }" +
+				".e { left: 0 }"));
+		duplicationDetector.findDuplications();
+	}
+
+	@Test
+	public void testStreamedItemSetsAreTheListedOnes() throws IOException {
+		for (FrequentItemSetMiner miner : FrequentItemSetMiner.values()) {
+			duplicationDetector.setFrequentItemSetMiner(miner);
+			for (boolean removeSubsets : new boolean[] { false, true }) {
+				List<ItemSetList> itemSetLists = duplicationDetector.mineFrequentItemSets(2, removeSubsets);
+
+				ItemSetCounter counter = new ItemSetCounter(true);
+				File file = new File(folder.getRoot(), "itemsets.txt");
+				try (ItemSetFileWriter writer = new ItemSetFileWriter(file.getAbsolutePath())) {
+					duplicationDetector.mineFrequentItemSets(2, removeSubsets, writer.andThen(counter));
+				}
+				int numberOfItemSets = 0, numberOfItemSetsWithPositiveImpact = 0;
+				for (ItemSetList itemSetList : itemSetLists) {
+					int size = itemSetList.iterator().next().size();
+					assertEquals(itemSetList.size(), counter.getNumberOfItemSets(size));
+					assertEquals(itemSetList.getMaximumSupport(), counter.getMaximumSupport(size));
+					numberOfItemSets += itemSetList.size();
+					for (ItemSet itemSet : itemSetList)
+						if (itemSet.getGroupingRefactoringImpact() > 0)
+							numberOfItemSetsWithPositiveImpact++;
+				}
+				assertEquals(numberOfItemSets, counter.getNumberOfItemSets());
+				assertEquals(numberOfItemSetsWithPositiveImpact, counter.getNumberOfItemSetsWithPositiveImpact());
+				assertEquals(itemSetLists.get(itemSetLists.size() - 1).iterator().next().size(), counter.getMaximumSize());
+
+				List<String> expectedLines = new ArrayList<>();
+				for (ItemSetList itemSetList : itemSetLists) {
+					for (ItemSet itemSet : itemSetList)
+						expectedLines.add(ItemSetList.toString(itemSet));
+				}
+				List<String> lines = Files.readAllLines(file.toPath());
+				assertEquals(expectedLines.size(), lines.size());
+				assertEquals(new HashSet<>(expectedLines), new HashSet<>(lines));
+			}
+		}
+	}
+
+	@Test
+	public void testTopGroupingOpportunitiesCollector() {
+		TopGroupingOpportunitiesCollector collector = new TopGroupingOpportunitiesCollector(2);
+		duplicationDetector.mineFrequentItemSets(2, false, collector);
+		assertEquals(duplicationDetector.getTopGroupingOpportunities(2, 2), collector.getTopItemSets());
+	}
+
+}
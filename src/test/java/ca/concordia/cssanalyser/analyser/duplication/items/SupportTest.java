@@ -0,0 +1,64 @@
+package ca.concordia.cssanalyser.analyser.duplication.items;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class SupportTest {
+
+	private final List<Selector> selectors = new ArrayList<>();
+
+	public SupportTest() {
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(".a { color: red } .b { color: red } .c { color: red } .d { color: blue }");
+		for (Selector selector : styleSheet.getAllSelectors())
+			selectors.add(selector);
+	}
+
+	@Test
+	public void testIntersection() {
+		Support support = getSupport(3, 0, 1);
+		assertEquals(Arrays.asList(selectors.get(0), selectors.get(1), selectors.get(3)), new ArrayList<>(support));
+
+		assertTrue(support.retainAll(getSupport(1, 2, 3)));
+		assertEquals(2, support.size());
+		assertEquals(getSupport(1, 3), support);
+		assertFalse(support.contains(selectors.get(0)));
+		assertFalse(support.retainAll(getSupport(1, 3)));
+
+		assertTrue(getSupport(0, 1, 3).containsAll(support));
+		assertFalse(getSupport(0, 1).containsAll(support));
+	}
+
+	@Test
+	public void testSupportIsASet() {
+		Support support = getSupport(0, 2);
+		HashSet<Selector> set = new HashSet<>(Arrays.asList(selectors.get(2), selectors.get(0)));
+		assertEquals(set, support);
+		assertEquals(support, set);
+		assertEquals(set.hashCode(), support.hashCode());
+
+		support.remove(selectors.get(2));
+		set.remove(selectors.get(2));
+		assertEquals(set, support);
+		assertEquals(set.hashCode(), support.hashCode());
+	}
+
+	private Support getSupport(int... indices) {
+		Support support = new Support();
+		for (int index : indices)
+			support.add(selectors.get(index));
+		return support;
+	}
+
+}
@@ -0,0 +1,70 @@
+package ca.concordia.cssanalyser.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DOMStatesSchedulerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testStoppedRunIsResumed() throws IOException, InterruptedException {
+		String site1 = createSite("site1", "index", "state1", "state2");
+		String site2 = createSite("site2", "index", "state1");
+		String ledger = folder.getRoot().getAbsolutePath() + "/progress.txt";
+
+		Set<String> analysed = Collections.synchronizedSet(new HashSet<>());
+		try (DOMStatesScheduler scheduler = new DOMStatesScheduler(3, ledger, (domStateHtml, cssFolderPath) -> {
+			if (cssFolderPath.endsWith("site1/css/state2"))
+				throw new IOException("Killed");
+			assertTrue(new File(cssFolderPath).isDirectory());
+			analysed.add(cssFolderPath);
+		})) {
+			scheduler.submitFolder(site1);
+			scheduler.submitFolder(site2);
+			scheduler.awaitCompletion();
+			assertEquals(1, scheduler.getNumberOfFailedStates());
+		}
+		assertEquals(4, analysed.size());
+
+		analysed.clear();
+		try (DOMStatesScheduler scheduler = new DOMStatesScheduler(1, ledger, (domStateHtml, cssFolderPath) -> analysed.add(cssFolderPath))) {
+			assertFalse(scheduler.isAnalysed(site1));
+			assertTrue(scheduler.isAnalysed(site2));
+			scheduler.submitFolder(site1);
+			scheduler.submitFolder(site2);
+			scheduler.awaitCompletion();
+			assertEquals(0, scheduler.getNumberOfFailedStates());
+		}
+		assertEquals(new HashSet<>(Arrays.asList(site1 + "css/state2")), analysed);
+
+		try (DOMStatesScheduler scheduler = new DOMStatesScheduler(1, ledger, (domStateHtml, cssFolderPath) -> analysed.add(cssFolderPath))) {
+			assertTrue(scheduler.isAnalysed(site1));
+		}
+	}
+
+	private String createSite(String name, String... states) throws IOException {
+		File site = folder.newFolder(name);
+		File doms = new File(site, "crawljax/doms");
+		doms.mkdirs();
+		for (String state : states) {
+			new File(doms, state + ".html").createNewFile();
+			new File(site, "css/" + state).mkdirs();
+		}
+		return site.getAbsolutePath() + "/";
+	}
+
+}
@@ -0,0 +1,80 @@
+package ca.concordia.cssanalyser.cssmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import ca.concordia.cssanalyser.cssmodel.declaration.Declaration;
+import ca.concordia.cssanalyser.cssmodel.media.MediaFeatureExpression;
+import ca.concordia.cssanalyser.cssmodel.media.MediaQuery;
+import ca.concordia.cssanalyser.cssmodel.media.MediaQueryList;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class StyleSheetTest {
+
+	private static final String MEDIA_AND_COMBINATORS =
+			".a > b.c:hover, #x ~ y + z { color: red; margin: 0 auto !important }" +
+			"*.x { font-family: Arial, sans-serif }" +
+			"@media only screen and (min-width: 10px) and (max-width: 20px) { .q { x: 1 } .r { x: 2 } }" +
+			"@media (max-width: 30px), print { .s { x: 3 } }" +
+			".u { font: 12px/1.5 Arial }";
+
+	@Test
+	public void testRenumberedCopy() {
+		assertRenumberedCopyIsTheSameAsParsed(FixturesUtil.getTestCSSFile(FixturesUtil.SELECTORS_TEST_FILE_PATH));
+		assertRenumberedCopyIsTheSameAsParsed(FixturesUtil.getStyleSheetFromString(MEDIA_AND_COMBINATORS));
+	}
+
+	private void assertRenumberedCopyIsTheSameAsParsed(StyleSheet styleSheet) {
+		StyleSheet renumbered = styleSheet.getRenumberedCopy();
+		StyleSheet parsed = FixturesUtil.getStyleSheetFromString(styleSheet.toString());
+
+		assertEquals(parsed.toString(), renumbered.toString());
+		assertEquals(parsed.getNumberOfSelectors(), renumbered.getNumberOfSelectors());
+
+		Iterator<Selector> parsedSelectors = parsed.getAllSelectors().iterator();
+		for (Selector selector : renumbered.getAllSelectors()) {
+			Selector parsedSelector = parsedSelectors.next();
+			assertEquals(parsedSelector, selector);
+			assertLocationEquals(parsedSelector.getLocationInfo(), selector.getLocationInfo());
+			assertLocationEquals(parsedSelector.getSelectorNameLocationInfo(), selector.getSelectorNameLocationInfo());
+			assertEquals(parsedSelector.getSelectorNumber(), selector.getSelectorNumber());
+
+			Iterator<MediaQueryList> parsedMediaQueryLists = parsedSelector.getMediaQueryLists().iterator();
+			for (MediaQueryList mediaQueryList : selector.getMediaQueryLists()) {
+				Iterator<MediaQuery> parsedMediaQueries = parsedMediaQueryLists.next().iterator();
+				for (MediaQuery mediaQuery : mediaQueryList) {
+					MediaQuery parsedMediaQuery = parsedMediaQueries.next();
+					assertLocationEquals(parsedMediaQuery.getLocationInfo(), mediaQuery.getLocationInfo());
+					Iterator<MediaFeatureExpression> parsedExpressions = parsedMediaQuery.getMediaFeatureExpressions().iterator();
+					for (MediaFeatureExpression expression : mediaQuery.getMediaFeatureExpressions())
+						assertLocationEquals(parsedExpressions.next().getLocationInfo(), expression.getLocationInfo());
+				}
+			}
+
+			Iterator<Declaration> parsedDeclarations = parsedSelector.getDeclarations().iterator();
+			for (Declaration declaration : selector.getDeclarations()) {
+				Declaration parsedDeclaration = parsedDeclarations.next();
+				assertEquals(parsedDeclaration, declaration);
+				assertLocationEquals(parsedDeclaration.getLocationInfo(), declaration.getLocationInfo());
+				assertEquals(parsedSelector.getDeclarationNumber(parsedDeclaration), selector.getDeclarationNumber(declaration));
+			}
+		}
+	}
+
+	private void assertLocationEquals(LocationInfo expected, LocationInfo actual) {
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+		assertEquals(expected.getLineNumber(), actual.getLineNumber());
+		assertEquals(expected.getColumnNumber(), actual.getColumnNumber());
+		assertEquals(expected.getOffset(), actual.getOffset());
+		assertEquals(expected.getLength(), actual.getLength());
+	}
+
+}
@@ -0,0 +1,51 @@
+package ca.concordia.cssanalyser.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class SelectorMatchCacheTest {
+
+	private static final String HTML = "<html><body>"
+			+ "<div class='a'><p id='x'>1</p><span><p>2</p></span></div>"
+			+ "<p class='a'>3</p>"
+			+ "</body></html>";
+
+	@Test
+	public void testSelectorsAreQueriedOnce() throws IOException {
+		Document document = com.crawljax.util.DomUtils.asDocument(HTML);
+		String css = ".a p { color: red } .a > p { color: blue } #x { color: green }";
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(css);
+
+		Map<BaseSelector, DOMNodeWrapperList> nodes = styleSheet.mapStylesheetOnDocument(document);
+		List<BaseSelector> selectors = styleSheet.getAllBaseSelectors();
+		assertEquals(2, nodes.get(selectors.get(0)).size());
+		// Not the nodes of ".a p", though selectorEquals() does not tell them apart
+		assertEquals(1, nodes.get(selectors.get(1)).size());
+		assertEquals(1, nodes.get(selectors.get(2)).size());
+
+		SelectorMatchCache cache = SelectorMatchCache.getCache(document);
+		assertSame(cache, SelectorMatchCache.getCache(document));
+		// Matched all together, then found in the cache
+		assertEquals(3, cache.getNumberOfHits());
+		assertEquals(3, cache.getNumberOfMisses());
+
+		// Another style sheet with the same selectors, e.g., a refactored one, is not queried again
+		StyleSheet otherStyleSheet = FixturesUtil.getStyleSheetFromString(css);
+		assertEquals(styleSheet.getCSSClassesForDOMNodes(document).size(),
+				otherStyleSheet.getCSSClassesForDOMNodes(document).size());
+		assertEquals(9, cache.getNumberOfHits());
+		assertEquals(3, cache.getNumberOfMisses());
+	}
+
+}
@@ -0,0 +1,74 @@
+package ca.concordia.cssanalyser.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector.UnsupportedSelectorToXPathException;
+import ca.concordia.cssanalyser.dom.DOMHelper.BadXPathException;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class SelectorMatcherTest {
+
+	private static final String HTML = "<html><body>"
+			+ "<div id='main' class='a  b'><p>1</p><p class='b' lang='en'>2</p><span><p>3</p><em> </em></span><p>4</p></div>"
+			+ "<ul class='c'><li>a</li><li class='a'>b<input type='checkbox' checked></li><li data-x>c</li><li>d</li><li>e</li></ul>"
+			+ "<p class='A'>5</p><div><div class='a'><span>6</span></div></div>"
+			+ "</body></html>";
+
+	@Test
+	public void testSameNodesAsXPath() throws IOException, BadXPathException, UnsupportedSelectorToXPathException {
+		Document document = com.crawljax.util.DomUtils.asDocument(HTML);
+		// Positions are counted on the axes of the XPaths: e.g., "div p:first-child" is the first descendant of a div
+		String css = "p {} .a {} #main {} div p {} div > p {} .a .b {} div.a {} .A {} * {} li:hover {}"
+				+ "p:first-child {} div p:first-child {} div > p:last-child {} li:nth-child(2n+1) {} li:nth-child(odd) {}"
+				+ "li:nth-last-child(2) {} li:nth-child(-n+3) {} ul :nth-child(2) {} p:first-of-type {} li:nth-of-type(3) {}"
+				+ "em:only-child {} span:only-of-type {} em:empty {} span:empty {} input:checked {} html:root {} :root {}"
+				+ "p:lang(en) {} li:not(.a) {} p:not(:first-child) {} div :not(p) {} li[data-x] {}"
+				+ "p + p {} p ~ p {} li + li + li {} .c li ~ li:last-child {} div div span {} div > div > span {} body > * > * {}";
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(css);
+		for (BaseSelector selector : styleSheet.getAllBaseSelectors()) {
+			SelectorMatcher matcher = SelectorMatcher.compile(selector);
+			assertNotNull(selector.toString(), matcher);
+			assertEquals(selector.toString(), getNodesFromXPath(document, selector), new DocumentIndex(document).getSelectedNodes(matcher));
+		}
+
+		// Matched all together
+		List<SelectorMatcher> matchers = new ArrayList<>();
+		for (BaseSelector selector : styleSheet.getAllBaseSelectors())
+			matchers.add(SelectorMatcher.compile(selector));
+		List<List<Node>> nodes = new DocumentIndex(document).getSelectedNodes(matchers);
+		for (int i = 0; i < matchers.size(); i++) {
+			BaseSelector selector = styleSheet.getAllBaseSelectors().get(i);
+			assertEquals(selector.toString(), getNodesFromXPath(document, selector), nodes.get(i));
+		}
+	}
+
+	@Test
+	public void testInvalidXPathsAreNotCompiled() {
+		// The XPaths of the negations of combinators and of empty negations are not valid
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString("p:not(div p) {} p:not(*) {}");
+		for (BaseSelector selector : styleSheet.getAllBaseSelectors())
+			assertNull(selector.toString(), SelectorMatcher.compile(selector));
+	}
+
+	private List<Node> getNodesFromXPath(Document document, BaseSelector selector) throws BadXPathException, UnsupportedSelectorToXPathException {
+		NodeList nodeList = DOMHelper.queryDocument(document, selector.getXPath());
+		List<Node> nodes = new ArrayList<>();
+		for (int i = 0; i < nodeList.getLength(); i++)
+			nodes.add(nodeList.item(i));
+		return nodes;
+	}
+
+}
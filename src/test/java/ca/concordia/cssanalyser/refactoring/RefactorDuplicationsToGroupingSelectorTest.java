@@ -0,0 +1,74 @@
+package ca.concordia.cssanalyser.refactoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+import ca.concordia.cssanalyser.refactoring.dependencies.CSSDependencyDetector;
+
+public class RefactorDuplicationsToGroupingSelectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDependenciesAfterReordering() {
+		// The grouping selector of .a and .b is added at the end, then has to be moved before .c
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(
+				"*[hidden] { display: none }" +
+				".a { color: red; border: 0 }" +
+				".b { color: red; border: 0 }" +
+				".c { color: blue; padding: 0 }" +
+				".d { margin: 0; float: left; display: block }" +
+				".e { margin: 0; float: left }");
+		DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+		duplicationDetector.findDuplications();
+		List<ItemSetList> fpgrowthResults = duplicationDetector.fpGrowth(2, false);
+		String folderName = folder.getRoot().getAbsolutePath();
+
+		BatchGroupingRefactoringResult result = new RefactorDuplicationsToGroupingSelector(styleSheet, true)
+				.refactorGroupingOpportunities(2, folderName, fpgrowthResults, true, true);
+
+		assertEquals(2, result.getNumberOfAppliedRefactorings());
+		assertTrue(new File(folderName + "/refactored-reordered1.css").exists() || new File(folderName + "/refactored-reordered2.css").exists());
+		assertDependenciesOfRefactoredStyleSheet(result);
+	}
+
+	@Test
+	public void testDependenciesOfSelectorsChangedByParsing() {
+		// The refactored style sheets are parsed again, and "*[hidden]" becomes "[hidden]"
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(
+				"*[hidden] { display: none }" +
+				".d { margin: 0; float: left }" +
+				".e { margin: 0; float: left }" +
+				".f { display: block }");
+		DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+		duplicationDetector.findDuplications();
+
+		BatchGroupingRefactoringResult result = new RefactorDuplicationsToGroupingSelector(styleSheet, true)
+				.refactorGroupingOpportunities(2, folder.getRoot().getAbsolutePath(), duplicationDetector.fpGrowth(2, false), true, true);
+
+		assertEquals(1, result.getNumberOfAppliedRefactorings());
+		assertDependenciesOfRefactoredStyleSheet(result);
+	}
+
+	/*
+	 * The dependencies carried from round to round must be the ones of the refactored style sheet
+	 */
+	private void assertDependenciesOfRefactoredStyleSheet(BatchGroupingRefactoringResult result) {
+		assertEquals(new HashSet<>(new CSSDependencyDetector(result.getStyleSheet()).findOverridingDependancies(true)),
+				new HashSet<>(result.getDependencies()));
+	}
+
+}
@@ -0,0 +1,54 @@
+package ca.concordia.cssanalyser.refactoring.dependencies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetector;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSet;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetList;
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+import ca.concordia.cssanalyser.refactoring.RefactorDuplicationsToGroupingSelector;
+
+public class CSSDependencyDetectorTest {
+
+	@Test
+	public void testDependenciesAfterGroupingRefactoring() {
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(
+				".a { margin: 0; margin-top: 1px; color: red }" +
+				".b { color: blue; margin-top: 2px; padding: 0 }" +
+				".c { margin: 0; margin-top: 1px; color: red }" +
+				".d { padding: 0; margin-top: 2px; color: blue }");
+		DuplicationDetector duplicationDetector = new DuplicationDetector(styleSheet);
+		duplicationDetector.findDuplications();
+		RefactorDuplicationsToGroupingSelector refactoring = new RefactorDuplicationsToGroupingSelector(styleSheet);
+		int checkedRefactorings = 0;
+		for (boolean domFreeDeps : new boolean[] { false, true }) {
+			CSSValueOverridingDependencyList dependencies = new CSSDependencyDetector(styleSheet).findOverridingDependancies(domFreeDeps);
+			for (ItemSetList itemSetList : duplicationDetector.fpGrowth(2, false)) {
+				for (ItemSet itemSet : itemSetList) {
+					if (itemSet.getGroupingSelector() == null)
+						continue;
+					StyleSheet refactoredStyleSheet = refactoring.groupingRefactoring(itemSet).getRenumberedCopy();
+					List<Selector> changedSelectors = new ArrayList<>();
+					for (Selector selector : itemSet.getSupport())
+						changedSelectors.add(selector);
+					changedSelectors.add(itemSet.getGroupingSelector());
+					CSSDependencyDetector detector = new CSSDependencyDetector(refactoredStyleSheet);
+					assertEquals(new HashSet<>(detector.findOverridingDependancies(domFreeDeps)),
+							new HashSet<>(detector.findOverridingDependancies(dependencies, changedSelectors, domFreeDeps)));
+					checkedRefactorings++;
+				}
+			}
+		}
+		assertTrue(checkedRefactorings > 0);
+	}
+
+}
@@ -0,0 +1,61 @@
+package ca.concordia.cssanalyser.refactoring.dependencies;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.concordia.cssanalyser.cssmodel.StyleSheet;
+import ca.concordia.cssanalyser.cssmodel.selectors.Selector;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+import ca.concordia.cssanalyser.refactoring.dependencies.CSSDependencyDifference.CSSDependencyDifferenceType;
+import ca.concordia.cssanalyser.refactoring.dependencies.CSSInterSelectorValueOverridingDependency.InterSelectorDependencyReason;
+
+public class CSSDependencyListTest {
+
+	private final List<Selector> selectors = new ArrayList<>();
+
+	public CSSDependencyListTest() {
+		StyleSheet styleSheet = FixturesUtil.getStyleSheetFromString(".a { color: red } .b { color: blue } .c { color: green }");
+		for (Selector selector : styleSheet.getAllSelectors())
+			selectors.add(selector);
+	}
+
+	@Test
+	public void testDifferences() {
+		CSSValueOverridingDependencyList dependencies = getDependencies(0, 1, 0, 2, 1, 2);
+		CSSValueOverridingDependencyList otherDependencies = getDependencies(1, 0, 0, 2, 2, 0);
+		List<String> differences = new ArrayList<>();
+		for (CSSDependencyDifference<?> difference : dependencies.getDifferencesWith(otherDependencies))
+			differences.add(difference.toString());
+		differences.sort(null);
+		assertEquals(Arrays.asList(
+				"Added dependency: " + getDependency(2, 0),
+				"Missing dependency: " + getDependency(1, 2),
+				"Reversed dependency: " + getDependency(0, 1)
+				), differences);
+		// The dependencies reversing one another are removed from both sides
+		for (CSSDependencyDifference<?> difference : otherDependencies.getDifferencesWith(dependencies)) {
+			if (difference.getType() == CSSDependencyDifferenceType.REVERSED)
+				assertEquals("Reversed dependency: " + getDependency(1, 0), difference.toString());
+		}
+	}
+
+	private CSSValueOverridingDependencyList getDependencies(int... selectorIndices) {
+		CSSValueOverridingDependencyList dependencies = new CSSValueOverridingDependencyList();
+		for (int i = 0; i < selectorIndices.length; i += 2)
+			dependencies.add(getDependency(selectorIndices[i], selectorIndices[i + 1]));
+		return dependencies;
+	}
+
+	private CSSValueOverridingDependency getDependency(int from, int to) {
+		Selector selector1 = selectors.get(from);
+		Selector selector2 = selectors.get(to);
+		return new CSSInterSelectorValueOverridingDependency(selector1, selector1.getDeclarations().iterator().next(),
+				selector2, selector2.getDeclarations().iterator().next(), "color", InterSelectorDependencyReason.DUE_TO_CASCADING);
+	}
+
+}
@@ -4,12 +4,26 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import ca.concordia.cssanalyser.analyser.duplication.DuplicationDetectorTest;
+import ca.concordia.cssanalyser.analyser.duplication.eclat.EclatTest;
+import ca.concordia.cssanalyser.analyser.duplication.fpgrowth.FPGrowthTest;
+import ca.concordia.cssanalyser.analyser.duplication.items.ItemSetSinkTest;
+import ca.concordia.cssanalyser.analyser.duplication.items.SupportTest;
+import ca.concordia.cssanalyser.app.DOMStatesSchedulerTest;
+import ca.concordia.cssanalyser.cssmodel.StyleSheetTest;
 import ca.concordia.cssanalyser.cssmodel.declaration.DeclarationTestSuite;
 import ca.concordia.cssanalyser.cssmodel.media.MediaTestSuite;
 import ca.concordia.cssanalyser.cssmodel.selectors.SelectorTestSuite;
+import ca.concordia.cssanalyser.dom.SelectorMatchCacheTest;
+import ca.concordia.cssanalyser.dom.SelectorMatcherTest;
 import ca.concordia.cssanalyser.parser.less.LessCSSParserTestSuite;
 import ca.concordia.cssanalyser.preprocessors.constructsinfo.ConstructsInfoSuite;
 import ca.concordia.cssanalyser.preprocessors.util.less.ImportInlinerTest;
+import ca.concordia.cssanalyser.refactoring.RefactorDuplicationsToGroupingSelectorTest;
+import ca.concordia.cssanalyser.refactoring.dependencies.CSSDependencyDetectorTest;
+import ca.concordia.cssanalyser.refactoring.dependencies.CSSDependencyListTest;
+import css.intersection.PersistentOverlapMemoTest;
+import css.intersection.SelectorIntersectionCheckerTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({
@@ -18,7 +32,21 @@ import ca.concordia.cssanalyser.preprocessors.util.less.ImportInlinerTest;
 	MediaTestSuite.class,
 	ImportInlinerTest.class,
 	ConstructsInfoSuite.class,
-	LessCSSParserTestSuite.class
+	LessCSSParserTestSuite.class,
+	DuplicationDetectorTest.class,
+	StyleSheetTest.class,
+	SelectorIntersectionCheckerTest.class,
+	PersistentOverlapMemoTest.class,
+	FPGrowthTest.class,
+	SupportTest.class,
+	EclatTest.class,
+	ItemSetSinkTest.class,
+	CSSDependencyListTest.class,
+	CSSDependencyDetectorTest.class,
+	RefactorDuplicationsToGroupingSelectorTest.class,
+	SelectorMatchCacheTest.class,
+	SelectorMatcherTest.class,
+	DOMStatesSchedulerTest.class
 })
 public class AllTestsSuite {
 
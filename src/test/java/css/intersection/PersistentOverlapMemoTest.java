@@ -0,0 +1,95 @@
+package css.intersection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class PersistentOverlapMemoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResultsAreKeptBetweenRuns() throws IOException {
+        File file = new File(folder.getRoot(), "memo.bin");
+
+        PersistentOverlapMemo memo = new PersistentOverlapMemo(file, "NATIVE", 10);
+        memo.put(getSelector("div .a"), getSelector("p"), true);
+        memo.put(getSelector("#a"), getSelector("#b"), false);
+        memo.close();
+
+        memo = new PersistentOverlapMemo(file, "NATIVE", 10);
+        assertEquals(Boolean.TRUE, memo.get(getSelector("p"), getSelector("div .a")));
+        assertEquals(Boolean.FALSE, memo.get(getSelector("#a"), getSelector("#b")));
+        assertNull(memo.get(getSelector("#a"), getSelector("#c")));
+        memo.close();
+
+        memo = new PersistentOverlapMemo(file, "INTERSECTION_TOOL", 10);
+        assertNull(memo.get(getSelector("#a"), getSelector("#b")));
+        memo.close();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultsAreEvicted() throws IOException {
+        File file = new File(folder.getRoot(), "memo.bin");
+
+        PersistentOverlapMemo memo = new PersistentOverlapMemo(file, "NATIVE", 2);
+        memo.put(getSelector(".a"), getSelector(".b"), true);
+        memo.put(getSelector(".a"), getSelector(".c"), true);
+        memo.get(getSelector(".a"), getSelector(".b"));
+        memo.put(getSelector(".a"), getSelector(".d"), true);
+        memo.close();
+
+        memo = new PersistentOverlapMemo(file, "NATIVE", 2);
+        assertEquals(Boolean.TRUE, memo.get(getSelector(".a"), getSelector(".b")));
+        assertNull(memo.get(getSelector(".a"), getSelector(".c")));
+        assertEquals(Boolean.TRUE, memo.get(getSelector(".a"), getSelector(".d")));
+        memo.close();
+    }
+
+    @Test
+    public void testTruncatedLastRecordIsNotAppendedTo() throws IOException {
+        File file = new File(folder.getRoot(), "memo.bin");
+
+        PersistentOverlapMemo memo = new PersistentOverlapMemo(file, "NATIVE", 10);
+        memo.put(getSelector("div .a"), getSelector("p"), true);
+        memo.put(getSelector("#a"), getSelector("#b"), false);
+        memo.close();
+
+        // As if the run was killed while writing the last record
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 3);
+        }
+
+        memo = new PersistentOverlapMemo(file, "NATIVE", 10);
+        assertEquals(Boolean.TRUE, memo.get(getSelector("div .a"), getSelector("p")));
+        assertNull(memo.get(getSelector("#a"), getSelector("#b")));
+        memo.put(getSelector("#a"), getSelector("#c"), false);
+        memo.put(getSelector(".a"), getSelector(".b"), true);
+        memo.flush();
+
+        // The results appended after the truncated record are loaded, without closing the previous memo
+        PersistentOverlapMemo reloadedMemo = new PersistentOverlapMemo(file, "NATIVE", 10);
+        assertEquals(Boolean.TRUE, reloadedMemo.get(getSelector("div .a"), getSelector("p")));
+        assertNull(reloadedMemo.get(getSelector("#a"), getSelector("#b")));
+        assertEquals(Boolean.FALSE, reloadedMemo.get(getSelector("#a"), getSelector("#c")));
+        assertEquals(Boolean.TRUE, reloadedMemo.get(getSelector(".a"), getSelector(".b")));
+        reloadedMemo.close();
+        memo.close();
+    }
+
+    private BaseSelector getSelector(String selector) {
+        return FixturesUtil.getStyleSheetFromString(selector + " { color: red }").getAllBaseSelectors().iterator().next();
+    }
+
+}
@@ -0,0 +1,67 @@
+package css.intersection;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ca.concordia.cssanalyser.cssmodel.selectors.BaseSelector;
+import ca.concordia.cssanalyser.fixturesutil.FixturesUtil;
+
+public class SelectorIntersectionCheckerTest {
+
+    @Test
+    public void testEmptyIntersections() {
+        assertEmpty("div", "span");
+        assertEmpty("#a", "#b");
+        assertEmpty("p.a", "div.a");
+        assertEmpty(".a", ":not(.a)");
+        assertEmpty("[type=text]", "[type=button]");
+        assertEmpty("[href^=http]", "[href^=ftp]");
+        assertEmpty("[lang|=en]", "[lang|=fr]");
+        assertEmpty("[class=x]", ".y");
+        assertEmpty("a:link", "a:visited");
+        assertEmpty("p", "p::before");
+        assertEmpty("p:before", "p:after");
+        assertEmpty("div > p", "span > p");
+        assertEmpty("div > span > p", "ul > span > p");
+        assertEmpty("ul > li p", ":root > p");
+        assertEmpty("a + p", "p:first-child");
+        assertEmpty("p", "div:empty p");
+    }
+
+    @Test
+    public void testNonEmptyIntersections() {
+        assertNotEmpty("div", "*");
+        assertNotEmpty(".a", ".b");
+        assertNotEmpty("div .a", "span .a");
+        assertNotEmpty("div > p", "span p");
+        assertNotEmpty("div > span > p", "ul span > p");
+        assertNotEmpty("#a", "[id^=a]");
+        assertNotEmpty("[href^=http]", "[href^=https]");
+        assertNotEmpty("[lang|=en]", "[lang^=en-]");
+        assertNotEmpty(".a", ":not(.b)");
+        assertNotEmpty("a + p", "b + p");
+        assertNotEmpty(":root", "html");
+        assertNotEmpty("p:hover", "p:focus");
+    }
+
+    private void assertEmpty(String selector1, String selector2) {
+        assertTrue(selector1 + " and " + selector2,
+                   SelectorIntersectionChecker.intersectionIsEmpty(getSelector(selector1), getSelector(selector2)));
+        assertTrue(selector2 + " and " + selector1,
+                   SelectorIntersectionChecker.intersectionIsEmpty(getSelector(selector2), getSelector(selector1)));
+    }
+
+    private void assertNotEmpty(String selector1, String selector2) {
+        assertFalse(selector1 + " and " + selector2,
+                    SelectorIntersectionChecker.intersectionIsEmpty(getSelector(selector1), getSelector(selector2)));
+        assertFalse(selector2 + " and " + selector1,
+                    SelectorIntersectionChecker.intersectionIsEmpty(getSelector(selector2), getSelector(selector1)));
+    }
+
+    private BaseSelector getSelector(String selector) {
+        return FixturesUtil.getStyleSheetFromString(selector + " { color: red }").getAllBaseSelectors().iterator().next();
+    }
+
+}